@@ -0,0 +1,25 @@
+package com.somamission.peanutbutter.benchmark;
+
+import com.somamission.peanutbutter.domain.User;
+
+final class BenchmarkUsers {
+  private BenchmarkUsers() {
+    throw new IllegalStateException("Utility class");
+  }
+
+  /** @return a fully populated user, as a profile read returns it */
+  static User user(String username) {
+    User user = new User();
+    user.setUserId(1L);
+    user.setVersion(3L);
+    user.setUsername(username);
+    user.setEmail(username + "@gmail.com");
+    user.setPassword("{bcrypt:10}$2a$10$abcdefghijklmnopqrstuuJ5Ah8PbY6e2Q9C5hRkN1Ew4nQ0QJ7yq");
+    user.setFirstName("Foo");
+    user.setLastName("Bar");
+    user.setProfilePhotoUrl("http://placeimg.com/100/100/people");
+    user.setCoverPhotoUrl("http://placeimg.com/820/312/nature");
+    user.setFullAddress("123 Main St. #123 New York NY United States 10001");
+    return user;
+  }
+}
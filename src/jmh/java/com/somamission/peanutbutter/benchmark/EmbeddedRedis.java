@@ -0,0 +1,44 @@
+package com.somamission.peanutbutter.benchmark;
+
+import org.redisson.Redisson;
+import org.redisson.api.RedissonClient;
+import org.redisson.config.Config;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+
+/** In-process redis stand-in, so cache benchmarks need no running server */
+final class EmbeddedRedis implements AutoCloseable {
+  private final RedisServer redisServer;
+  private final String address;
+  private final RedissonClient redissonClient;
+
+  EmbeddedRedis() throws IOException {
+    int port;
+    try (ServerSocket socket = new ServerSocket(0)) {
+      port = socket.getLocalPort();
+    }
+    redisServer = new RedisServer(port);
+    redisServer.start();
+
+    address = "redis://127.0.0.1:" + port;
+    Config config = new Config();
+    config.useSingleServer().setAddress(address);
+    redissonClient = Redisson.create(config);
+  }
+
+  String getAddress() {
+    return address;
+  }
+
+  RedissonClient getRedissonClient() {
+    return redissonClient;
+  }
+
+  @Override
+  public void close() {
+    redissonClient.shutdown();
+    redisServer.stop();
+  }
+}
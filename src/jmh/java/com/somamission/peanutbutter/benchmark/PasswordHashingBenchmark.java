@@ -0,0 +1,49 @@
+package com.somamission.peanutbutter.benchmark;
+
+import com.somamission.peanutbutter.security.BCryptHashAlgorithm;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/** BCrypt encode and verify at the costs the calibration usually lands on */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PasswordHashingBenchmark {
+  private static final String PASSWORD = "s3curePassword!";
+
+  @Param({"10", "12"})
+  private int cost;
+
+  private final BCryptHashAlgorithm bcrypt = new BCryptHashAlgorithm();
+
+  private String hash;
+
+  @Setup
+  public void setUp() {
+    hash = bcrypt.encode(PASSWORD, cost);
+  }
+
+  @Benchmark
+  public String encode() {
+    return bcrypt.encode(PASSWORD, cost);
+  }
+
+  @Benchmark
+  public boolean matches() {
+    return bcrypt.matches(PASSWORD, hash, cost);
+  }
+}
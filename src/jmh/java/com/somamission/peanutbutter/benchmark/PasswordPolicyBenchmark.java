@@ -0,0 +1,89 @@
+package com.somamission.peanutbutter.benchmark;
+
+import com.somamission.peanutbutter.support.BreachedPasswordFilter;
+import com.somamission.peanutbutter.support.PasswordPolicy;
+import com.somamission.peanutbutter.support.PasswordPolicyResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.passay.CharacterRule;
+import org.passay.EnglishCharacterData;
+import org.passay.PasswordGenerator;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Password rules, the breached password lookup and password generation as used on signup */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PasswordPolicyBenchmark {
+  private static final int BREACHED_PASSWORDS = 1_000_000;
+
+  private final PasswordPolicy policy = new PasswordPolicy.Builder().build();
+
+  private final PasswordGenerator generator = new PasswordGenerator();
+
+  // the rules UserService generates reset passwords with under the default policy
+  private final List<CharacterRule> generationRules =
+      Arrays.asList(
+          new CharacterRule(EnglishCharacterData.UpperCase, 1),
+          new CharacterRule(EnglishCharacterData.LowerCase, 1),
+          new CharacterRule(EnglishCharacterData.Digit, 1),
+          new CharacterRule(EnglishCharacterData.Special, 1));
+
+  private BreachedPasswordFilter breachedPasswordFilter;
+
+  @Setup
+  public void setUp() throws IOException {
+    Path list = Files.createTempFile("breached-passwords", ".txt");
+    try (BufferedWriter writer = Files.newBufferedWriter(list)) {
+      for (int i = 0; i < BREACHED_PASSWORDS; i++) {
+        writer.write("Breached" + i);
+        writer.newLine();
+      }
+    }
+    breachedPasswordFilter = BreachedPasswordFilter.load(list, 0.001);
+    Files.delete(list);
+  }
+
+  @Benchmark
+  public PasswordPolicyResult validPassword() {
+    return policy.check("s3curePassword!");
+  }
+
+  @Benchmark
+  public PasswordPolicyResult invalidPassword() {
+    return policy.check("insecurepassword");
+  }
+
+  @Benchmark
+  public boolean breachedPassword() {
+    return breachedPasswordFilter.mightContain("Breached4242");
+  }
+
+  @Benchmark
+  public boolean unbreachedPassword() {
+    return breachedPasswordFilter.mightContain("s3curePassword!");
+  }
+
+  @Benchmark
+  public String generatePassword() {
+    return generator.generatePassword(12, generationRules);
+  }
+}
@@ -0,0 +1,88 @@
+package com.somamission.peanutbutter.benchmark;
+
+import com.somamission.peanutbutter.constants.RateLimitConstants;
+import com.somamission.peanutbutter.ratelimit.DistributedRateLimiter;
+import com.somamission.peanutbutter.ratelimit.RateLimitConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What a rate limit check costs a request, sampled so the p99 shows up next to the mean: a hot
+ * global key served from the permits the node took in advance, the same key going to embedded
+ * redis on every check, and many per-user keys going to redis on every check, as keys do whose
+ * limit is too low to take permits in advance.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class RateLimiterBenchmark {
+  private static final int USERS = 10_000;
+
+  // never reached, so every check takes the allowing path
+  private final RateLimitConfig globalLimit = new RateLimitConfig(10_000_000, 1000);
+
+  private final RateLimitConfig userLimit =
+      new RateLimitConfig(1_000_000, RateLimitConstants.DEFAULT_PERIOD_MS);
+
+  private EmbeddedRedis embeddedRedis;
+
+  private DistributedRateLimiter rateLimiter;
+
+  private DistributedRateLimiter remoteOnlyRateLimiter;
+
+  @Setup
+  public void setUp() throws IOException {
+    embeddedRedis = new EmbeddedRedis();
+    rateLimiter =
+        new DistributedRateLimiter(
+            embeddedRedis.getRedissonClient(),
+            RateLimitConstants.DEFAULT_LOCAL_SHARE,
+            RateLimitConstants.DEFAULT_LOCAL_MAX_SIZE,
+            null);
+    remoteOnlyRateLimiter =
+        new DistributedRateLimiter(
+            embeddedRedis.getRedissonClient(),
+            0,
+            RateLimitConstants.DEFAULT_LOCAL_MAX_SIZE,
+            null);
+  }
+
+  @TearDown
+  public void tearDown() {
+    embeddedRedis.close();
+  }
+
+  @Benchmark
+  public boolean globalLocalPermits() {
+    return rateLimiter.tryAcquire("benchmark:global:all", globalLimit);
+  }
+
+  @Benchmark
+  public boolean globalRemoteOnly() {
+    return remoteOnlyRateLimiter.tryAcquire("benchmark:global-remote:all", globalLimit);
+  }
+
+  @Benchmark
+  public boolean perUser() {
+    int user = ThreadLocalRandom.current().nextInt(USERS);
+    return remoteOnlyRateLimiter.tryAcquire("benchmark:user:user" + user, userLimit);
+  }
+}
@@ -0,0 +1,143 @@
+package com.somamission.peanutbutter.benchmark;
+
+import com.somamission.peanutbutter.cache.UserCodec;
+import com.somamission.peanutbutter.config.RedisMode;
+import com.somamission.peanutbutter.config.RedissonConfigs;
+import com.somamission.peanutbutter.constants.CacheConstants;
+import com.somamission.peanutbutter.domain.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.redisson.Redisson;
+import org.redisson.api.BatchOptions;
+import org.redisson.api.RBatch;
+import org.redisson.api.RMapCache;
+import org.redisson.api.RMapCacheAsync;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.Codec;
+import org.redisson.config.Config;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * L2 read throughput of cached users against a master with 0, 1 and 2 replicas, each a redis
+ * process of its own, with the client set up by {@link RedissonConfigs} in master-replica mode.
+ * Reads go to the replicas, so throughput should grow with them until the machine runs out of
+ * cores. Without replicas the master serves every read.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(32)
+public class ReplicaReadBenchmark {
+  private static final int USERS = 1000;
+
+  @Param({"0", "1", "2"})
+  private int replicas;
+
+  private final List<RedisServer> redisServers = new ArrayList<>();
+
+  private RedissonClient redissonClient;
+
+  private RMapCache<String, User> usersMap;
+
+  @Setup
+  public void setUp() throws IOException {
+    int masterPort = freePort();
+    start(RedisServer.builder().port(masterPort).build());
+    List<String> replicaAddresses = new ArrayList<>();
+    for (int i = 0; i < replicas; i++) {
+      int port = freePort();
+      start(RedisServer.builder().port(port).slaveOf("127.0.0.1", masterPort).build());
+      replicaAddresses.add("redis://127.0.0.1:" + port);
+    }
+    String masterAddress = "redis://127.0.0.1:" + masterPort;
+    fillAndReplicate(masterAddress);
+
+    Map<String, Object> properties = new HashMap<>();
+    properties.put("redis.mode", RedisMode.MASTER_REPLICA.getPropertyName());
+    properties.put("redis.master-address", masterAddress);
+    properties.put("redis.replica-addresses", String.join(",", replicaAddresses));
+    StandardEnvironment env = new StandardEnvironment();
+    env.getPropertySources().addFirst(new MapPropertySource("benchmark", properties));
+    redissonClient = Redisson.create(RedissonConfigs.fromEnvironment(env));
+    usersMap = redissonClient.getMapCache(CacheConstants.USERS, userCodec(redissonClient));
+  }
+
+  @TearDown
+  public void tearDown() {
+    redissonClient.shutdown();
+    for (RedisServer redisServer : redisServers) {
+      redisServer.stop();
+    }
+  }
+
+  @Benchmark
+  public User read() {
+    return usersMap.get(username(ThreadLocalRandom.current().nextInt(USERS)));
+  }
+
+  // writes through the master alone and returns once every replica has the users
+  private void fillAndReplicate(String masterAddress) {
+    Config config = new Config();
+    config.useSingleServer().setAddress(masterAddress);
+    RedissonClient masterClient = Redisson.create(config);
+    try {
+      BatchOptions options = BatchOptions.defaults();
+      if (replicas > 0) {
+        options.syncSlaves(replicas, 30, TimeUnit.SECONDS);
+      }
+      RBatch batch = masterClient.createBatch(options);
+      RMapCacheAsync<String, User> users =
+          batch.getMapCache(CacheConstants.USERS, userCodec(masterClient));
+      for (int i = 0; i < USERS; i++) {
+        users.fastPutAsync(username(i), BenchmarkUsers.user(username(i)));
+      }
+      batch.execute();
+    } finally {
+      masterClient.shutdown();
+    }
+  }
+
+  private void start(RedisServer redisServer) {
+    redisServer.start();
+    redisServers.add(redisServer);
+  }
+
+  private static Codec userCodec(RedissonClient client) {
+    return new UserCodec(client.getConfig().getCodec());
+  }
+
+  private static String username(int i) {
+    return "user" + i;
+  }
+
+  private static int freePort() throws IOException {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+}
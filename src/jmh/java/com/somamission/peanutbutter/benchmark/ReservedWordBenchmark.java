@@ -0,0 +1,54 @@
+package com.somamission.peanutbutter.benchmark;
+
+import com.somamission.peanutbutter.support.ReservedWordIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Username checks against reserved word snapshots of growing size, as isUsernameValid does */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReservedWordBenchmark {
+  @Param({"10", "1000", "100000"})
+  private int size;
+
+  private ReservedWordIndex index;
+
+  private String reserved;
+
+  @Setup
+  public void setUp() {
+    List<String> words = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      words.add("reserved" + i);
+    }
+    index = ReservedWordIndex.of(words);
+    reserved = "RESERVED" + (size / 2);
+  }
+
+  @Benchmark
+  public boolean reservedUsername() {
+    return index.contains(reserved);
+  }
+
+  @Benchmark
+  public boolean freeUsername() {
+    return index.contains("fbar");
+  }
+}
@@ -0,0 +1,94 @@
+package com.somamission.peanutbutter.benchmark;
+
+import com.somamission.peanutbutter.cache.LocalCacheConfig;
+import com.somamission.peanutbutter.cache.TieredCache;
+import com.somamission.peanutbutter.cache.TieredCacheManager;
+import com.somamission.peanutbutter.constants.CacheConstants;
+import com.somamission.peanutbutter.domain.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.redisson.spring.cache.CacheConfig;
+import org.redisson.spring.cache.RedissonSpringCacheManager;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The users cache as getUserByUsername goes through it: an L1 hit, an L2 hit on embedded redis and
+ * a miss that loads and caches the user. The loader stands in for the repository, so the miss
+ * figure is the cache overhead on top of the database query.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserCacheBenchmark {
+  private static final String USERNAME = "fbar";
+
+  private final AtomicLong missCounter = new AtomicLong();
+
+  private EmbeddedRedis embeddedRedis;
+
+  private TieredCache cache;
+
+  @Setup
+  public void setUp() throws IOException {
+    embeddedRedis = new EmbeddedRedis();
+    Map<String, CacheConfig> remoteConfigs =
+        Collections.singletonMap(
+            CacheConstants.USERS,
+            new CacheConfig(CacheConstants.USERS_TTL, CacheConstants.USERS_MAX_IDLE_TIME));
+    TieredCacheManager cacheManager =
+        new TieredCacheManager(
+            new RedissonSpringCacheManager(embeddedRedis.getRedissonClient(), remoteConfigs),
+            remoteConfigs,
+            Collections.singletonMap(
+                CacheConstants.USERS,
+                new LocalCacheConfig(
+                    CacheConstants.LOCAL_DEFAULT_MAX_SIZE, CacheConstants.LOCAL_DEFAULT_TTL)),
+            Collections.emptyMap(),
+            embeddedRedis.getRedissonClient().getTopic(CacheConstants.INVALIDATION_TOPIC),
+            embeddedRedis.getRedissonClient()::getLock,
+            null,
+            new SimpleMeterRegistry());
+    cache = (TieredCache) cacheManager.getCache(CacheConstants.USERS);
+    cache.put(USERNAME, BenchmarkUsers.user(USERNAME));
+  }
+
+  @TearDown
+  public void tearDown() {
+    embeddedRedis.close();
+  }
+
+  @Benchmark
+  public User localHit() {
+    return cache.get(USERNAME, User.class);
+  }
+
+  @Benchmark
+  public User remoteHit() {
+    cache.invalidateLocal(USERNAME);
+    return cache.get(USERNAME, User.class);
+  }
+
+  @Benchmark
+  public User miss() {
+    String username = "miss" + missCounter.incrementAndGet();
+    return cache.get(username, () -> BenchmarkUsers.user(username));
+  }
+}
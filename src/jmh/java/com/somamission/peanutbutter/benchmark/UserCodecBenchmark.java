@@ -0,0 +1,90 @@
+package com.somamission.peanutbutter.benchmark;
+
+import com.somamission.peanutbutter.cache.UserCodec;
+import com.somamission.peanutbutter.domain.User;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.redisson.client.codec.Codec;
+import org.redisson.codec.FstCodec;
+import org.redisson.codec.SerializationCodec;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding a cached user with {@link UserCodec} against FST, redisson's default, and
+ * plain Java serialization. The size of each encoding, what an entry costs in redis memory, is
+ * reported next to the timings as the encodedBytes counter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserCodecBenchmark {
+  @Param({"user", "fst", "java"})
+  private String codecName;
+
+  private Codec codec;
+
+  private User user;
+
+  private byte[] encoded;
+
+  @Setup
+  public void setUp() throws IOException {
+    if ("user".equals(codecName)) {
+      codec = new UserCodec();
+    } else if ("fst".equals(codecName)) {
+      codec = new FstCodec();
+    } else {
+      codec = new SerializationCodec();
+    }
+    user = BenchmarkUsers.user("fbar");
+    user.setCreatedAt(new Date());
+    ByteBuf buf = codec.getValueEncoder().encode(user);
+    encoded = ByteBufUtil.getBytes(buf);
+    buf.release();
+  }
+
+  @Benchmark
+  public int encode(EncodedSize encodedSize) throws IOException {
+    ByteBuf buf = codec.getValueEncoder().encode(user);
+    int size = buf.readableBytes();
+    buf.release();
+    return size;
+  }
+
+  @Benchmark
+  public Object decode(EncodedSize encodedSize) throws IOException {
+    return codec.getValueDecoder().decode(Unpooled.wrappedBuffer(encoded), null);
+  }
+
+  /** Carries the size of the encoding into the results, as an event count set once an iteration */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class EncodedSize {
+    public long encodedBytes;
+
+    @Setup(Level.Iteration)
+    public void setUp(UserCodecBenchmark benchmark) {
+      encodedBytes = benchmark.encoded.length;
+    }
+  }
+}
@@ -0,0 +1,136 @@
+package com.somamission.peanutbutter.benchmark;
+
+import com.somamission.peanutbutter.PeanutButterApplication;
+import com.somamission.peanutbutter.domain.User;
+import com.somamission.peanutbutter.domain.UserPage;
+import com.somamission.peanutbutter.exception.BadRequestException;
+import com.somamission.peanutbutter.intf.IUserListingService;
+import com.somamission.peanutbutter.param.UserSearchParams;
+import com.somamission.peanutbutter.repository.IUserRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The first page of the user listing against a page near the end of {@value #USERS} users, in the
+ * application's own context on H2. Keyset paging should make both cost about the same, with any
+ * filter. A filter whose index cannot serve the id order shows up as a gap between the two once
+ * matching rows get rare.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserListingBenchmark {
+  private static final int USERS = 100_000;
+  private static final int LIMIT = 50;
+  private static final int SAVE_BATCH = 1000;
+
+  @Param({"none", "emailDomain", "namePrefix", "createdAfter"})
+  private String filter;
+
+  private EmbeddedRedis embeddedRedis;
+
+  private ConfigurableApplicationContext context;
+
+  private IUserListingService userListingService;
+
+  private String deepPageToken;
+
+  private Date createdAfter;
+
+  @Setup
+  public void setUp() throws IOException {
+    embeddedRedis = new EmbeddedRedis();
+    context =
+        new SpringApplicationBuilder(PeanutButterApplication.class)
+            .properties(
+                "redis.address=" + embeddedRedis.getAddress(),
+                "server.port=0",
+                "cache.warm-up.enabled=false",
+                "logging.level.root=WARN")
+            .run();
+    userListingService = context.getBean(IUserListingService.class);
+
+    createdAfter = new Date(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1));
+    IUserRepository userRepository = context.getBean(IUserRepository.class);
+    // far enough from the end that a filter matching one user in ten still fills a page
+    String deepUsername = "user" + (USERS - 20 * LIMIT);
+    long deepUserId = 0L;
+    List<User> batch = new ArrayList<>(SAVE_BATCH);
+    for (int i = 0; i < USERS; i++) {
+      User user = BenchmarkUsers.user("user" + i);
+      user.setUserId(null);
+      user.setVersion(null);
+      // every tenth user matches the domain and name filters
+      user.setEmail("user" + i + (0 == i % 10 ? "@peanut.com" : "@gmail.com"));
+      user.setFirstName(0 == i % 10 ? "Peanut" : "Foo");
+      batch.add(user);
+      if (SAVE_BATCH == batch.size()) {
+        for (User saved : userRepository.saveAll(batch)) {
+          if (deepUsername.equals(saved.getUsername())) {
+            deepUserId = saved.getUserId();
+          }
+        }
+        batch.clear();
+      }
+    }
+    // the listing's own token format, a deep page starts after this id
+    deepPageToken =
+        Base64.getUrlEncoder()
+            .withoutPadding()
+            .encodeToString(("after:" + deepUserId).getBytes(StandardCharsets.UTF_8));
+  }
+
+  @TearDown
+  public void tearDown() {
+    context.close();
+    embeddedRedis.close();
+  }
+
+  @Benchmark
+  public UserPage firstPage() throws BadRequestException {
+    return userListingService.listUsers(search(null));
+  }
+
+  @Benchmark
+  public UserPage deepPage() throws BadRequestException {
+    return userListingService.listUsers(search(deepPageToken));
+  }
+
+  private UserSearchParams search(String pageToken) {
+    UserSearchParams.Builder builder =
+        new UserSearchParams.Builder().withPageToken(pageToken).withLimit(LIMIT);
+    switch (filter) {
+      case "emailDomain":
+        return builder.withEmailDomain("peanut.com").build();
+      case "namePrefix":
+        return builder.withNamePrefix("Pea").build();
+      case "createdAfter":
+        return builder.withCreatedAfter(createdAfter).build();
+      default:
+        return builder.build();
+    }
+  }
+}
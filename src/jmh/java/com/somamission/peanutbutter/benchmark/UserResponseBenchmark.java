@@ -0,0 +1,133 @@
+package com.somamission.peanutbutter.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.somamission.peanutbutter.cache.LocalCacheConfig;
+import com.somamission.peanutbutter.cache.TieredCache;
+import com.somamission.peanutbutter.cache.TieredCacheManager;
+import com.somamission.peanutbutter.constants.CacheConstants;
+import com.somamission.peanutbutter.domain.CachedJson;
+import com.somamission.peanutbutter.domain.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.redisson.spring.cache.CacheConfig;
+import org.redisson.spring.cache.RedissonSpringCacheManager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The body of GET /user/{username} from a cache hit, as a cached user that is serialized on every
+ * read against the cached serialized body. Run with -prof gc and compare gc.alloc.rate.norm for
+ * the bytes allocated per request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserResponseBenchmark {
+  private static final String USERNAME = "fbar";
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  // stands in for the servlet output stream, reset before every write
+  private final ByteArrayOutputStream responseStream = new ByteArrayOutputStream(1024);
+
+  private EmbeddedRedis embeddedRedis;
+
+  private TieredCache usersCache;
+
+  private TieredCache usersJsonCache;
+
+  @Setup
+  public void setUp() throws IOException {
+    embeddedRedis = new EmbeddedRedis();
+    CacheConfig remoteConfig =
+        new CacheConfig(CacheConstants.USERS_TTL, CacheConstants.USERS_MAX_IDLE_TIME);
+    LocalCacheConfig localConfig =
+        new LocalCacheConfig(
+            CacheConstants.LOCAL_DEFAULT_MAX_SIZE, CacheConstants.LOCAL_DEFAULT_TTL);
+    Map<String, CacheConfig> remoteConfigs = new HashMap<>();
+    remoteConfigs.put(CacheConstants.USERS, remoteConfig);
+    remoteConfigs.put(CacheConstants.USERS_JSON, remoteConfig);
+    Map<String, LocalCacheConfig> localConfigs = new HashMap<>();
+    localConfigs.put(CacheConstants.USERS, localConfig);
+    localConfigs.put(CacheConstants.USERS_JSON, localConfig);
+    TieredCacheManager cacheManager =
+        new TieredCacheManager(
+            new RedissonSpringCacheManager(embeddedRedis.getRedissonClient(), remoteConfigs),
+            remoteConfigs,
+            localConfigs,
+            Collections.emptyMap(),
+            embeddedRedis.getRedissonClient().getTopic(CacheConstants.INVALIDATION_TOPIC),
+            embeddedRedis.getRedissonClient()::getLock,
+            null,
+            new SimpleMeterRegistry());
+    usersCache = (TieredCache) cacheManager.getCache(CacheConstants.USERS);
+    usersJsonCache = (TieredCache) cacheManager.getCache(CacheConstants.USERS_JSON);
+
+    User user = BenchmarkUsers.user(USERNAME);
+    usersCache.put(USERNAME, user);
+    usersJsonCache.put(
+        USERNAME,
+        new CachedJson(user.getUserId(), user.getVersion(), objectMapper.writeValueAsBytes(user)));
+  }
+
+  @TearDown
+  public void tearDown() {
+    embeddedRedis.close();
+  }
+
+  @Benchmark
+  public int userLocalHit() throws JsonProcessingException {
+    return writeUser(usersCache.get(USERNAME, User.class));
+  }
+
+  @Benchmark
+  public int jsonLocalHit() {
+    return writeJson(usersJsonCache.get(USERNAME, CachedJson.class));
+  }
+
+  @Benchmark
+  public int userRemoteHit() throws JsonProcessingException {
+    usersCache.invalidateLocal(USERNAME);
+    return writeUser(usersCache.get(USERNAME, User.class));
+  }
+
+  @Benchmark
+  public int jsonRemoteHit() {
+    usersJsonCache.invalidateLocal(USERNAME);
+    return writeJson(usersJsonCache.get(USERNAME, CachedJson.class));
+  }
+
+  /** What returning the user as a String body costs: serialize, then encode the String */
+  private int writeUser(User user) throws JsonProcessingException {
+    byte[] body = objectMapper.writeValueAsString(user).getBytes(StandardCharsets.UTF_8);
+    responseStream.reset();
+    responseStream.write(body, 0, body.length);
+    return responseStream.size();
+  }
+
+  private int writeJson(CachedJson json) {
+    responseStream.reset();
+    responseStream.write(json.getBody(), 0, json.getBody().length);
+    return responseStream.size();
+  }
+}
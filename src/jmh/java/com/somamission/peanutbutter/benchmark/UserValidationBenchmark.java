@@ -0,0 +1,59 @@
+package com.somamission.peanutbutter.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.somamission.peanutbutter.domain.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/** Bean validation of a user and its JSON serialization, as UserService and UserController do */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserValidationBenchmark {
+  private Validator validator;
+
+  // built the way spring boot builds the application object mapper
+  private ObjectMapper objectMapper;
+
+  private User user;
+
+  @Setup
+  public void setUp() {
+    validator = Validation.buildDefaultValidatorFactory().getValidator();
+    objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    user = BenchmarkUsers.user("fbar");
+  }
+
+  @Benchmark
+  public Set<ConstraintViolation<User>> validateUser() {
+    return validator.validate(user);
+  }
+
+  @Benchmark
+  public Set<ConstraintViolation<User>> validateEmail() {
+    return validator.validateValue(User.class, "email", user.getEmail());
+  }
+
+  @Benchmark
+  public String serializeUser() throws Exception {
+    return objectMapper.writeValueAsString(user);
+  }
+}
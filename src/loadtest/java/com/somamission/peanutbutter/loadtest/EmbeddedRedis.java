@@ -0,0 +1,29 @@
+package com.somamission.peanutbutter.loadtest;
+
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+
+/** In-process redis stand-in on a free port, so the load test needs no running server */
+final class EmbeddedRedis implements AutoCloseable {
+  private final RedisServer redisServer;
+  private final int port;
+
+  EmbeddedRedis() throws IOException {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      port = socket.getLocalPort();
+    }
+    redisServer = new RedisServer(port);
+    redisServer.start();
+  }
+
+  String getUrl() {
+    return "redis://127.0.0.1:" + port;
+  }
+
+  @Override
+  public void close() {
+    redisServer.stop();
+  }
+}
@@ -0,0 +1,63 @@
+package com.somamission.peanutbutter.loadtest;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Latency histogram, in microseconds, and outcome counts of one operation */
+final class EndpointStats {
+  private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(1);
+  private static final double MICROS_PER_MILLI = 1000.0;
+
+  private final Histogram histogram = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+  private final LongAdder errors = new LongAdder();
+  private final LongAdder conflicts = new LongAdder();
+
+  /**
+   * @param latencyNanos time from when the request was due, not from when it was sent, so a
+   *     stalled server is not hidden by the driver waiting on it
+   * @param status the HTTP status, or -1 when no response came back
+   */
+  void record(long latencyNanos, int status) {
+    histogram.recordValue(
+        Math.min(TimeUnit.NANOSECONDS.toMicros(latencyNanos), HIGHEST_TRACKABLE_MICROS));
+    if (status == 409) {
+      conflicts.increment();
+    } else if (status < 200 || (status >= 300 && status != 304)) {
+      errors.increment();
+    }
+  }
+
+  ObjectNode toJson(int durationSeconds) {
+    long count = histogram.getTotalCount();
+    ObjectNode json = JsonNodeFactory.instance.objectNode();
+    json.put(LoadResult.COUNT, count);
+    json.put(LoadResult.THROUGHPUT, (double) count / durationSeconds);
+    json.put(LoadResult.ERROR_RATE, count == 0 ? 0.0 : errors.doubleValue() / count);
+    json.put("conflicts", conflicts.sum());
+    json.put("p50Ms", percentileMillis(50.0));
+    json.put("p90Ms", percentileMillis(90.0));
+    json.put(LoadResult.P99_MS, percentileMillis(99.0));
+    json.put("p999Ms", percentileMillis(99.9));
+    json.put("maxMs", histogram.getMaxValue() / MICROS_PER_MILLI);
+    return json;
+  }
+
+  /** Writes the full distribution in the .hgrm format the HdrHistogram plotter reads */
+  void writeDistribution(OutputStream outputStream) throws IOException {
+    try (PrintStream printStream = new PrintStream(outputStream, false, "UTF-8")) {
+      histogram.outputPercentileDistribution(printStream, MICROS_PER_MILLI);
+    }
+  }
+
+  private double percentileMillis(double percentile) {
+    return histogram.getValueAtPercentile(percentile) / MICROS_PER_MILLI;
+  }
+}
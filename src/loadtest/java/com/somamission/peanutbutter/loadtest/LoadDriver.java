@@ -0,0 +1,182 @@
+package com.somamission.peanutbutter.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sends the configured mix of requests at a fixed arrival rate. Requests are scheduled up front
+ * rather than sent when the previous one returns, so a slow server builds up a queue that shows in
+ * the latencies instead of quietly lowering the load.
+ */
+final class LoadDriver {
+  private static final Logger logger = LoggerFactory.getLogger(LoadDriver.class);
+  private static final String PASSWORD = "s3curePassword!";
+  private static final int TIMEOUT_MS = 30_000;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final String baseUrl;
+  private final LoadTestOptions options;
+  private final Map<Operation, EndpointStats> stats = new EnumMap<>(Operation.class);
+  private final List<String> usernames = new ArrayList<>();
+  private final AtomicLong signups = new AtomicLong();
+  private final String runId = Long.toString(System.currentTimeMillis(), 36);
+
+  LoadDriver(String baseUrl, LoadTestOptions options) {
+    this.baseUrl = baseUrl;
+    this.options = options;
+    for (Operation operation : options.getMix().keySet()) {
+      stats.put(operation, new EndpointStats());
+    }
+  }
+
+  /** Imports the users the reads and updates pick from, in one bulk request */
+  void seed() throws IOException {
+    ArrayNode users = objectMapper.createArrayNode();
+    for (int i = 0; i < options.getSeedUsers(); i++) {
+      String username = "seed" + runId + i;
+      usernames.add(username);
+      users.addObject()
+          .put("username", username)
+          .put("email", username + "@loadtest.com")
+          .put("password", PASSWORD);
+    }
+    int status = send("POST", "/users/bulk", objectMapper.writeValueAsBytes(users));
+    if (status != 200) {
+      throw new IllegalStateException("Seeding users failed with status " + status);
+    }
+  }
+
+  LoadResult run() throws InterruptedException {
+    ExecutorService workers = Executors.newFixedThreadPool(options.getConcurrency());
+    long intervalNanos = TimeUnit.SECONDS.toNanos(1) / options.getRate();
+    long start = System.nanoTime();
+    long measureStart = start + TimeUnit.SECONDS.toNanos(options.getWarmupSeconds());
+    long end = measureStart + TimeUnit.SECONDS.toNanos(options.getDurationSeconds());
+    logger.info(
+        "Driving {} requests/s for {}s after a {}s warm-up",
+        options.getRate(),
+        options.getDurationSeconds(),
+        options.getWarmupSeconds());
+    for (long intended = start; intended < end; intended += intervalNanos) {
+      long wait = intended - System.nanoTime();
+      if (wait > 0) {
+        LockSupport.parkNanos(wait);
+      }
+      Operation operation = pickOperation();
+      long due = intended;
+      boolean measured = intended >= measureStart;
+      workers.execute(() -> execute(operation, due, measured));
+    }
+    workers.shutdown();
+    if (!workers.awaitTermination(1, TimeUnit.MINUTES)) {
+      workers.shutdownNow();
+    }
+    return new LoadResult(options, stats);
+  }
+
+  private Operation pickOperation() {
+    int total = 0;
+    for (int weight : options.getMix().values()) {
+      total += weight;
+    }
+    int pick = ThreadLocalRandom.current().nextInt(total);
+    for (Map.Entry<Operation, Integer> entry : options.getMix().entrySet()) {
+      pick -= entry.getValue();
+      if (pick < 0) {
+        return entry.getKey();
+      }
+    }
+    throw new IllegalStateException("Empty loadtest.mix");
+  }
+
+  private void execute(Operation operation, long due, boolean measured) {
+    int status;
+    try {
+      status = send(operation);
+    } catch (IOException e) {
+      logger.debug("{} failed", operation, e);
+      status = -1;
+    }
+    if (measured) {
+      stats.get(operation).record(System.nanoTime() - due, status);
+    }
+  }
+
+  private int send(Operation operation) throws IOException {
+    switch (operation) {
+      case GET:
+        return send("GET", "/user/" + randomUsername(), null);
+      case SIGNUP:
+        String username = "signup" + runId + signups.incrementAndGet();
+        ObjectNode user =
+            objectMapper
+                .createObjectNode()
+                .put("username", username)
+                .put("email", username + "@loadtest.com")
+                .put("password", PASSWORD);
+        return send("POST", "/user/create", objectMapper.writeValueAsBytes(user));
+      case UPDATE:
+        ObjectNode patch = objectMapper.createObjectNode();
+        patch
+            .putObject("nameParams")
+            .put("firstName", "First" + ThreadLocalRandom.current().nextInt(1000))
+            .put("lastName", "Last");
+        return send(
+            "PUT",
+            "/user/" + randomUsername() + "/updateInfo",
+            objectMapper.writeValueAsBytes(patch));
+      default:
+        throw new IllegalArgumentException("Unknown operation " + operation);
+    }
+  }
+
+  private String randomUsername() {
+    return usernames.get(ThreadLocalRandom.current().nextInt(usernames.size()));
+  }
+
+  /** @return the response status, after reading the body so the connection is kept alive */
+  private int send(String method, String path, byte[] body) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+    connection.setConnectTimeout(TIMEOUT_MS);
+    connection.setReadTimeout(TIMEOUT_MS);
+    connection.setRequestMethod(method);
+    if (null != body) {
+      connection.setDoOutput(true);
+      connection.setRequestProperty("Content-Type", "application/json");
+      try (OutputStream outputStream = connection.getOutputStream()) {
+        outputStream.write(body);
+      }
+    }
+    int status = connection.getResponseCode();
+    InputStream response =
+        status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+    if (null != response) {
+      byte[] buffer = new byte[8192];
+      try (InputStream inputStream = response) {
+        while (inputStream.read(buffer) != -1) {
+          // discard, only the status and timing matter
+        }
+      }
+    }
+    return status;
+  }
+}
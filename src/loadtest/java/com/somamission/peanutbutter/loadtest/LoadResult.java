@@ -0,0 +1,110 @@
+package com.somamission.peanutbutter.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/** Per operation results of one run, written as json and compared against a stored baseline */
+final class LoadResult {
+  static final String COUNT = "count";
+  static final String THROUGHPUT = "throughput";
+  static final String ERROR_RATE = "errorRate";
+  static final String P99_MS = "p99Ms";
+  private static final String ENDPOINTS = "endpoints";
+  // a run may fail a few more requests than the baseline before it counts as a regression
+  private static final double ERROR_RATE_SLACK = 0.01;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final ObjectNode json;
+  private final Map<Operation, EndpointStats> stats;
+
+  LoadResult(LoadTestOptions options, Map<Operation, EndpointStats> stats) {
+    this.stats = stats;
+    json = objectMapper.createObjectNode();
+    json.put("rate", options.getRate());
+    json.put("durationSeconds", options.getDurationSeconds());
+    json.put("concurrency", options.getConcurrency());
+    ObjectNode endpoints = json.putObject(ENDPOINTS);
+    for (Map.Entry<Operation, EndpointStats> entry : stats.entrySet()) {
+      endpoints.set(entry.getKey().label(), entry.getValue().toJson(options.getDurationSeconds()));
+    }
+  }
+
+  /** Writes result.json, and one .hgrm distribution per operation, into the given directory */
+  void write(Path directory) throws IOException {
+    Files.createDirectories(directory);
+    objectMapper.writerWithDefaultPrettyPrinter().writeValue(resultFile(directory).toFile(), json);
+    for (Map.Entry<Operation, EndpointStats> entry : stats.entrySet()) {
+      Path distribution = directory.resolve(entry.getKey().label() + ".hgrm");
+      try (OutputStream outputStream = Files.newOutputStream(distribution)) {
+        entry.getValue().writeDistribution(outputStream);
+      }
+    }
+  }
+
+  void writeBaseline(Path baseline) throws IOException {
+    Files.createDirectories(baseline.toAbsolutePath().getParent());
+    objectMapper.writerWithDefaultPrettyPrinter().writeValue(baseline.toFile(), json);
+  }
+
+  /**
+   * @param tolerance how much worse, as a fraction, p99 latency and throughput may be than the
+   *     baseline's
+   * @return one line per regressed metric, empty when the run is within the baseline
+   */
+  List<String> regressionsAgainst(Path baseline, double tolerance) throws IOException {
+    List<String> regressions = new ArrayList<>();
+    JsonNode baselineEndpoints = objectMapper.readTree(baseline.toFile()).path(ENDPOINTS);
+    Iterator<Map.Entry<String, JsonNode>> endpoints = baselineEndpoints.fields();
+    while (endpoints.hasNext()) {
+      Map.Entry<String, JsonNode> expected = endpoints.next();
+      JsonNode actual = json.path(ENDPOINTS).path(expected.getKey());
+      if (actual.isMissingNode() || actual.path(COUNT).asLong() == 0) {
+        regressions.add(expected.getKey() + ": no requests were measured");
+        continue;
+      }
+      double p99 = actual.path(P99_MS).asDouble();
+      double baselineP99 = expected.getValue().path(P99_MS).asDouble();
+      if (p99 > baselineP99 * (1 + tolerance)) {
+        regressions.add(
+            String.format(
+                "%s: p99 %.2f ms, baseline %.2f ms", expected.getKey(), p99, baselineP99));
+      }
+      double throughput = actual.path(THROUGHPUT).asDouble();
+      double baselineThroughput = expected.getValue().path(THROUGHPUT).asDouble();
+      if (throughput < baselineThroughput * (1 - tolerance)) {
+        regressions.add(
+            String.format(
+                "%s: throughput %.1f/s, baseline %.1f/s",
+                expected.getKey(), throughput, baselineThroughput));
+      }
+      double errorRate = actual.path(ERROR_RATE).asDouble();
+      double baselineErrorRate = expected.getValue().path(ERROR_RATE).asDouble();
+      if (errorRate > baselineErrorRate + ERROR_RATE_SLACK) {
+        regressions.add(
+            String.format(
+                "%s: error rate %.3f, baseline %.3f",
+                expected.getKey(), errorRate, baselineErrorRate));
+      }
+    }
+    return regressions;
+  }
+
+  private static Path resultFile(Path directory) {
+    return directory.resolve("result.json");
+  }
+
+  @Override
+  public String toString() {
+    return json.toString();
+  }
+}
@@ -0,0 +1,73 @@
+package com.somamission.peanutbutter.loadtest;
+
+import com.somamission.peanutbutter.PeanutButterApplication;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Boots the application on an in-memory H2 database and an embedded redis, drives it with {@link
+ * LoadDriver}, and exits non-zero when the run regresses past the stored baseline or there is no
+ * baseline to compare against.
+ */
+public final class LoadTest {
+  private static final Logger logger = LoggerFactory.getLogger(LoadTest.class);
+
+  private LoadTest() {
+    throw new IllegalStateException("Utility class");
+  }
+
+  public static void main(String[] args) throws Exception {
+    LoadTestOptions options = LoadTestOptions.fromSystemProperties();
+    List<String> regressions = Collections.emptyList();
+    try (EmbeddedRedis redis = new EmbeddedRedis();
+        ConfigurableApplicationContext application = start(redis, options)) {
+      String baseUrl =
+          "http://127.0.0.1:" + application.getEnvironment().getProperty("local.server.port");
+      LoadDriver driver = new LoadDriver(baseUrl, options);
+      driver.seed();
+      LoadResult result = driver.run();
+      result.write(options.getResultPath());
+      logger.info("Load test result: {}", result);
+
+      if (options.isUpdateBaseline()) {
+        result.writeBaseline(options.getBaselinePath());
+        logger.info("Baseline written to {}", options.getBaselinePath());
+      } else if (Files.exists(options.getBaselinePath())) {
+        regressions = result.regressionsAgainst(options.getBaselinePath(), options.getTolerance());
+      } else {
+        // a run with nothing to compare against must not pass as a run without regressions
+        regressions =
+            Collections.singletonList(
+                "no baseline at "
+                    + options.getBaselinePath()
+                    + ", rerun with -Dloadtest.update-baseline=true to record one");
+      }
+    }
+    regressions.forEach(regression -> logger.error("Regression: {}", regression));
+    // exit explicitly, a lingering non-daemon thread must not keep the build waiting
+    System.exit(regressions.isEmpty() ? 0 : 1);
+  }
+
+  /**
+   * Overrides go in as system properties, which, unlike builder defaults, win over the REDIS_URL
+   * and port of application-dev.properties
+   */
+  private static ConfigurableApplicationContext start(
+      EmbeddedRedis redis, LoadTestOptions options) {
+    System.setProperty("REDIS_URL", redis.getUrl());
+    System.setProperty("server.port", "0");
+    // every request comes from one address, the limits would measure the limiter instead
+    System.setProperty("rate-limit.enabled", "false");
+    System.setProperty("spring.datasource.url", "jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1");
+    System.setProperty("password.hashing.target-ms", Long.toString(options.getHashingTargetMs()));
+    System.setProperty("logging.level.root", "WARN");
+    System.setProperty("logging.level.com.somamission.peanutbutter.loadtest", "INFO");
+    return new SpringApplicationBuilder(PeanutButterApplication.class).run();
+  }
+}
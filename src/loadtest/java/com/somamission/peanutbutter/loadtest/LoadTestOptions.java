@@ -0,0 +1,101 @@
+package com.somamission.peanutbutter.loadtest;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.EnumMap;
+import java.util.Map;
+
+/** Run settings, read from loadtest.* system properties */
+final class LoadTestOptions {
+  private final int rate;
+  private final int warmupSeconds;
+  private final int durationSeconds;
+  private final int concurrency;
+  private final int seedUsers;
+  private final Map<Operation, Integer> mix;
+  private final double tolerance;
+  private final Path baselinePath;
+  private final Path resultPath;
+  private final boolean updateBaseline;
+  private final long hashingTargetMs;
+
+  private LoadTestOptions() {
+    rate = Integer.getInteger("loadtest.rate", 200);
+    warmupSeconds = Integer.getInteger("loadtest.warmup-seconds", 10);
+    durationSeconds = Integer.getInteger("loadtest.duration-seconds", 60);
+    concurrency = Integer.getInteger("loadtest.concurrency", 64);
+    seedUsers = Integer.getInteger("loadtest.seed-users", 200);
+    mix = parseMix(System.getProperty("loadtest.mix", "get=85,signup=5,update=10"));
+    tolerance = Double.parseDouble(System.getProperty("loadtest.tolerance", "0.25"));
+    baselinePath =
+        Paths.get(System.getProperty("loadtest.baseline", "src/loadtest/resources/baseline.json"));
+    resultPath = Paths.get(System.getProperty("loadtest.result", "target/load-test"));
+    updateBaseline = Boolean.getBoolean("loadtest.update-baseline");
+    hashingTargetMs = Long.getLong("loadtest.hashing-target-ms", 50L);
+  }
+
+  static LoadTestOptions fromSystemProperties() {
+    return new LoadTestOptions();
+  }
+
+  /** @param mix weights per operation, e.g. get=85,signup=5,update=10 */
+  private static Map<Operation, Integer> parseMix(String mix) {
+    Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+    for (String entry : StringUtils.split(mix, ',')) {
+      String[] weight = StringUtils.split(entry, '=');
+      if (weight.length != 2) {
+        throw new IllegalArgumentException("Invalid loadtest.mix entry: " + entry);
+      }
+      weights.put(
+          Operation.valueOf(StringUtils.trim(weight[0]).toUpperCase()),
+          Integer.parseInt(StringUtils.trim(weight[1])));
+    }
+    return weights;
+  }
+
+  int getRate() {
+    return rate;
+  }
+
+  int getWarmupSeconds() {
+    return warmupSeconds;
+  }
+
+  int getDurationSeconds() {
+    return durationSeconds;
+  }
+
+  int getConcurrency() {
+    return concurrency;
+  }
+
+  int getSeedUsers() {
+    return seedUsers;
+  }
+
+  Map<Operation, Integer> getMix() {
+    return mix;
+  }
+
+  double getTolerance() {
+    return tolerance;
+  }
+
+  Path getBaselinePath() {
+    return baselinePath;
+  }
+
+  Path getResultPath() {
+    return resultPath;
+  }
+
+  boolean isUpdateBaseline() {
+    return updateBaseline;
+  }
+
+  long getHashingTargetMs() {
+    return hashingTargetMs;
+  }
+}
@@ -0,0 +1,15 @@
+package com.somamission.peanutbutter.loadtest;
+
+/** The endpoints the load test drives, each reported on its own */
+enum Operation {
+  /** GET /user/{username} of a seeded user */
+  GET,
+  /** POST /user/create of a user no one has taken yet */
+  SIGNUP,
+  /** PUT /user/{username}/updateInfo of a seeded user's name */
+  UPDATE;
+
+  String label() {
+    return name().toLowerCase();
+  }
+}
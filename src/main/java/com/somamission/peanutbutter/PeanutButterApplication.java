@@ -3,8 +3,10 @@ package com.somamission.peanutbutter;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class PeanutButterApplication {
   protected SpringApplicationBuilder configure(SpringApplicationBuilder application) {
     return application.sources(PeanutButterApplication.class);
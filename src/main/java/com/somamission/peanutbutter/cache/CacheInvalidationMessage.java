@@ -0,0 +1,33 @@
+package com.somamission.peanutbutter.cache;
+
+import java.io.Serializable;
+
+/** Tells the other nodes to drop a key, or a whole cache when the key is null, from their L1 */
+public class CacheInvalidationMessage implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private String origin;
+  private String cacheName;
+  private Object key;
+
+  public CacheInvalidationMessage() {}
+
+  public CacheInvalidationMessage(String origin, String cacheName, Object key) {
+    this.origin = origin;
+    this.cacheName = cacheName;
+    this.key = key;
+  }
+
+  public String getOrigin() {
+    return origin;
+  }
+
+  public String getCacheName() {
+    return cacheName;
+  }
+
+  public Object getKey() {
+    return key;
+  }
+}
@@ -0,0 +1,68 @@
+package com.somamission.peanutbutter.cache;
+
+/** How a {@link TieredCache} loads missing values and refreshes them before they expire */
+public class LoadConfig {
+  /**
+   * Coalesces loads within the JVM only, refreshes early with the usual beta of 1 and caches no
+   * misses
+   */
+  public static final LoadConfig DEFAULT = new LoadConfig(false, 0, 1.0);
+
+  private final boolean distributedLock;
+  private final long lockWaitMs;
+  private final double earlyRefreshBeta;
+  private final long negativeTtlMs;
+  private final long negativeMaxSize;
+
+  /**
+   * @param distributedLock whether one node at a time loads a key, the others waiting for it
+   * @param lockWaitMs how long a node waits for that lock before loading on its own
+   * @param earlyRefreshBeta how eagerly entries are refreshed ahead of their L2 expiry, 0 to only
+   *     load once they have expired
+   */
+  public LoadConfig(boolean distributedLock, long lockWaitMs, double earlyRefreshBeta) {
+    this(distributedLock, lockWaitMs, earlyRefreshBeta, 0, 0);
+  }
+
+  /**
+   * @param negativeTtlMs how long a load that found nothing is remembered, 0 to cache null values
+   *     like any other
+   * @param negativeMaxSize how many such keys each node keeps in memory
+   */
+  public LoadConfig(
+      boolean distributedLock,
+      long lockWaitMs,
+      double earlyRefreshBeta,
+      long negativeTtlMs,
+      long negativeMaxSize) {
+    this.distributedLock = distributedLock;
+    this.lockWaitMs = lockWaitMs;
+    this.earlyRefreshBeta = earlyRefreshBeta;
+    this.negativeTtlMs = negativeTtlMs;
+    this.negativeMaxSize = negativeMaxSize;
+  }
+
+  public boolean isDistributedLock() {
+    return distributedLock;
+  }
+
+  public long getLockWaitMs() {
+    return lockWaitMs;
+  }
+
+  public double getEarlyRefreshBeta() {
+    return earlyRefreshBeta;
+  }
+
+  public long getNegativeTtlMs() {
+    return negativeTtlMs;
+  }
+
+  public long getNegativeMaxSize() {
+    return negativeMaxSize;
+  }
+
+  public boolean isNegativeCaching() {
+    return negativeTtlMs > 0 && negativeMaxSize > 0;
+  }
+}
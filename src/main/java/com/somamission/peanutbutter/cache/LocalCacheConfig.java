@@ -0,0 +1,37 @@
+package com.somamission.peanutbutter.cache;
+
+/** Bounds for the per-JVM tier of a {@link TieredCache} */
+public class LocalCacheConfig {
+  private final long maxSize;
+  private final long ttl;
+  private final long replicaTtl;
+
+  /** Entries read from a replica live as long as any other */
+  public LocalCacheConfig(long maxSize, long ttl) {
+    this(maxSize, ttl, ttl);
+  }
+
+  /**
+   * @param maxSize maximum number of entries kept in memory
+   * @param ttl time to live of an entry in milliseconds
+   * @param replicaTtl time to live in milliseconds of an entry read from a replica, which may be
+   *     older than what an invalidation just dropped
+   */
+  public LocalCacheConfig(long maxSize, long ttl, long replicaTtl) {
+    this.maxSize = maxSize;
+    this.ttl = ttl;
+    this.replicaTtl = replicaTtl;
+  }
+
+  public long getMaxSize() {
+    return maxSize;
+  }
+
+  public long getTtl() {
+    return ttl;
+  }
+
+  public long getReplicaTtl() {
+    return replicaTtl;
+  }
+}
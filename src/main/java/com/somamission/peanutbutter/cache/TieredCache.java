@@ -0,0 +1,922 @@
+package com.somamission.peanutbutter.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.somamission.peanutbutter.domain.Versioned;
+import com.somamission.peanutbutter.support.CircuitBreaker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.redisson.api.RMapCache;
+import org.redisson.api.RTopic;
+import org.redisson.spring.cache.CacheConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.NullValue;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Two level cache: a bounded in-process L1 in front of a shared L2 (Redis). Reads try L1 first and
+ * fill it from L2; writes go to L2, refresh the local L1 and tell the other nodes to drop the key
+ * from theirs.
+ *
+ * <p>{@link Versioned} values are written to L2 with a compare-and-set on their version, so an
+ * older copy of a row never replaces a newer one and rewriting an identical copy is skipped.
+ *
+ * <p>Loads through {@link #get(Object, Callable)} are coalesced: concurrent misses for a key in
+ * this JVM share one load, and with a distributed lock one node at a time loads it while the
+ * others wait for it to show up in L2. Keys this node loaded are refreshed ahead of their L2 expiry
+ * with probabilistic early expiration (XFetch): the closer the expiry and the slower the load, the
+ * likelier a read is to reload, so a popular key is reloaded by one read instead of by every read
+ * at once when it expires. The reload runs in the background while the current value keeps being
+ * served.
+ *
+ * <p>With negative caching, a load that finds nothing is remembered for a short ttl: as a null
+ * entry in L2 that never replaces a value, and in a bounded L1 of its own so a flood of unknown
+ * keys cannot push real values out. Any put of a value drops the key's negative entry on every
+ * node.
+ *
+ * <p>Plain reads can go through a replica read copy of L2. A value found there is served as is,
+ * while a null entry, which may only be a replica lagging behind a put, is read again from L2.
+ * Values read from a replica stay in L1 for a shorter ttl of their own, as the replica may have
+ * handed back a copy older than one an invalidation just dropped.
+ * Compare-and-set and the re-read after a distributed lock always read L2 itself.
+ *
+ * <p>With a circuit breaker, calls to L2 stop once it fails or slows down and the cache carries on
+ * from L1, loading misses straight from their source. Keys written or evicted meanwhile only
+ * changed in L1, so they are evicted from L2 once the breaker closes again; keys merely loaded
+ * changed nothing and are left alone.
+ */
+public class TieredCache implements Cache {
+  private static final Logger logger = LoggerFactory.getLogger(TieredCache.class);
+  private static final int MAX_COMPARE_AND_SET_ATTEMPTS = 3;
+  private static final String LOCK_PREFIX = "cache:lock:";
+  private static final ValueWrapper NEGATIVE_HIT = new SimpleValueWrapper(null);
+  private static final ValueWrapper UNREACHABLE = new SimpleValueWrapper(null);
+  // past this many keys changed during an outage, the rest live out their ttl in L2
+  private static final int MAX_PENDING_EVICTIONS = 10_000;
+
+  private final String name;
+  private final Cache remoteCache;
+  private final Cache replicaCache;
+  private final CacheConfig remoteCacheConfig;
+  private final com.github.benmanes.caffeine.cache.Cache<Object, Object> localCache;
+  private final RTopic invalidationTopic;
+  private final String nodeId;
+  private final LoadConfig loadConfig;
+  private final Function<String, Lock> lockProvider;
+  private final ConcurrentMap<Object, CompletableFuture<Object>> loads = new ConcurrentHashMap<>();
+  private final com.github.benmanes.caffeine.cache.Cache<Object, LoadStats> loadStats;
+  private final com.github.benmanes.caffeine.cache.Cache<Object, Boolean> negativeCache;
+  private final CircuitBreaker circuitBreaker;
+  private final Executor refreshExecutor;
+  private final Set<Object> pendingEvictions = ConcurrentHashMap.newKeySet();
+  private volatile boolean clearPending;
+
+  private final LongAdder localHits = new LongAdder();
+  private final LongAdder remoteHits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder negativeHits = new LongAdder();
+  private final LongAdder localEvictions = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  private final LongAdder loadCount = new LongAdder();
+  private final LongAdder coalescedLoads = new LongAdder();
+  private final LongAdder earlyRefreshes = new LongAdder();
+  private final LongAdder degradedCalls = new LongAdder();
+  private final LongAdder droppedEvictions = new LongAdder();
+
+  private final Timer remoteGetTimer;
+  private final Timer remotePutTimer;
+  private final Timer remoteEvictTimer;
+
+  /**
+   * Reads L2 through remoteCache only and refreshes keys early on the thread that reads them, see
+   * the constructor with a replica cache
+   */
+  public TieredCache(
+      Cache remoteCache,
+      CacheConfig remoteCacheConfig,
+      LocalCacheConfig localCacheConfig,
+      LoadConfig loadConfig,
+      RTopic invalidationTopic,
+      Function<String, Lock> lockProvider,
+      String nodeId,
+      CircuitBreaker circuitBreaker,
+      MeterRegistry meterRegistry) {
+    this(
+        remoteCache,
+        remoteCache,
+        remoteCacheConfig,
+        localCacheConfig,
+        loadConfig,
+        invalidationTopic,
+        lockProvider,
+        nodeId,
+        circuitBreaker,
+        Runnable::run,
+        meterRegistry);
+  }
+
+  /**
+   * @param remoteCache the shared L2, read from the master
+   * @param replicaCache the same L2 read from replicas, for plain reads, or remoteCache itself
+   * @param remoteCacheConfig ttl and max idle time of L2 entries, null for no expiry
+   * @param localCacheConfig bounds for the L1
+   * @param loadConfig how misses are loaded
+   * @param invalidationTopic where writes are announced, null to keep invalidations local
+   * @param lockProvider gives the lock of a name shared by all nodes, null when the loadConfig
+   *     asks for no distributed lock
+   * @param nodeId identifies this node in invalidation messages
+   * @param circuitBreaker guards every call to L2, null to let L2 failures reach the caller
+   * @param refreshExecutor where keys are reloaded ahead of their expiry, a bounded pool as the
+   *     reloads block on the source
+   * @param meterRegistry where the latency of L2 calls is recorded
+   */
+  public TieredCache(
+      Cache remoteCache,
+      Cache replicaCache,
+      CacheConfig remoteCacheConfig,
+      LocalCacheConfig localCacheConfig,
+      LoadConfig loadConfig,
+      RTopic invalidationTopic,
+      Function<String, Lock> lockProvider,
+      String nodeId,
+      CircuitBreaker circuitBreaker,
+      Executor refreshExecutor,
+      MeterRegistry meterRegistry) {
+    this.name = remoteCache.getName();
+    this.remoteCache = remoteCache;
+    this.replicaCache = replicaCache;
+    this.remoteCacheConfig = remoteCacheConfig;
+    this.localCache =
+        Caffeine.newBuilder()
+            .maximumSize(localCacheConfig.getMaxSize())
+            .expireAfter(localExpiry(localCacheConfig))
+            .removalListener(
+                (Object key, Object value, RemovalCause cause) -> {
+                  if (cause.wasEvicted()) {
+                    localEvictions.increment();
+                  }
+                })
+            .build();
+    this.invalidationTopic = invalidationTopic;
+    this.nodeId = nodeId;
+    this.circuitBreaker = circuitBreaker;
+    this.refreshExecutor = refreshExecutor;
+    this.loadConfig = loadConfig;
+    this.lockProvider = loadConfig.isDistributedLock() ? lockProvider : null;
+    long remoteTtl = null == remoteCacheConfig ? 0 : remoteCacheConfig.getTTL();
+    this.loadStats =
+        Caffeine.newBuilder()
+            .maximumSize(localCacheConfig.getMaxSize())
+            .expireAfterWrite(remoteTtl > 0 ? remoteTtl : 1, TimeUnit.MILLISECONDS)
+            .build();
+    this.negativeCache =
+        loadConfig.isNegativeCaching()
+            ? Caffeine.newBuilder()
+                .maximumSize(loadConfig.getNegativeMaxSize())
+                .expireAfterWrite(loadConfig.getNegativeTtlMs(), TimeUnit.MILLISECONDS)
+                .build()
+            : null;
+    this.remoteGetTimer = remoteTimer("get", meterRegistry);
+    this.remotePutTimer = remoteTimer("put", meterRegistry);
+    this.remoteEvictTimer = remoteTimer("evict", meterRegistry);
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public Object getNativeCache() {
+    return remoteCache.getNativeCache();
+  }
+
+  @Override
+  public ValueWrapper get(Object key) {
+    Object localValue = localCache.getIfPresent(key);
+    if (null != localValue) {
+      localHits.increment();
+      return new SimpleValueWrapper(fromStoreValue(localValue));
+    }
+    if (isLocallyMissing(key)) {
+      negativeHits.increment();
+      return NEGATIVE_HIT;
+    }
+
+    ValueWrapper remoteValue =
+        remote(() -> remoteGetTimer.record(() -> replicaCache.get(key)), null);
+    boolean fromReplica = replicaCache != remoteCache;
+    if (fromReplica && null != remoteValue && null == remoteValue.get()) {
+      // a replica may not have seen the put of a value yet, the master has
+      fromReplica = false;
+      remoteValue = remote(() -> remoteGetTimer.record(() -> remoteCache.get(key)), null);
+    }
+    if (null != remoteValue) {
+      if (null == remoteValue.get() && null != negativeCache) {
+        negativeHits.increment();
+      } else {
+        remoteHits.increment();
+      }
+      if (fromReplica) {
+        // may be older than what an invalidation just dropped, so it is not kept for long
+        localCache.put(key, new ReplicaRead(remoteValue.get()));
+      } else {
+        putLocal(key, remoteValue.get());
+      }
+      return remoteValue;
+    }
+
+    misses.increment();
+    return null;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> T get(Object key, Class<T> type) {
+    ValueWrapper valueWrapper = get(key);
+    Object value = null == valueWrapper ? null : valueWrapper.get();
+    if (null != value && null != type && !type.isInstance(value)) {
+      throw new IllegalStateException(
+          "Cached value is not of required type [" + type.getName() + "]: " + value);
+    }
+    return (T) value;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> T get(Object key, Callable<T> valueLoader) {
+    ValueWrapper valueWrapper = get(key);
+    if (null != valueWrapper) {
+      refreshIfDue(key, valueLoader);
+      return (T) valueWrapper.get();
+    }
+
+    CompletableFuture<Object> load = new CompletableFuture<>();
+    CompletableFuture<Object> inFlightLoad = loads.putIfAbsent(key, load);
+    if (null != inFlightLoad) {
+      coalescedLoads.increment();
+      return (T) await(inFlightLoad);
+    }
+    try {
+      // a load may have finished between the miss and registering this one
+      Object localValue = localCache.getIfPresent(key);
+      Object value;
+      if (null != localValue) {
+        value = fromStoreValue(localValue);
+      } else if (isLocallyMissing(key)) {
+        value = null;
+      } else {
+        value = load(key, valueLoader);
+      }
+      load.complete(value);
+      return (T) value;
+    } catch (RuntimeException | Error e) {
+      load.completeExceptionally(e);
+      throw e;
+    } finally {
+      loads.remove(key, load);
+    }
+  }
+
+  @Override
+  public void put(Object key, Object value) {
+    write(key, value, false, false);
+  }
+
+  /**
+   * @param renew whether an L2 entry already holding this very value is written again, to give it
+   *     a fresh ttl
+   * @param loaded whether the value was just read from its source, which changed nothing that L2
+   *     could hold a stale copy of
+   */
+  private void write(Object key, Object value, boolean renew, boolean loaded) {
+    if (null == value && null != negativeCache) {
+      putNegative(key);
+      return;
+    }
+    if (null != negativeCache) {
+      negativeCache.invalidate(key);
+    }
+    RemoteWrite written;
+    if (value instanceof Versioned && remoteCache.getNativeCache() instanceof RMapCache) {
+      written =
+          remote(
+              () ->
+                  remotePutTimer.record(() -> compareAndSetRemote(key, (Versioned) value, renew)),
+              null);
+    } else {
+      written =
+          remote(
+              () -> {
+                remotePutTimer.record(() -> remoteCache.put(key, value));
+                return RemoteWrite.WRITTEN;
+              },
+              null);
+    }
+    if (null == written) {
+      // L2 is unreachable, this node serves the value from L1 and evicts the old one later, unless
+      // it was only read through and whatever L2 holds is as good as it was
+      localCache.put(key, toStoreValue(value));
+      if (!loaded) {
+        markPendingEviction(key);
+      }
+      return;
+    }
+    switch (written) {
+      case RENEWED:
+        // the other nodes hold this same value, there is nothing for them to drop
+        localCache.put(key, toStoreValue(value));
+        return;
+      case SKIPPED:
+        // L2 already holds this or a newer version, let the next read pick it up
+        localCache.invalidate(key);
+        return;
+      case EVICTED:
+        // the other nodes may still hold the copy that was evicted from L2
+        evictions.increment();
+        localCache.invalidate(key);
+        publishInvalidation(key);
+        return;
+      default:
+        localCache.put(key, toStoreValue(value));
+        publishInvalidation(key);
+    }
+  }
+
+  @Override
+  public ValueWrapper putIfAbsent(Object key, Object value) {
+    ValueWrapper existingValue =
+        remote(
+            () -> remotePutTimer.record(() -> remoteCache.putIfAbsent(key, value)),
+            () -> UNREACHABLE);
+    invalidateLocal(key);
+    if (UNREACHABLE == existingValue) {
+      // nothing was written, but whatever L2 holds may be stale by now
+      markPendingEviction(key);
+      return null;
+    }
+    publishInvalidation(key);
+    return existingValue;
+  }
+
+  @Override
+  public void evict(Object key) {
+    boolean evicted = evictRemote(key);
+    evictions.increment();
+    invalidateLocal(key);
+    if (!evicted) {
+      markPendingEviction(key);
+      return;
+    }
+    publishInvalidation(key);
+  }
+
+  @Override
+  public void clear() {
+    boolean cleared = clearRemote();
+    evictions.increment();
+    invalidateLocal(null);
+    if (!cleared) {
+      clearPending = true;
+      return;
+    }
+    publishInvalidation(null);
+  }
+
+  /**
+   * Evicts from L2 the keys that changed on this node while L2 could not be reached, and tells the
+   * other nodes to drop them. Stops at the first failure, the rest waits for the next call.
+   */
+  public void reconcile() {
+    if (clearPending) {
+      clearPending = false;
+      pendingEvictions.clear();
+      if (!clearRemote()) {
+        clearPending = true;
+        return;
+      }
+      publishInvalidation(null);
+      return;
+    }
+    for (Iterator<Object> keys = pendingEvictions.iterator(); keys.hasNext(); ) {
+      Object key = keys.next();
+      if (!evictRemote(key)) {
+        return;
+      }
+      keys.remove();
+      publishInvalidation(key);
+    }
+    if (!pendingEvictions.isEmpty() || clearPending) {
+      // keys were marked while this ran
+      reconcile();
+    }
+  }
+
+  /**
+   * Drops a key from this node's L1 only
+   *
+   * @param key the key to drop, or null to drop everything
+   */
+  public void invalidateLocal(Object key) {
+    if (null == key) {
+      localCache.invalidateAll();
+      if (null != negativeCache) {
+        negativeCache.invalidateAll();
+      }
+    } else {
+      localCache.invalidate(key);
+      if (null != negativeCache) {
+        negativeCache.invalidate(key);
+      }
+    }
+  }
+
+  public long getLocalHits() {
+    return localHits.sum();
+  }
+
+  public long getRemoteHits() {
+    return remoteHits.sum();
+  }
+
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  /** Lookups answered by a cached miss, from either tier */
+  public long getNegativeHits() {
+    return negativeHits.sum();
+  }
+
+  /** Explicit evictions and clears made through this node */
+  public long getEvictions() {
+    return evictions.sum();
+  }
+
+  /** Entries the L1 dropped on its own, for size or expiry */
+  public long getLocalEvictions() {
+    return localEvictions.sum();
+  }
+
+  /** Values loaded through {@link #get(Object, Callable)}, early refreshes included */
+  public long getLoads() {
+    return loadCount.sum();
+  }
+
+  /** Misses that waited for a load already in flight in this JVM instead of loading */
+  public long getCoalescedLoads() {
+    return coalescedLoads.sum();
+  }
+
+  public long getEarlyRefreshes() {
+    return earlyRefreshes.sum();
+  }
+
+  /** L2 calls that failed or were not made because the circuit breaker was open */
+  public long getDegradedCalls() {
+    return degradedCalls.sum();
+  }
+
+  /** Keys waiting to be evicted from L2 once it can be reached again */
+  public int getPendingEvictions() {
+    return pendingEvictions.size();
+  }
+
+  /** Keys changed during an outage past the pending bound, their L2 copy lives out its ttl */
+  public long getDroppedEvictions() {
+    return droppedEvictions.sum();
+  }
+
+  public long getLocalSize() {
+    return localCache.estimatedSize();
+  }
+
+  /** Share of all lookups answered by L1 */
+  public double getLocalHitRatio() {
+    long total = getLocalHits() + getRemoteHits() + getNegativeHits() + getMisses();
+    return 0 == total ? 0 : (double) getLocalHits() / total;
+  }
+
+  /** Share of all lookups answered by a cached miss */
+  public double getNegativeHitRatio() {
+    long total = getLocalHits() + getRemoteHits() + getNegativeHits() + getMisses();
+    return 0 == total ? 0 : (double) getNegativeHits() / total;
+  }
+
+  /** Share of L1 misses answered by L2 */
+  public double getRemoteHitRatio() {
+    long total = getRemoteHits() + getMisses();
+    return 0 == total ? 0 : (double) getRemoteHits() / total;
+  }
+
+  /**
+   * Writes a versioned value to L2 unless L2 already holds the same or a newer version of the same
+   * row
+   *
+   * @param renew whether to rewrite the entry when L2 holds this very value, removing it only if it
+   *     is still unchanged and then putting it afresh with a new ttl
+   * @return whether the value was written, skipped or, when the compare-and-set kept failing, the
+   *     key evicted instead
+   */
+  @SuppressWarnings("unchecked")
+  private RemoteWrite compareAndSetRemote(Object key, Versioned value, boolean renew) {
+    RMapCache<Object, Object> remoteMap = (RMapCache<Object, Object>) remoteCache.getNativeCache();
+    long ttl = null == remoteCacheConfig ? 0 : remoteCacheConfig.getTTL();
+    long maxIdleTime = null == remoteCacheConfig ? 0 : remoteCacheConfig.getMaxIdleTime();
+    boolean renewing = false;
+    for (int attempt = 0; attempt < MAX_COMPARE_AND_SET_ATTEMPTS; attempt++) {
+      Object currentValue = remoteMap.get(key);
+      if (null == currentValue) {
+        if (remoteMap.fastPutIfAbsent(
+            key, value, ttl, TimeUnit.MILLISECONDS, maxIdleTime, TimeUnit.MILLISECONDS)) {
+          return renewing ? RemoteWrite.RENEWED : RemoteWrite.WRITTEN;
+        }
+        renewing = false;
+      } else if (currentValue instanceof NullValue) {
+        // a cached miss keeps its short ttl through replace, so drop it and put the value afresh
+        remoteMap.remove(key, currentValue);
+      } else if (renew && value.equals(currentValue)) {
+        // replace keeps the ttl, and a writer that gets in between the two calls simply wins
+        renewing = remoteMap.remove(key, currentValue);
+      } else if (!supersedes(value, currentValue)) {
+        return RemoteWrite.SKIPPED;
+      } else if (remoteMap.replace(key, currentValue, value)) {
+        return RemoteWrite.WRITTEN;
+      }
+    }
+    // drop the entry rather than leave a stale one, e.g. one whose stored encoding differs from
+    // what the codec writes today so replace can never match it
+    logger.info("Gave up writing key {} to cache {}, evicting it", key, name);
+    remoteMap.fastRemove(key);
+    return RemoteWrite.EVICTED;
+  }
+
+  /**
+   * Remembers that a key has no value, unless some node cached one meanwhile. The L2 entry gets the
+   * negative ttl rather than the cache's, and is replaced by the next put of a value.
+   */
+  @SuppressWarnings("unchecked")
+  private void putNegative(Object key) {
+    Boolean written;
+    if (remoteCache.getNativeCache() instanceof RMapCache) {
+      RMapCache<Object, Object> remoteMap =
+          (RMapCache<Object, Object>) remoteCache.getNativeCache();
+      written =
+          remote(
+              () ->
+                  remotePutTimer.record(
+                      () ->
+                          remoteMap.fastPutIfAbsent(
+                              key,
+                              NullValue.INSTANCE,
+                              loadConfig.getNegativeTtlMs(),
+                              TimeUnit.MILLISECONDS)),
+              null);
+    } else {
+      written =
+          remote(
+              () -> null == remotePutTimer.record(() -> remoteCache.putIfAbsent(key, null)),
+              null);
+    }
+    // without L2 the miss the source just reported is the best answer there is
+    if (null == written || written) {
+      negativeCache.put(key, Boolean.TRUE);
+    } else {
+      localCache.invalidate(key);
+    }
+  }
+
+  private void putLocal(Object key, Object value) {
+    if (null == value && null != negativeCache) {
+      negativeCache.put(key, Boolean.TRUE);
+    } else {
+      localCache.put(key, toStoreValue(value));
+    }
+  }
+
+  private boolean isLocallyMissing(Object key) {
+    return null != negativeCache && null != negativeCache.getIfPresent(key);
+  }
+
+  /**
+   * Loads a value and caches it. With a distributed lock, the value another node loaded while this
+   * one waited for the lock is taken from L2 instead.
+   */
+  private Object load(Object key, Callable<?> valueLoader) {
+    // no lock without L2, this node's own loads are still coalesced
+    Lock lock =
+        null == lockProvider || isDegraded()
+            ? null
+            : lockProvider.apply(LOCK_PREFIX + name + ":" + key);
+    boolean locked = false;
+    try {
+      if (null != lock) {
+        locked = tryLock(lock);
+        // the lock holder may have filled L2, and when the wait ran out the load goes ahead anyway
+        ValueWrapper remoteValue =
+            remote(() -> remoteGetTimer.record(() -> remoteCache.get(key)), null);
+        if (null != remoteValue) {
+          putLocal(key, remoteValue.get());
+          return remoteValue.get();
+        }
+      }
+      Object value = loadFromSource(key, valueLoader);
+      write(key, value, false, true);
+      return value;
+    } finally {
+      if (locked) {
+        unlock(lock);
+      }
+    }
+  }
+
+  /** Calls the loader and keeps how long it took, for the early refresh of what it loaded */
+  private Object loadFromSource(Object key, Callable<?> valueLoader) {
+    long start = System.nanoTime();
+    Object value;
+    try {
+      value = valueLoader.call();
+    } catch (Exception e) {
+      throw new ValueRetrievalException(key, valueLoader, e);
+    }
+    long loaded = System.nanoTime();
+    loadCount.increment();
+    // misses expire on their own short ttl, there is nothing to refresh early
+    if (null != value && null != remoteCacheConfig && remoteCacheConfig.getTTL() > 0) {
+      loadStats.put(
+          key,
+          new LoadStats(
+              loaded - start, loaded + TimeUnit.MILLISECONDS.toNanos(remoteCacheConfig.getTTL())));
+    }
+    return value;
+  }
+
+  // a wait for the lock is contention, not L2 being slow, so lock calls bypass the breaker
+  private boolean tryLock(Lock lock) {
+    try {
+      return lock.tryLock(loadConfig.getLockWaitMs(), TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    } catch (RuntimeException e) {
+      if (null == circuitBreaker) {
+        throw e;
+      }
+      logger.debug("Could not lock key in cache {}, loading without the lock", name, e);
+      return false;
+    }
+  }
+
+  private void unlock(Lock lock) {
+    try {
+      lock.unlock();
+    } catch (RuntimeException e) {
+      if (null == circuitBreaker) {
+        throw e;
+      }
+      // a lock left behind expires with its lease
+      logger.debug("Could not unlock key in cache {}", name, e);
+    }
+  }
+
+  private Object await(CompletableFuture<Object> load) {
+    try {
+      return load.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for a load of cache " + name, e);
+    } catch (ExecutionException e) {
+      // the exception the loading thread got, so both report the same failure
+      if (e.getCause() instanceof Error) {
+        throw (Error) e.getCause();
+      }
+      throw (RuntimeException) e.getCause();
+    }
+  }
+
+  /**
+   * Reloads a key ahead of its L2 expiry when XFetch says so, off the caller's thread. L2 keeps
+   * serving the current value meanwhile, the reload goes through the same compare-and-set as any
+   * other put and cannot undo a concurrent write.
+   */
+  private void refreshIfDue(Object key, Callable<?> valueLoader) {
+    LoadStats stats = loadStats.getIfPresent(key);
+    if (null == stats || !stats.isDue(loadConfig.getEarlyRefreshBeta()) || isDegraded()) {
+      return;
+    }
+    CompletableFuture<Object> refresh = new CompletableFuture<>();
+    if (null != loads.putIfAbsent(key, refresh)) {
+      return;
+    }
+    earlyRefreshes.increment();
+    // the reload records new stats, until then no other read schedules one
+    loadStats.invalidate(key);
+    try {
+      refreshExecutor.execute(() -> refresh(key, valueLoader, refresh));
+    } catch (RejectedExecutionException e) {
+      // the pool is saturated or shut down, readers may already wait on this refresh
+      refresh(key, valueLoader, refresh);
+    }
+  }
+
+  private void refresh(Object key, Callable<?> valueLoader, CompletableFuture<Object> refresh) {
+    try {
+      Object value = loadFromSource(key, valueLoader);
+      if (null == value) {
+        // gone from the source, a cached miss would not replace the value still in L2
+        evict(key);
+      } else {
+        write(key, value, true, true);
+      }
+      refresh.complete(value);
+    } catch (RuntimeException | Error e) {
+      // readers keep the value they read, the next one that misses reports the failure
+      logger.info("Early refresh of key {} in cache {} failed", key, name, e);
+      refresh.completeExceptionally(e);
+      localCache.invalidate(key);
+      if (e instanceof Error) {
+        throw e;
+      }
+    } finally {
+      loads.remove(key, refresh);
+    }
+  }
+
+  static boolean supersedes(Versioned value, Object currentValue) {
+    if (!(currentValue instanceof Versioned)) {
+      return true;
+    }
+    Versioned currentVersioned = (Versioned) currentValue;
+    if (!Objects.equals(value.getId(), currentVersioned.getId())) {
+      // the key now belongs to another row, versions are not comparable
+      return true;
+    }
+    long version = null == value.getVersion() ? -1 : value.getVersion();
+    long currentVersion =
+        null == currentVersioned.getVersion() ? -1 : currentVersioned.getVersion();
+    return version > currentVersion || (version == currentVersion && !value.equals(currentValue));
+  }
+
+  private Timer remoteTimer(String operation, MeterRegistry meterRegistry) {
+    return Timer.builder("cache.tiered.l2.latency")
+        .description("Latency of calls to the shared L2")
+        .tags("cache", name, "operation", operation)
+        .publishPercentileHistogram()
+        .register(meterRegistry);
+  }
+
+  /**
+   * Makes a call to L2 through the circuit breaker, if there is one
+   *
+   * @param fallback answers when the breaker is open or the call failed, null to answer null
+   */
+  private <T> T remote(Supplier<T> call, Supplier<T> fallback) {
+    if (null == circuitBreaker) {
+      return call.get();
+    }
+    return circuitBreaker.execute(
+        call,
+        () -> {
+          degradedCalls.increment();
+          return null == fallback ? null : fallback.get();
+        });
+  }
+
+  /** True while calls to L2 are being skipped or probed, so work that needs L2 is put off */
+  private boolean isDegraded() {
+    return null != circuitBreaker && !circuitBreaker.isClosed();
+  }
+
+  /** @return false if L2 could not be reached */
+  private boolean evictRemote(Object key) {
+    return remote(
+        () -> {
+          remoteEvictTimer.record(() -> remoteCache.evict(key));
+          return true;
+        },
+        () -> false);
+  }
+
+  /** @return false if L2 could not be reached */
+  private boolean clearRemote() {
+    return remote(
+        () -> {
+          remoteEvictTimer.record(remoteCache::clear);
+          return true;
+        },
+        () -> false);
+  }
+
+  private void markPendingEviction(Object key) {
+    // clearing L2 instead would have every node wipe it the moment Redis is back
+    if (pendingEvictions.size() < MAX_PENDING_EVICTIONS) {
+      pendingEvictions.add(key);
+    } else {
+      droppedEvictions.increment();
+    }
+  }
+
+  private void publishInvalidation(Object key) {
+    // other nodes would not hear of it while L2 is down, they fall back to their L1 ttl
+    if (null == invalidationTopic || isDegraded()) {
+      return;
+    }
+    try {
+      invalidationTopic.publishAsync(new CacheInvalidationMessage(nodeId, name, key));
+    } catch (RuntimeException e) {
+      // the other nodes fall back to their L1 ttl
+      logger.warn("Could not publish invalidation for cache {}", name, e);
+    }
+  }
+
+  /** What a put did to L2 */
+  private enum RemoteWrite {
+    WRITTEN,
+    RENEWED,
+    SKIPPED,
+    EVICTED
+  }
+
+  /** How long this node took to load a key and when the copy it put in L2 expires */
+  private static final class LoadStats {
+    private final long deltaNanos;
+    private final long expiresAtNanos;
+
+    private LoadStats(long deltaNanos, long expiresAtNanos) {
+      this.deltaNanos = deltaNanos;
+      this.expiresAtNanos = expiresAtNanos;
+    }
+
+    private boolean isDue(double beta) {
+      if (beta <= 0) {
+        return false;
+      }
+      double random = 1.0 - ThreadLocalRandom.current().nextDouble();
+      return System.nanoTime() - deltaNanos * beta * Math.log(random) >= expiresAtNanos;
+    }
+  }
+
+  /** L1 entries live for the configured ttl, or the shorter replica ttl when read from one */
+  private static Expiry<Object, Object> localExpiry(LocalCacheConfig localCacheConfig) {
+    long ttlNanos = TimeUnit.MILLISECONDS.toNanos(localCacheConfig.getTtl());
+    long replicaTtlNanos = TimeUnit.MILLISECONDS.toNanos(localCacheConfig.getReplicaTtl());
+    return new Expiry<Object, Object>() {
+      @Override
+      public long expireAfterCreate(Object key, Object value, long currentTime) {
+        return value instanceof ReplicaRead ? replicaTtlNanos : ttlNanos;
+      }
+
+      @Override
+      public long expireAfterUpdate(
+          Object key, Object value, long currentTime, long currentDuration) {
+        return expireAfterCreate(key, value, currentTime);
+      }
+
+      @Override
+      public long expireAfterRead(
+          Object key, Object value, long currentTime, long currentDuration) {
+        return currentDuration;
+      }
+    };
+  }
+
+  /** A value L1 took from a replica */
+  private static final class ReplicaRead {
+    private final Object value;
+
+    private ReplicaRead(Object value) {
+      this.value = value;
+    }
+  }
+
+  private static Object toStoreValue(Object value) {
+    return null == value ? NullValue.INSTANCE : value;
+  }
+
+  private static Object fromStoreValue(Object value) {
+    if (value instanceof ReplicaRead) {
+      return ((ReplicaRead) value).value;
+    }
+    return NullValue.INSTANCE == value ? null : value;
+  }
+}
@@ -0,0 +1,229 @@
+package com.somamission.peanutbutter.cache;
+
+import com.somamission.peanutbutter.support.CircuitBreaker;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.redisson.api.RTopic;
+import org.redisson.spring.cache.CacheConfig;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Function;
+
+/**
+ * Wraps a shared {@link CacheManager} and puts a {@link TieredCache} in front of every cache that
+ * has a {@link LocalCacheConfig}. Caches without one are served straight from the shared manager.
+ */
+public class TieredCacheManager implements CacheManager, DisposableBean {
+  // early refreshes reload from the database, a few threads keep them off the readers' threads
+  private static final int REFRESH_THREADS = 4;
+  private static final int REFRESH_QUEUE_CAPACITY = 1000;
+
+  private final CacheManager remoteCacheManager;
+  private final CacheManager replicaCacheManager;
+  private final Map<String, CacheConfig> remoteCacheConfigs;
+  private final Map<String, LocalCacheConfig> localCacheConfigs;
+  private final Map<String, LoadConfig> loadConfigs;
+  private final RTopic invalidationTopic;
+  private final Function<String, Lock> lockProvider;
+  private final CircuitBreaker circuitBreaker;
+  private final MeterRegistry meterRegistry;
+  private final String nodeId = UUID.randomUUID().toString();
+  private final ThreadPoolExecutor refreshExecutor;
+  private final ConcurrentMap<String, TieredCache> tieredCaches = new ConcurrentHashMap<>();
+
+  /** Reads every cache through remoteCacheManager only */
+  public TieredCacheManager(
+      CacheManager remoteCacheManager,
+      Map<String, CacheConfig> remoteCacheConfigs,
+      Map<String, LocalCacheConfig> localCacheConfigs,
+      Map<String, LoadConfig> loadConfigs,
+      RTopic invalidationTopic,
+      Function<String, Lock> lockProvider,
+      CircuitBreaker circuitBreaker,
+      MeterRegistry meterRegistry) {
+    this(
+        remoteCacheManager,
+        remoteCacheManager,
+        remoteCacheConfigs,
+        localCacheConfigs,
+        loadConfigs,
+        invalidationTopic,
+        lockProvider,
+        circuitBreaker,
+        meterRegistry);
+  }
+
+  /**
+   * @param remoteCacheManager the shared caches, read from the master
+   * @param replicaCacheManager the same caches read from replicas, which only the plain reads of a
+   *     {@link TieredCache} go through
+   * @param loadConfigs how each cache loads misses, {@link LoadConfig#DEFAULT} for caches without
+   *     one
+   * @param lockProvider gives the lock of a name shared by all nodes, e.g. redisson's getLock
+   * @param circuitBreaker shared by every cache, as they all depend on the same Redis, null for
+   *     none
+   */
+  public TieredCacheManager(
+      CacheManager remoteCacheManager,
+      CacheManager replicaCacheManager,
+      Map<String, CacheConfig> remoteCacheConfigs,
+      Map<String, LocalCacheConfig> localCacheConfigs,
+      Map<String, LoadConfig> loadConfigs,
+      RTopic invalidationTopic,
+      Function<String, Lock> lockProvider,
+      CircuitBreaker circuitBreaker,
+      MeterRegistry meterRegistry) {
+    this.remoteCacheManager = remoteCacheManager;
+    this.replicaCacheManager = replicaCacheManager;
+    this.remoteCacheConfigs = remoteCacheConfigs;
+    this.localCacheConfigs = localCacheConfigs;
+    this.loadConfigs = loadConfigs;
+    this.invalidationTopic = invalidationTopic;
+    this.lockProvider = lockProvider;
+    this.circuitBreaker = circuitBreaker;
+    this.meterRegistry = meterRegistry;
+    AtomicInteger threadCount = new AtomicInteger();
+    this.refreshExecutor =
+        new ThreadPoolExecutor(
+            REFRESH_THREADS,
+            REFRESH_THREADS,
+            0L,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(REFRESH_QUEUE_CAPACITY),
+            runnable -> {
+              Thread thread =
+                  new Thread(runnable, "cache-refresh-" + threadCount.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            },
+            new ThreadPoolExecutor.AbortPolicy());
+
+    invalidationTopic.addListener(
+        CacheInvalidationMessage.class,
+        (channel, message) -> {
+          if (nodeId.equals(message.getOrigin())) {
+            return;
+          }
+          TieredCache tieredCache = tieredCaches.get(message.getCacheName());
+          if (null != tieredCache) {
+            tieredCache.invalidateLocal(message.getKey());
+          }
+        });
+  }
+
+  @Override
+  public Cache getCache(String name) {
+    LocalCacheConfig localCacheConfig = localCacheConfigs.get(name);
+    if (null == localCacheConfig) {
+      return remoteCacheManager.getCache(name);
+    }
+    return tieredCaches.computeIfAbsent(
+        name, cacheName -> createTieredCache(cacheName, localCacheConfig));
+  }
+
+  @Override
+  public Collection<String> getCacheNames() {
+    return remoteCacheManager.getCacheNames();
+  }
+
+  // refreshes already queued still run, so readers waiting on them get their value
+  @Override
+  public void destroy() {
+    refreshExecutor.shutdown();
+  }
+
+  private TieredCache createTieredCache(String name, LocalCacheConfig localCacheConfig) {
+    Cache remoteCache = remoteCacheManager.getCache(name);
+    TieredCache tieredCache =
+        new TieredCache(
+            remoteCache,
+            replicaCacheManager == remoteCacheManager
+                ? remoteCache
+                : replicaCacheManager.getCache(name),
+            remoteCacheConfigs.get(name),
+            localCacheConfig,
+            loadConfigs.getOrDefault(name, LoadConfig.DEFAULT),
+            invalidationTopic,
+            lockProvider,
+            nodeId,
+            circuitBreaker,
+            refreshExecutor,
+            meterRegistry);
+    if (null != circuitBreaker) {
+      circuitBreaker.onClose(tieredCache::reconcile);
+    }
+    bindMetrics(tieredCache);
+    return tieredCache;
+  }
+
+  private void bindMetrics(TieredCache tieredCache) {
+    String cacheName = tieredCache.getName();
+    FunctionCounter.builder("cache.tiered.gets", tieredCache, TieredCache::getLocalHits)
+        .tags("cache", cacheName, "result", "l1_hit")
+        .register(meterRegistry);
+    FunctionCounter.builder("cache.tiered.gets", tieredCache, TieredCache::getRemoteHits)
+        .tags("cache", cacheName, "result", "l2_hit")
+        .register(meterRegistry);
+    FunctionCounter.builder("cache.tiered.gets", tieredCache, TieredCache::getMisses)
+        .tags("cache", cacheName, "result", "miss")
+        .register(meterRegistry);
+    FunctionCounter.builder("cache.tiered.gets", tieredCache, TieredCache::getNegativeHits)
+        .tags("cache", cacheName, "result", "negative_hit")
+        .register(meterRegistry);
+    FunctionCounter.builder("cache.tiered.evictions", tieredCache, TieredCache::getEvictions)
+        .tags("cache", cacheName, "tier", "l2")
+        .register(meterRegistry);
+    FunctionCounter.builder(
+            "cache.tiered.evictions", tieredCache, TieredCache::getLocalEvictions)
+        .tags("cache", cacheName, "tier", "l1")
+        .register(meterRegistry);
+    FunctionCounter.builder("cache.tiered.loads", tieredCache, TieredCache::getLoads)
+        .tags("cache", cacheName, "result", "loaded")
+        .register(meterRegistry);
+    FunctionCounter.builder("cache.tiered.loads", tieredCache, TieredCache::getCoalescedLoads)
+        .tags("cache", cacheName, "result", "coalesced")
+        .register(meterRegistry);
+    FunctionCounter.builder(
+            "cache.tiered.early.refreshes", tieredCache, TieredCache::getEarlyRefreshes)
+        .tags("cache", cacheName)
+        .register(meterRegistry);
+    Gauge.builder("cache.tiered.hit.ratio", tieredCache, TieredCache::getLocalHitRatio)
+        .tags("cache", cacheName, "tier", "l1")
+        .register(meterRegistry);
+    Gauge.builder("cache.tiered.hit.ratio", tieredCache, TieredCache::getRemoteHitRatio)
+        .tags("cache", cacheName, "tier", "l2")
+        .register(meterRegistry);
+    Gauge.builder(
+            "cache.tiered.negative.hit.ratio", tieredCache, TieredCache::getNegativeHitRatio)
+        .tags("cache", cacheName)
+        .register(meterRegistry);
+    Gauge.builder("cache.tiered.l1.size", tieredCache, TieredCache::getLocalSize)
+        .tags("cache", cacheName)
+        .register(meterRegistry);
+    FunctionCounter.builder(
+            "cache.tiered.degraded.calls", tieredCache, TieredCache::getDegradedCalls)
+        .tags("cache", cacheName)
+        .register(meterRegistry);
+    Gauge.builder(
+            "cache.tiered.pending.evictions", tieredCache, TieredCache::getPendingEvictions)
+        .tags("cache", cacheName)
+        .register(meterRegistry);
+    FunctionCounter.builder(
+            "cache.tiered.dropped.evictions", tieredCache, TieredCache::getDroppedEvictions)
+        .tags("cache", cacheName)
+        .register(meterRegistry);
+  }
+}
@@ -0,0 +1,256 @@
+package com.somamission.peanutbutter.cache;
+
+import com.somamission.peanutbutter.domain.User;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import org.redisson.client.codec.BaseCodec;
+import org.redisson.client.codec.Codec;
+import org.redisson.client.handler.State;
+import org.redisson.client.protocol.Decoder;
+import org.redisson.client.protocol.Encoder;
+import org.redisson.codec.FstCodec;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+/**
+ * Compact binary codec for cached {@link User}s. Anything else, map keys included, goes through
+ * the fallback codec, which also decodes users cached before this codec was registered.
+ *
+ * <p>Layout: two magic bytes, the schema version, the number of field slots written, a bit per
+ * slot telling which fields are present and the length of the body, all as varints. The body holds
+ * the present fields in slot order, numbers as zigzag varints and strings as a varint byte length
+ * followed by UTF-8. Slots are only ever appended: a reader fills the slots it knows, leaves newer
+ * ones to be skipped with the body length and treats slots missing from older entries as null.
+ * The schema version only changes with the layout itself, never for an added field.
+ */
+public class UserCodec extends BaseCodec {
+  static final byte MAGIC_HIGH = (byte) 0xB5;
+  static final byte MAGIC_LOW = (byte) 0x75;
+  static final int SCHEMA_VERSION = 1;
+
+  private static final int USER_ID = 0;
+  private static final int VERSION = 1;
+  private static final int USERNAME = 2;
+  private static final int EMAIL = 3;
+  private static final int PASSWORD = 4;
+  private static final int PROFILE_PHOTO_URL = 5;
+  private static final int COVER_PHOTO_URL = 6;
+  private static final int FIRST_NAME = 7;
+  private static final int LAST_NAME = 8;
+  private static final int FULL_ADDRESS = 9;
+  private static final int CREATED_AT = 10;
+  // slots share one presence long, so a user can grow to 64 fields
+  private static final int FIELD_COUNT = 11;
+
+  private final Codec fallbackCodec;
+
+  private final Encoder encoder = this::encode;
+
+  private final Decoder<Object> decoder = this::decode;
+
+  /** Falls back to FST, the codec redisson uses when none is configured */
+  public UserCodec() {
+    this(new FstCodec());
+  }
+
+  public UserCodec(Codec fallbackCodec) {
+    this.fallbackCodec = null == fallbackCodec ? new FstCodec() : fallbackCodec;
+  }
+
+  /** Used by redisson to copy a codec onto another class loader */
+  public UserCodec(ClassLoader classLoader, UserCodec codec) throws ReflectiveOperationException {
+    this(copy(classLoader, codec.fallbackCodec));
+  }
+
+  @Override
+  public Decoder<Object> getValueDecoder() {
+    return decoder;
+  }
+
+  @Override
+  public Encoder getValueEncoder() {
+    return encoder;
+  }
+
+  @Override
+  public Decoder<Object> getMapKeyDecoder() {
+    return fallbackCodec.getMapKeyDecoder();
+  }
+
+  @Override
+  public Encoder getMapKeyEncoder() {
+    return fallbackCodec.getMapKeyEncoder();
+  }
+
+  @Override
+  public ClassLoader getClassLoader() {
+    return fallbackCodec.getClassLoader();
+  }
+
+  private ByteBuf encode(Object value) throws IOException {
+    if (!(value instanceof User)) {
+      return fallbackCodec.getValueEncoder().encode(value);
+    }
+    User user = (User) value;
+    Object[] fields = new Object[FIELD_COUNT];
+    fields[USER_ID] = user.getUserId();
+    fields[VERSION] = user.getVersion();
+    fields[USERNAME] = user.getUsername();
+    fields[EMAIL] = user.getEmail();
+    fields[PASSWORD] = user.getPassword();
+    fields[PROFILE_PHOTO_URL] = user.getProfilePhotoUrl();
+    fields[COVER_PHOTO_URL] = user.getCoverPhotoUrl();
+    fields[FIRST_NAME] = user.getFirstName();
+    fields[LAST_NAME] = user.getLastName();
+    fields[FULL_ADDRESS] = user.getFullAddress();
+    fields[CREATED_AT] = null == user.getCreatedAt() ? null : user.getCreatedAt().getTime();
+
+    long presence = 0;
+    int bodyLength = 0;
+    for (int slot = 0; slot < FIELD_COUNT; slot++) {
+      if (null != fields[slot]) {
+        presence |= 1L << slot;
+        bodyLength += sizeOf(fields[slot]);
+      }
+    }
+
+    ByteBuf out = ByteBufAllocator.DEFAULT.buffer(bodyLength + 8);
+    out.writeByte(MAGIC_HIGH);
+    out.writeByte(MAGIC_LOW);
+    writeVarLong(out, SCHEMA_VERSION);
+    writeVarLong(out, FIELD_COUNT);
+    writeVarLong(out, presence);
+    writeVarLong(out, bodyLength);
+    for (Object field : fields) {
+      if (field instanceof Long) {
+        writeVarLong(out, zigZag((Long) field));
+      } else if (null != field) {
+        String string = (String) field;
+        writeVarLong(out, ByteBufUtil.utf8Bytes(string));
+        ByteBufUtil.writeUtf8(out, string);
+      }
+    }
+    return out;
+  }
+
+  private Object decode(ByteBuf buf, State state) throws IOException {
+    int start = buf.readerIndex();
+    if (buf.readableBytes() < 2
+        || buf.getByte(start) != MAGIC_HIGH
+        || buf.getByte(start + 1) != MAGIC_LOW) {
+      return fallbackCodec.getValueDecoder().decode(buf, state);
+    }
+    buf.skipBytes(2);
+    long schemaVersion = readVarLong(buf);
+    if (schemaVersion > SCHEMA_VERSION) {
+      // written by a newer node, read as a miss rather than failing the request
+      return null;
+    }
+    int fieldCount = (int) readVarLong(buf);
+    long presence = readVarLong(buf);
+    int bodyLength = (int) readVarLong(buf);
+    int bodyEnd = buf.readerIndex() + bodyLength;
+
+    User user = new User();
+    for (int slot = 0; slot < Math.min(fieldCount, FIELD_COUNT); slot++) {
+      if ((presence & (1L << slot)) == 0) {
+        continue;
+      }
+      switch (slot) {
+        case USER_ID:
+          user.setUserId(unZigZag(readVarLong(buf)));
+          break;
+        case VERSION:
+          user.setVersion(unZigZag(readVarLong(buf)));
+          break;
+        case USERNAME:
+          user.setUsername(readString(buf));
+          break;
+        case EMAIL:
+          user.setEmail(readString(buf));
+          break;
+        case PASSWORD:
+          user.setPassword(readString(buf));
+          break;
+        case PROFILE_PHOTO_URL:
+          user.setProfilePhotoUrl(readString(buf));
+          break;
+        case COVER_PHOTO_URL:
+          user.setCoverPhotoUrl(readString(buf));
+          break;
+        case FIRST_NAME:
+          user.setFirstName(readString(buf));
+          break;
+        case LAST_NAME:
+          user.setLastName(readString(buf));
+          break;
+        case FULL_ADDRESS:
+          user.setFullAddress(readString(buf));
+          break;
+        case CREATED_AT:
+          user.setCreatedAt(new Date(unZigZag(readVarLong(buf))));
+          break;
+        default:
+          throw new IllegalStateException("Unhandled user field slot " + slot);
+      }
+    }
+    // fields added after this version of the codec
+    buf.readerIndex(bodyEnd);
+    return user;
+  }
+
+  private static int sizeOf(Object field) {
+    if (field instanceof Long) {
+      return varLongSize(zigZag((Long) field));
+    }
+    int length = ByteBufUtil.utf8Bytes((String) field);
+    return varLongSize(length) + length;
+  }
+
+  private static String readString(ByteBuf buf) {
+    int length = (int) readVarLong(buf);
+    String string = buf.toString(buf.readerIndex(), length, StandardCharsets.UTF_8);
+    buf.skipBytes(length);
+    return string;
+  }
+
+  static void writeVarLong(ByteBuf out, long value) {
+    while ((value & ~0x7FL) != 0) {
+      out.writeByte((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    out.writeByte((int) value);
+  }
+
+  static long readVarLong(ByteBuf buf) {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      byte b = buf.readByte();
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IllegalStateException("Malformed varint in cached user");
+  }
+
+  private static int varLongSize(long value) {
+    int size = 1;
+    while ((value & ~0x7FL) != 0) {
+      size++;
+      value >>>= 7;
+    }
+    return size;
+  }
+
+  static long zigZag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  private static long unZigZag(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+}
@@ -0,0 +1,22 @@
+package com.somamission.peanutbutter.config;
+
+import com.somamission.peanutbutter.support.OptimisticRetryExecutor;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+@Configuration
+public class PersistenceConfig {
+
+  /** Replays user updates that lost a race on the version column */
+  @Bean
+  OptimisticRetryExecutor userUpdateRetryExecutor(Environment env, MeterRegistry meterRegistry) {
+    return new OptimisticRetryExecutor(
+        "users",
+        env.getProperty("users.update.max-attempts", Integer.class, 5),
+        env.getProperty("users.update.backoff-ms", Long.class, 10L),
+        env.getProperty("users.update.max-backoff-ms", Long.class, 200L),
+        meterRegistry);
+  }
+}
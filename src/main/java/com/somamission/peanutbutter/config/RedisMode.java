@@ -0,0 +1,33 @@
+package com.somamission.peanutbutter.config;
+
+/** How the redis nodes the application talks to are laid out, set with redis.mode */
+public enum RedisMode {
+  /** One server at redis.address, REDIS_URL when not set */
+  SINGLE("single"),
+  /** A master and replicas found through the sentinels at redis.nodes */
+  SENTINEL("sentinel"),
+  /** A redis cluster, discovered from any of the nodes at redis.nodes */
+  CLUSTER("cluster"),
+  /** A fixed master at redis.master-address and replicas at redis.replica-addresses */
+  MASTER_REPLICA("master-replica");
+
+  private final String propertyName;
+
+  RedisMode(String propertyName) {
+    this.propertyName = propertyName;
+  }
+
+  /** How the mode is named in redis.mode */
+  public String getPropertyName() {
+    return propertyName;
+  }
+
+  public static RedisMode fromPropertyName(String propertyName) {
+    for (RedisMode mode : values()) {
+      if (mode.propertyName.equalsIgnoreCase(propertyName)) {
+        return mode;
+      }
+    }
+    throw new IllegalArgumentException("Unknown redis.mode " + propertyName);
+  }
+}
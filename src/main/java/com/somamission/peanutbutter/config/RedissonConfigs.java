@@ -0,0 +1,194 @@
+package com.somamission.peanutbutter.config;
+
+import com.somamission.peanutbutter.constants.RedisConstants;
+import org.apache.commons.lang3.StringUtils;
+import org.redisson.config.BaseConfig;
+import org.redisson.config.BaseMasterSlaveServersConfig;
+import org.redisson.config.ClusterServersConfig;
+import org.redisson.config.Config;
+import org.redisson.config.MasterSlaveServersConfig;
+import org.redisson.config.ReadMode;
+import org.redisson.config.SentinelServersConfig;
+import org.springframework.core.env.Environment;
+
+/**
+ * Builds the redisson client configuration for the {@link RedisMode} in redis.mode. With replicas,
+ * reads go to them and writes to the master, as redis.read-mode (replica, master or
+ * master-replica) says. A replica can lag behind its master, so only reads that tolerate a stale
+ * answer should use such a client, the others take {@link #masterReads(Environment)}.
+ *
+ * <p>Pools and threads default per mode and can be set with redis.pool.master-size,
+ * redis.pool.master-min-idle, redis.pool.replica-size, redis.pool.replica-min-idle,
+ * redis.pool.subscription-size, redis.threads and redis.netty-threads. The single mode takes its
+ * pool from the master properties.
+ */
+public final class RedissonConfigs {
+  private RedissonConfigs() {
+    throw new IllegalStateException("Utility class");
+  }
+
+  public static Config fromEnvironment(Environment env) {
+    return build(env, readMode(env.getProperty("redis.read-mode", "replica")));
+  }
+
+  /** The same configuration with every read on the master, whatever redis.read-mode says */
+  public static Config masterReads(Environment env) {
+    return build(env, ReadMode.MASTER);
+  }
+
+  /** Whether {@link #fromEnvironment(Environment)} sends any read to a replica */
+  public static boolean readsFromReplicas(Environment env) {
+    return RedisMode.SINGLE != mode(env)
+        && ReadMode.MASTER != readMode(env.getProperty("redis.read-mode", "replica"));
+  }
+
+  private static Config build(Environment env, ReadMode readMode) {
+    RedisMode mode = mode(env);
+    Config config = new Config();
+    int nodes;
+    switch (mode) {
+      case SINGLE:
+        nodes = 1;
+        applyTimeouts(
+                config
+                    .useSingleServer()
+                    .setAddress(env.getProperty("redis.address", env.getProperty("REDIS_URL"))),
+                env)
+            .setConnectionPoolSize(
+                env.getProperty(
+                    "redis.pool.master-size",
+                    Integer.class,
+                    RedisConstants.DEFAULT_SINGLE_POOL_SIZE))
+            .setConnectionMinimumIdleSize(
+                env.getProperty(
+                    "redis.pool.master-min-idle",
+                    Integer.class,
+                    RedisConstants.DEFAULT_SINGLE_MIN_IDLE))
+            .setSubscriptionConnectionPoolSize(
+                env.getProperty(
+                    "redis.pool.subscription-size",
+                    Integer.class,
+                    RedisConstants.DEFAULT_SUBSCRIPTION_POOL_SIZE));
+        break;
+      case SENTINEL:
+        String[] sentinels = addresses(env, "redis.nodes");
+        nodes = sentinels.length;
+        SentinelServersConfig sentinelConfig =
+            config
+                .useSentinelServers()
+                .setMasterName(env.getRequiredProperty("redis.sentinel.master-name"))
+                .addSentinelAddress(sentinels);
+        applyPools(applyTimeouts(sentinelConfig, env), readMode, env);
+        break;
+      case CLUSTER:
+        String[] clusterNodes = addresses(env, "redis.nodes");
+        nodes = clusterNodes.length;
+        ClusterServersConfig clusterConfig =
+            config
+                .useClusterServers()
+                .addNodeAddress(clusterNodes)
+                .setScanInterval(
+                    env.getProperty("redis.cluster.scan-interval-ms", Integer.class, 5000));
+        applyPools(applyTimeouts(clusterConfig, env), readMode, env);
+        break;
+      case MASTER_REPLICA:
+        String[] replicas = addresses(env, "redis.replica-addresses");
+        nodes = 1 + replicas.length;
+        MasterSlaveServersConfig masterReplicaConfig =
+            config
+                .useMasterSlaveServers()
+                .setMasterAddress(env.getRequiredProperty("redis.master-address"))
+                .addSlaveAddress(replicas);
+        applyPools(applyTimeouts(masterReplicaConfig, env), readMode, env);
+        break;
+      default:
+        throw new IllegalStateException("Unhandled redis mode " + mode);
+    }
+
+    // each node gets its own connections, so the event loops grow with the nodes
+    config.setNettyThreads(
+        env.getProperty(
+            "redis.netty-threads",
+            Integer.class,
+            Math.max(
+                RedisConstants.MIN_NETTY_THREADS, RedisConstants.NETTY_THREADS_PER_NODE * nodes)));
+    Integer threads = env.getProperty("redis.threads", Integer.class);
+    if (null != threads) {
+      config.setThreads(threads);
+    }
+    return config;
+  }
+
+  /**
+   * redis.timeout-ms and redis.retry-attempts bound how long a call waits on a node that does not
+   * answer, before the circuit breaker takes over
+   */
+  private static <T extends BaseConfig<T>> T applyTimeouts(T serversConfig, Environment env) {
+    return serversConfig
+        .setTimeout(
+            env.getProperty("redis.timeout-ms", Integer.class, RedisConstants.DEFAULT_TIMEOUT_MS))
+        .setRetryAttempts(
+            env.getProperty(
+                "redis.retry-attempts", Integer.class, RedisConstants.DEFAULT_RETRY_ATTEMPTS))
+        .setRetryInterval(
+            env.getProperty(
+                "redis.retry-interval-ms",
+                Integer.class,
+                RedisConstants.DEFAULT_RETRY_INTERVAL_MS));
+  }
+
+  private static <T extends BaseMasterSlaveServersConfig<T>> void applyPools(
+      T serversConfig, ReadMode readMode, Environment env) {
+    serversConfig
+        .setReadMode(readMode)
+        .setMasterConnectionPoolSize(
+            env.getProperty(
+                "redis.pool.master-size", Integer.class, RedisConstants.DEFAULT_MASTER_POOL_SIZE))
+        .setMasterConnectionMinimumIdleSize(
+            env.getProperty(
+                "redis.pool.master-min-idle",
+                Integer.class,
+                RedisConstants.DEFAULT_MASTER_MIN_IDLE))
+        .setSlaveConnectionPoolSize(
+            env.getProperty(
+                "redis.pool.replica-size",
+                Integer.class,
+                RedisConstants.DEFAULT_REPLICA_POOL_SIZE))
+        .setSlaveConnectionMinimumIdleSize(
+            env.getProperty(
+                "redis.pool.replica-min-idle",
+                Integer.class,
+                RedisConstants.DEFAULT_REPLICA_MIN_IDLE))
+        .setSubscriptionConnectionPoolSize(
+            env.getProperty(
+                "redis.pool.subscription-size",
+                Integer.class,
+                RedisConstants.DEFAULT_SUBSCRIPTION_POOL_SIZE));
+  }
+
+  private static RedisMode mode(Environment env) {
+    return RedisMode.fromPropertyName(
+        env.getProperty("redis.mode", RedisMode.SINGLE.getPropertyName()));
+  }
+
+  private static ReadMode readMode(String propertyName) {
+    switch (StringUtils.lowerCase(propertyName)) {
+      case "replica":
+        return ReadMode.SLAVE;
+      case "master":
+        return ReadMode.MASTER;
+      case "master-replica":
+        return ReadMode.MASTER_SLAVE;
+      default:
+        throw new IllegalArgumentException("Unknown redis.read-mode " + propertyName);
+    }
+  }
+
+  private static String[] addresses(Environment env, String property) {
+    String[] addresses = StringUtils.split(env.getProperty(property, ""), ',');
+    for (int i = 0; i < addresses.length; i++) {
+      addresses[i] = StringUtils.trim(addresses[i]);
+    }
+    return addresses;
+  }
+}
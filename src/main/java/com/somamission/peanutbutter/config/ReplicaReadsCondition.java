@@ -0,0 +1,13 @@
+package com.somamission.peanutbutter.config;
+
+import org.springframework.context.annotation.Condition;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+
+/** Matches when redis.mode and redis.read-mode send reads to replicas */
+class ReplicaReadsCondition implements Condition {
+  @Override
+  public boolean matches(ConditionContext context, AnnotatedTypeMetadata metadata) {
+    return RedissonConfigs.readsFromReplicas(context.getEnvironment());
+  }
+}
@@ -1,36 +1,184 @@
 package com.somamission.peanutbutter.config;
 
+import com.somamission.peanutbutter.cache.LoadConfig;
+import com.somamission.peanutbutter.cache.LocalCacheConfig;
+import com.somamission.peanutbutter.cache.TieredCacheManager;
+import com.somamission.peanutbutter.cache.UserCodec;
 import com.somamission.peanutbutter.constants.CacheConstants;
+import com.somamission.peanutbutter.support.CircuitBreaker;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.commons.lang3.StringUtils;
 import org.redisson.Redisson;
 import org.redisson.api.RedissonClient;
-import org.redisson.config.Config;
+import org.redisson.client.RedisException;
 import org.redisson.spring.cache.CacheConfig;
 import org.redisson.spring.cache.RedissonSpringCacheManager;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.support.CompositeCacheManager;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Conditional;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.core.env.Environment;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Configuration
 @EnableCaching
 public class SpringCacheConfig {
 
+  /**
+   * A single server unless redis.mode says otherwise, see {@link RedissonConfigs}. Reads go to the
+   * master, so locks, compare-and-set and the availability filters never see a lagging replica.
+   */
   @Bean
+  @Primary
   public RedissonClient redissonClient(Environment env) {
-    Config config = new Config();
-    config.useSingleServer().setAddress(env.getProperty("REDIS_URL"));
-    return Redisson.create(config);
+    return Redisson.create(RedissonConfigs.masterReads(env));
   }
 
+  /** Reads as redis.read-mode says, for the plain reads of the caches only */
   @Bean
-  CacheManager redisCacheManager(RedissonClient redissonClient) {
+  @Conditional(ReplicaReadsCondition.class)
+  public RedissonClient replicaRedissonClient(Environment env) {
+    return Redisson.create(RedissonConfigs.fromEnvironment(env));
+  }
+
+  /**
+   * Guards the calls the caches, the rate limiter and the availability filters make to Redis.
+   * Configured with redis.circuit-breaker.window-size, minimum-calls, failure-rate, slow-call-ms,
+   * open-ms and half-open-probes.
+   */
+  @Bean
+  public CircuitBreaker redisCircuitBreaker(MeterRegistry meterRegistry, Environment env) {
+    String prefix = "redis.circuit-breaker.";
+    return new CircuitBreaker(
+        "redis",
+        RedisException.class,
+        env.getProperty(prefix + "window-size", Integer.class, 100),
+        env.getProperty(prefix + "minimum-calls", Integer.class, 20),
+        env.getProperty(prefix + "failure-rate", Double.class, 0.5d),
+        env.getProperty(prefix + "slow-call-ms", Long.class, 250L),
+        env.getProperty(prefix + "open-ms", Long.class, 5000L),
+        env.getProperty(prefix + "half-open-probes", Integer.class, 5),
+        meterRegistry);
+  }
+
+  @Bean
+  CacheManager cacheManager(
+      RedissonClient redissonClient,
+      @Qualifier("replicaRedissonClient") ObjectProvider<RedissonClient> replicaRedissonClient,
+      CircuitBreaker redisCircuitBreaker,
+      MeterRegistry meterRegistry,
+      Environment env) {
     Map<String, CacheConfig> config = new HashMap<>();
     config.put(
-        "users", new CacheConfig(CacheConstants.USERS_TTL, CacheConstants.USERS_MAX_IDLE_TIME));
-    return new RedissonSpringCacheManager(redissonClient, config);
+        CacheConstants.USERS,
+        new CacheConfig(CacheConstants.USERS_TTL, CacheConstants.USERS_MAX_IDLE_TIME));
+    config.put(
+        CacheConstants.USERS_JSON,
+        new CacheConfig(CacheConstants.USERS_TTL, CacheConstants.USERS_MAX_IDLE_TIME));
+
+    CacheManager remoteCacheManager = remoteCacheManager(redissonClient, config);
+    RedissonClient replicaClient = replicaRedissonClient.getIfAvailable();
+    return new TieredCacheManager(
+        remoteCacheManager,
+        null == replicaClient ? remoteCacheManager : remoteCacheManager(replicaClient, config),
+        config,
+        localCacheConfigs(env),
+        loadConfigs(env),
+        redissonClient.getTopic(CacheConstants.INVALIDATION_TOPIC),
+        redissonClient::getLock,
+        redisCircuitBreaker,
+        meterRegistry);
+  }
+
+  private static CacheManager remoteCacheManager(
+      RedissonClient redissonClient, Map<String, CacheConfig> config) {
+    // users get their own compact codec, which still reads entries written with the default one
+    RedissonSpringCacheManager usersCacheManager =
+        new RedissonSpringCacheManager(
+            redissonClient,
+            Collections.singletonMap(CacheConstants.USERS, config.get(CacheConstants.USERS)),
+            new UserCodec(redissonClient.getConfig().getCodec()));
+    usersCacheManager.setCacheNames(Collections.singleton(CacheConstants.USERS));
+    RedissonSpringCacheManager redissonCacheManager =
+        new RedissonSpringCacheManager(redissonClient, config);
+    return new CompositeCacheManager(usersCacheManager, redissonCacheManager);
+  }
+
+  /**
+   * Reads how every cache listed in cache.local.names loads misses, e.g.
+   * cache.users.load.distributed-lock, cache.users.load.lock-wait-ms,
+   * cache.users.load.early-refresh-beta, and cache.users.load.negative-ttl-ms and
+   * cache.users.load.negative-max-size for keys found missing, 0 turning that off
+   */
+  private Map<String, LoadConfig> loadConfigs(Environment env) {
+    Map<String, LoadConfig> loadConfigs = new HashMap<>();
+    for (String name : localCacheNames(env)) {
+      String prefix = "cache." + name + ".load.";
+      loadConfigs.put(
+          name,
+          new LoadConfig(
+              env.getProperty(prefix + "distributed-lock", Boolean.class, false),
+              env.getProperty(prefix + "lock-wait-ms", Long.class, 200L),
+              env.getProperty(
+                  prefix + "early-refresh-beta",
+                  Double.class,
+                  LoadConfig.DEFAULT.getEarlyRefreshBeta()),
+              env.getProperty(
+                  prefix + "negative-ttl-ms", Long.class, CacheConstants.NEGATIVE_DEFAULT_TTL),
+              env.getProperty(
+                  prefix + "negative-max-size",
+                  Long.class,
+                  CacheConstants.NEGATIVE_DEFAULT_MAX_SIZE)));
+    }
+    return loadConfigs;
+  }
+
+  /**
+   * Reads the L1 bounds of every cache listed in cache.local.names, e.g.
+   * cache.users.local.max-size, cache.users.local.ttl-ms and cache.users.local.replica-ttl-ms for
+   * values read from a replica
+   */
+  private Map<String, LocalCacheConfig> localCacheConfigs(Environment env) {
+    Map<String, LocalCacheConfig> localCacheConfigs = new HashMap<>();
+    for (String name : localCacheNames(env)) {
+      long maxSize =
+          env.getProperty(
+              "cache." + name + ".local.max-size",
+              Long.class,
+              CacheConstants.LOCAL_DEFAULT_MAX_SIZE);
+      long ttl =
+          env.getProperty(
+              "cache." + name + ".local.ttl-ms", Long.class, CacheConstants.LOCAL_DEFAULT_TTL);
+      long replicaTtl =
+          env.getProperty(
+              "cache." + name + ".local.replica-ttl-ms",
+              Long.class,
+              Math.min(ttl, CacheConstants.LOCAL_DEFAULT_REPLICA_TTL));
+      localCacheConfigs.put(name, new LocalCacheConfig(maxSize, ttl, replicaTtl));
+    }
+    return localCacheConfigs;
+  }
+
+  private static List<String> localCacheNames(Environment env) {
+    List<String> names = new ArrayList<>();
+    String[] cacheNames =
+        StringUtils.split(
+            env.getProperty(
+                "cache.local.names", CacheConstants.USERS + "," + CacheConstants.USERS_JSON),
+            ',');
+    for (String cacheName : cacheNames) {
+      names.add(StringUtils.trim(cacheName));
+    }
+    return names;
   }
 }
@@ -0,0 +1,79 @@
+package com.somamission.peanutbutter.config;
+
+import com.somamission.peanutbutter.constants.RateLimitConstants;
+import com.somamission.peanutbutter.ratelimit.DistributedRateLimiter;
+import com.somamission.peanutbutter.ratelimit.RateLimitConfig;
+import com.somamission.peanutbutter.ratelimit.RateLimitInterceptor;
+import com.somamission.peanutbutter.ratelimit.RateLimitScope;
+import com.somamission.peanutbutter.support.CircuitBreaker;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class WebMvcConfig implements WebMvcConfigurer {
+  @Autowired private RedissonClient redissonClient;
+
+  @Autowired private CircuitBreaker redisCircuitBreaker;
+
+  @Autowired private MeterRegistry meterRegistry;
+
+  @Autowired private Environment env;
+
+  @Bean
+  public DistributedRateLimiter rateLimiter() {
+    return new DistributedRateLimiter(
+        redissonClient,
+        env.getProperty(
+            "rate-limit.local-share", Double.class, RateLimitConstants.DEFAULT_LOCAL_SHARE),
+        env.getProperty(
+            "rate-limit.local.max-size", Long.class, RateLimitConstants.DEFAULT_LOCAL_MAX_SIZE),
+        redisCircuitBreaker);
+  }
+
+  @Override
+  public void addInterceptors(InterceptorRegistry registry) {
+    if (env.getProperty("rate-limit.enabled", Boolean.class, true)) {
+      registry.addInterceptor(
+          new RateLimitInterceptor(rateLimiter(), this::rateLimitConfig, meterRegistry));
+    }
+  }
+
+  /**
+   * Reads the limit of a bucket in a scope, e.g. rate-limit.reset-password.user.permits and
+   * rate-limit.reset-password.user.period-ms, falling back to rate-limit.default.user.permits and
+   * period-ms. 0 permits turns the limit off.
+   */
+  private RateLimitConfig rateLimitConfig(String bucket, RateLimitScope scope) {
+    String defaultPrefix = "rate-limit.default." + scope.getPropertyName() + ".";
+    String prefix = "rate-limit." + bucket + "." + scope.getPropertyName() + ".";
+    long permits =
+        env.getProperty(
+            prefix + "permits",
+            Long.class,
+            env.getProperty(defaultPrefix + "permits", Long.class, defaultPermits(scope)));
+    long periodMs =
+        env.getProperty(
+            prefix + "period-ms",
+            Long.class,
+            env.getProperty(
+                defaultPrefix + "period-ms", Long.class, RateLimitConstants.DEFAULT_PERIOD_MS));
+    return new RateLimitConfig(permits, periodMs);
+  }
+
+  private static long defaultPermits(RateLimitScope scope) {
+    switch (scope) {
+      case USER:
+        return RateLimitConstants.DEFAULT_USER_PERMITS;
+      case IP:
+        return RateLimitConstants.DEFAULT_IP_PERMITS;
+      default:
+        return RateLimitConstants.DEFAULT_GLOBAL_PERMITS;
+    }
+  }
+}
@@ -1,31 +1,82 @@
 package com.somamission.peanutbutter.config;
 
-import com.somamission.peanutbutter.impl.UserService;
 import com.somamission.peanutbutter.intf.IUserService;
+import com.somamission.peanutbutter.security.BCryptHashAlgorithm;
+import com.somamission.peanutbutter.security.BoundedPasswordEncoder;
+import com.somamission.peanutbutter.security.CalibratedPasswordEncoder;
+import com.somamission.peanutbutter.security.PasswordHashAlgorithm;
+import com.somamission.peanutbutter.security.Pbkdf2HashAlgorithm;
+import com.somamission.peanutbutter.security.UserPasswordAuthenticationProvider;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.core.env.Environment;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
 @Configuration
 @EnableWebSecurity
 public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
   @Bean
-  public PasswordEncoder passwordEncoder() {
-    return new BCryptPasswordEncoder();
+  public BoundedPasswordEncoder passwordEncoder(Environment env, MeterRegistry meterRegistry) {
+    int threads =
+        env.getProperty(
+            "password.hashing.threads", Integer.class, Runtime.getRuntime().availableProcessors());
+    return new BoundedPasswordEncoder(
+        calibratedPasswordEncoder(env, meterRegistry),
+        threads,
+        env.getProperty("password.hashing.queue-capacity", Integer.class, threads * 4),
+        env.getProperty("password.hashing.timeout-ms", Long.class, 5000L),
+        env.getProperty("password.hashing.retry-after-seconds", Long.class, 1L),
+        meterRegistry);
+  }
+
+  /**
+   * Picks the cost of password.hashing.algorithm that fits password.hashing.target-ms on this
+   * machine. Hashes from the other known algorithms keep verifying and get upgraded on their next
+   * successful check.
+   */
+  private CalibratedPasswordEncoder calibratedPasswordEncoder(
+      Environment env, MeterRegistry meterRegistry) {
+    PasswordHashAlgorithm bcrypt = new BCryptHashAlgorithm();
+    PasswordHashAlgorithm pbkdf2 = new Pbkdf2HashAlgorithm();
+    String algorithmId = env.getProperty("password.hashing.algorithm", BCryptHashAlgorithm.ID);
+    PasswordHashAlgorithm algorithm;
+    if (BCryptHashAlgorithm.ID.equals(algorithmId)) {
+      algorithm = bcrypt;
+    } else if (Pbkdf2HashAlgorithm.ID.equals(algorithmId)) {
+      algorithm = pbkdf2;
+    } else {
+      throw new IllegalStateException("Unknown password hashing algorithm: " + algorithmId);
+    }
+
+    CalibratedPasswordEncoder encoder =
+        CalibratedPasswordEncoder.calibrate(
+            algorithm,
+            env.getProperty("password.hashing.target-ms", Long.class, 250L),
+            bcrypt,
+            pbkdf2);
+    Gauge.builder("password.hashing.cost", encoder, CalibratedPasswordEncoder::getCost)
+        .tag("algorithm", encoder.getAlgorithmId())
+        .register(meterRegistry);
+    Gauge.builder(
+            "password.hashing.calibrated.time",
+            encoder,
+            CalibratedPasswordEncoder::getCalibratedMillis)
+        .tag("algorithm", encoder.getAlgorithmId())
+        .baseUnit("milliseconds")
+        .register(meterRegistry);
+    return encoder;
   }
 
   @Bean
-  public DaoAuthenticationProvider authProvider(IUserService userService) {
-    DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
-    authProvider.setUserDetailsService(userService);
-    authProvider.setPasswordEncoder(passwordEncoder());
-    return authProvider;
+  public UserPasswordAuthenticationProvider authProvider(
+      IUserService userService, PasswordEncoder passwordEncoder) {
+    return new UserPasswordAuthenticationProvider(userService, passwordEncoder);
   }
 
   @Override
@@ -47,7 +98,7 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
 
   @Override
   protected void configure(AuthenticationManagerBuilder auth) {
-    IUserService userService = new UserService();
-    auth.authenticationProvider(authProvider(userService));
+    auth.authenticationProvider(
+        getApplicationContext().getBean(UserPasswordAuthenticationProvider.class));
   }
 }
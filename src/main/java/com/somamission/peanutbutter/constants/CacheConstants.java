@@ -1,6 +1,20 @@
 package com.somamission.peanutbutter.constants;
 
 public class CacheConstants {
+  public static final String USERS = "users";
+  public static final String USERS_JSON = "users-json";
   public static final long USERS_TTL = 24 * 60 * 1000L; // 24 minutes
   public static final long USERS_MAX_IDLE_TIME = 12 * 60 * 100L; // 12 minutes
+  public static final long LOCAL_DEFAULT_MAX_SIZE = 10_000L;
+  public static final long LOCAL_DEFAULT_TTL = 60 * 1000L; // 1 minute
+  public static final long LOCAL_DEFAULT_REPLICA_TTL = 1000L; // 1 second
+  public static final long NEGATIVE_DEFAULT_MAX_SIZE = 100_000L;
+  public static final long NEGATIVE_DEFAULT_TTL = 30 * 1000L; // 30 seconds
+  public static final String INVALIDATION_TOPIC = "cache:invalidations";
+  public static final String HOT_USERNAMES = "users:hot";
+  public static final String RESERVED_WORDS_TOPIC = "reserved_words:refresh";
+  public static final String USERNAMES_FILTER = "users:usernames:bloom";
+  public static final String EMAILS_FILTER = "users:emails:bloom";
+  public static final String AVAILABILITY_SEEDED = "users:availability:seeded";
+  public static final String AVAILABILITY_SEEDING = "users:availability:seeding";
 }
@@ -10,6 +10,8 @@ public class ErrorMessageConstants {
   public static final String USERNAME_FORMAT_REQUIREMENTS = "username must not be forbidden";
   public static final String PASSWORD_FORMAT_REQUIREMENTS =
       "password must have at least 8 characters, and a mix of numbers, capital and lower case letters";
+  public static final String PASSWORD_BREACHED =
+      "password appears in a list of breached passwords, please choose another one";
   public static final String URL_FORMAT_REQUIREMENTS =
       "URL must follow this example format: htt[://example.com";
   public static final String REQUIRED_PARAMETER_NOT_FOUND =
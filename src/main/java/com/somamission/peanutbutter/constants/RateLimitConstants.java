@@ -0,0 +1,14 @@
+package com.somamission.peanutbutter.constants;
+
+public class RateLimitConstants {
+  public static final String CREATE_USER = "create-user";
+  public static final String UPDATE_PASSWORD = "update-password";
+  public static final String RESET_PASSWORD = "reset-password";
+  public static final String UPDATE_USER = "update-user";
+  public static final long DEFAULT_USER_PERMITS = 10L;
+  public static final long DEFAULT_IP_PERMITS = 60L;
+  public static final long DEFAULT_GLOBAL_PERMITS = 0L; // no limit
+  public static final long DEFAULT_PERIOD_MS = 60 * 1000L; // 1 minute
+  public static final double DEFAULT_LOCAL_SHARE = 0.05;
+  public static final long DEFAULT_LOCAL_MAX_SIZE = 100_000L;
+}
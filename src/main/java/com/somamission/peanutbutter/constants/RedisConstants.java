@@ -0,0 +1,18 @@
+package com.somamission.peanutbutter.constants;
+
+public class RedisConstants {
+  public static final int DEFAULT_TIMEOUT_MS = 1000;
+  public static final int DEFAULT_RETRY_ATTEMPTS = 1;
+  public static final int DEFAULT_RETRY_INTERVAL_MS = 500;
+  // a single server takes reads and writes alike
+  public static final int DEFAULT_SINGLE_POOL_SIZE = 64;
+  public static final int DEFAULT_SINGLE_MIN_IDLE = 24;
+  // with replica reads the master only sees writes, each replica a share of the reads
+  public static final int DEFAULT_MASTER_POOL_SIZE = 32;
+  public static final int DEFAULT_MASTER_MIN_IDLE = 8;
+  public static final int DEFAULT_REPLICA_POOL_SIZE = 64;
+  public static final int DEFAULT_REPLICA_MIN_IDLE = 24;
+  public static final int DEFAULT_SUBSCRIPTION_POOL_SIZE = 50;
+  public static final int MIN_NETTY_THREADS = 32;
+  public static final int NETTY_THREADS_PER_NODE = 16;
+}
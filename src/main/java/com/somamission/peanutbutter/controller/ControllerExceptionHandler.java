@@ -0,0 +1,38 @@
+package com.somamission.peanutbutter.controller;
+
+import com.somamission.peanutbutter.exception.ServiceUnavailableException;
+import com.somamission.peanutbutter.exception.TooManyRequestsException;
+import com.somamission.peanutbutter.exception.VersionConflictException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+
+/** Maps exceptions whose responses need headers, which @ResponseStatus cannot set */
+@ControllerAdvice
+public class ControllerExceptionHandler {
+
+  @ExceptionHandler(ServiceUnavailableException.class)
+  public ResponseEntity<String> handleServiceUnavailable(ServiceUnavailableException e) {
+    return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+        .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+        .body(e.getMessage());
+  }
+
+  @ExceptionHandler(TooManyRequestsException.class)
+  public ResponseEntity<String> handleTooManyRequests(TooManyRequestsException e) {
+    return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+        .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+        .body(e.getMessage());
+  }
+
+  @ExceptionHandler(VersionConflictException.class)
+  public ResponseEntity<String> handleVersionConflict(VersionConflictException e) {
+    ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.CONFLICT);
+    if (null != e.getCurrentETag()) {
+      response.eTag(e.getCurrentETag());
+    }
+    return response.body(e.getMessage() + ", current version: " + e.getCurrentVersion());
+  }
+}
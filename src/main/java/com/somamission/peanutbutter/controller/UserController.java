@@ -2,94 +2,163 @@ package com.somamission.peanutbutter.controller;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.somamission.peanutbutter.constants.ErrorMessageConstants;
+import com.somamission.peanutbutter.constants.RateLimitConstants;
+import com.somamission.peanutbutter.domain.CachedJson;
 import com.somamission.peanutbutter.domain.User;
+import com.somamission.peanutbutter.domain.Versioned;
 import com.somamission.peanutbutter.exception.BadRequestException;
 import com.somamission.peanutbutter.exception.UserFoundException;
 import com.somamission.peanutbutter.exception.UserNotFoundException;
+import com.somamission.peanutbutter.intf.IUserAvailabilityService;
 import com.somamission.peanutbutter.intf.IUserService;
 import com.somamission.peanutbutter.param.AddressParams;
 import com.somamission.peanutbutter.param.NameParams;
 import com.somamission.peanutbutter.param.PhotoParams;
 import com.somamission.peanutbutter.param.UserParams;
+import com.somamission.peanutbutter.ratelimit.RateLimited;
+import com.somamission.peanutbutter.support.EntityTags;
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 @RestController
 public class UserController {
+  private static final String PREFER = "Prefer";
+  private static final String PREFERENCE_APPLIED = "Preference-Applied";
+  private static final String RETURN_MINIMAL = "return=minimal";
+
   @Autowired private IUserService userService;
 
+  @Autowired private IUserAvailabilityService userAvailabilityService;
+
   @Autowired ObjectMapper objectMapper;
 
+  /**
+   * Serves the cached response body of the user as is, so a cache hit costs neither a query nor
+   * serialization, and an unknown username that was looked up recently costs neither either
+   */
   @GetMapping("/user/{username}")
-  public ResponseEntity<String> getUser(@PathVariable String username)
+  public ResponseEntity<byte[]> getUser(
+      @PathVariable String username,
+      @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch)
       throws UserNotFoundException, JsonProcessingException {
-    return ResponseEntity.ok(
-        objectMapper.writeValueAsString(userService.getUserByUsername(username)));
+    CachedJson json = userService.getUserJson(username);
+    if (EntityTags.matches(ifNoneMatch, EntityTags.of(json))) {
+      return notModified(json);
+    }
+    return ResponseEntity.ok()
+        .eTag(EntityTags.of(json))
+        .contentType(MediaType.APPLICATION_JSON_UTF8)
+        .body(json.getBody());
+  }
+
+  @GetMapping("/user/available")
+  public ResponseEntity<String> isAvailable(
+      @RequestParam(required = false) String username,
+      @RequestParam(required = false) String email)
+      throws BadRequestException, JsonProcessingException {
+    if (StringUtils.isEmpty(username) && StringUtils.isEmpty(email)) {
+      throw new BadRequestException(ErrorMessageConstants.REQUIRED_PARAMETER_NOT_FOUND);
+    }
+    Map<String, Object> availability = new LinkedHashMap<>();
+    if (!StringUtils.isEmpty(username)) {
+      availability.put("username", username);
+      availability.put("usernameAvailable", userAvailabilityService.isUsernameAvailable(username));
+    }
+    if (!StringUtils.isEmpty(email)) {
+      availability.put("email", email);
+      availability.put("emailAvailable", userAvailabilityService.isEmailAvailable(email));
+    }
+    return ResponseEntity.ok(objectMapper.writeValueAsString(availability));
   }
 
   @PostMapping("/user/create")
+  @RateLimited(RateLimitConstants.CREATE_USER)
   public ResponseEntity<String> createUser(@RequestBody UserParams userParams)
       throws UserNotFoundException, BadRequestException, JsonProcessingException,
           UserFoundException {
     String username = userParams.getUsername();
     String email = userParams.getEmail();
     String password = userParams.getPassword();
-    userService.createNewUser(username, email, password);
-    User user = userService.getUserByUsername(username);
-    if (null == user) throw new UserNotFoundException(username);
-    return ResponseEntity.ok(objectMapper.writeValueAsString(user));
+    return toResponse(userService.createNewUser(username, email, password));
   }
 
   @PutMapping("/user/{username}/updatePassword")
+  @RateLimited(RateLimitConstants.UPDATE_PASSWORD)
   public ResponseEntity<String> updatePassword(
       @PathVariable String username, @RequestBody UserParams userParams)
       throws UserNotFoundException, BadRequestException, JsonProcessingException {
     String password = userParams.getPassword();
-    userService.updatePassword(username, password);
-    User user = userService.getUserByUsername(username);
-    if (null == user) throw new UserNotFoundException(username);
-    return ResponseEntity.ok(objectMapper.writeValueAsString(user));
+    return toResponse(userService.updatePassword(username, password));
   }
 
   @PutMapping("/user/{username}/resetPassword")
+  @RateLimited(RateLimitConstants.RESET_PASSWORD)
   public ResponseEntity<String> resetPassword(@PathVariable String username)
       throws UserNotFoundException, BadRequestException, JsonProcessingException {
-    userService.resetPassword(username);
-    User user = userService.getUserByUsername(username);
-    if (null == user) throw new UserNotFoundException(username);
-    return ResponseEntity.ok(objectMapper.writeValueAsString(user));
+    return toResponse(userService.resetPassword(username));
   }
 
   @PutMapping("/user/{username}/updateEmail")
+  @RateLimited(RateLimitConstants.UPDATE_USER)
   public ResponseEntity<String> updateEmail(
       @PathVariable String username, @RequestBody UserParams userParams)
       throws UserNotFoundException, BadRequestException, JsonProcessingException {
     String email = userParams.getEmail();
-    userService.updateEmail(username, email);
-    User user = userService.getUserByUsername(username);
-    if (null == user) throw new UserNotFoundException(username);
-    return ResponseEntity.ok(objectMapper.writeValueAsString(user));
+    return toResponse(userService.updateEmail(username, email));
   }
 
   @PutMapping("/user/{username}/updateInfo")
+  @RateLimited(RateLimitConstants.UPDATE_USER)
   public ResponseEntity<String> updateUserInfo(
       @PathVariable String username, @RequestBody UserParams userParams)
       throws UserNotFoundException, JsonProcessingException, BadRequestException {
     NameParams nameParams = userParams.getNameParams();
     PhotoParams photoParams = userParams.getPhotoParams();
     AddressParams addressParams = userParams.getAddressParams();
-    if (null != nameParams && null != photoParams && null != addressParams) {
-      userService.updateUserInfo(username, nameParams, photoParams, addressParams);
-    } else if (null != nameParams) {
-      userService.updateUserInfo(username, nameParams);
-    } else if (null != photoParams) {
-      userService.updateUserInfo(username, photoParams);
-    } else {
-      userService.updateUserInfo(username, addressParams);
+    // the service skips whichever group is missing, so every combination reaches the same path
+    User user = userService.updateUserInfo(username, nameParams, photoParams, addressParams);
+    return toResponse(user);
+  }
+
+  @PatchMapping("/user/{username}")
+  @RateLimited(RateLimitConstants.UPDATE_USER)
+  public ResponseEntity<String> patchUser(
+      @PathVariable String username,
+      @RequestBody UserParams userParams,
+      @RequestHeader(value = PREFER, required = false) String prefer)
+      throws UserNotFoundException, BadRequestException, JsonProcessingException,
+          UserFoundException {
+    UserParams patchParams =
+        new UserParams.Builder()
+            .withUsername(username)
+            .withEmail(userParams.getEmail())
+            .withNameParams(userParams.getNameParams())
+            .withPhotoParams(userParams.getPhotoParams())
+            .withAddressParams(userParams.getAddressParams())
+            .build();
+    if (null != prefer && prefer.contains(RETURN_MINIMAL)) {
+      userService.patchUserInPlace(patchParams);
+      return ResponseEntity.noContent().header(PREFERENCE_APPLIED, RETURN_MINIMAL).build();
     }
-    User user = userService.getUserByUsername(username);
-    if (null == user) throw new UserNotFoundException(username);
-    return ResponseEntity.ok(objectMapper.writeValueAsString(user));
+    return toResponse(userService.patchUser(patchParams));
+  }
+
+  private ResponseEntity<String> toResponse(User user) throws JsonProcessingException {
+    return ResponseEntity.ok()
+        .eTag(EntityTags.of(user))
+        .body(objectMapper.writeValueAsString(user));
+  }
+
+  private <T> ResponseEntity<T> notModified(Versioned entity) {
+    return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(EntityTags.of(entity)).build();
   }
 }
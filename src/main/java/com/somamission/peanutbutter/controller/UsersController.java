@@ -0,0 +1,80 @@
+package com.somamission.peanutbutter.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.somamission.peanutbutter.exception.BadRequestException;
+import com.somamission.peanutbutter.intf.IUserExportService;
+import com.somamission.peanutbutter.intf.IUserImportService;
+import com.somamission.peanutbutter.intf.IUserListingService;
+import com.somamission.peanutbutter.param.ExportFormat;
+import com.somamission.peanutbutter.param.UserSearchParams;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Date;
+import java.util.Locale;
+
+/** Endpoints working on many users at once, streamed so memory does not grow with the payload */
+@RestController
+public class UsersController {
+  private static final String NDJSON = "application/x-ndjson";
+  private static final String CSV = "text/csv";
+
+  @Autowired private IUserImportService userImportService;
+
+  @Autowired private IUserExportService userExportService;
+
+  @Autowired private IUserListingService userListingService;
+
+  @Autowired private ObjectMapper objectMapper;
+
+  @GetMapping("/users")
+  public ResponseEntity<String> listUsers(
+      @RequestParam(required = false) String emailDomain,
+      @RequestParam(required = false) String namePrefix,
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+          Date createdAfter,
+      @RequestParam(required = false) String pageToken,
+      @RequestParam(required = false) Integer limit)
+      throws BadRequestException, JsonProcessingException {
+    UserSearchParams userSearchParams =
+        new UserSearchParams.Builder()
+            .withEmailDomain(emailDomain)
+            .withNamePrefix(namePrefix)
+            .withCreatedAfter(createdAfter)
+            .withPageToken(pageToken)
+            .withLimit(limit)
+            .build();
+    return ResponseEntity.ok(
+        objectMapper.writeValueAsString(userListingService.listUsers(userSearchParams)));
+  }
+
+  @PostMapping("/users/bulk")
+  public void importUsers(HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    response.setContentType(NDJSON);
+    userImportService.importUsers(request.getInputStream(), response.getOutputStream());
+  }
+
+  @GetMapping("/users/export")
+  public void exportUsers(
+      @RequestParam(defaultValue = "ndjson") String format, HttpServletResponse response)
+      throws IOException, BadRequestException {
+    ExportFormat exportFormat;
+    try {
+      exportFormat = ExportFormat.valueOf(format.toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      throw new BadRequestException("unknown export format " + format);
+    }
+    response.setContentType(ExportFormat.CSV == exportFormat ? CSV : NDJSON);
+    userExportService.exportUsers(exportFormat, response.getOutputStream());
+  }
+}
@@ -0,0 +1,57 @@
+package com.somamission.peanutbutter.domain;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * The serialized response body of one version of a row, cached so reads can write it out without
+ * materializing the entity again
+ */
+public final class CachedJson implements Serializable, Versioned {
+  private static final long serialVersionUID = 1L;
+
+  private final Long id;
+  private final Long version;
+  private final byte[] body;
+
+  public CachedJson(Long id, Long version, byte[] body) {
+    this.id = id;
+    this.version = version;
+    this.body = body;
+  }
+
+  @Override
+  public Long getId() {
+    return id;
+  }
+
+  @Override
+  public Long getVersion() {
+    return version;
+  }
+
+  /** @return the UTF-8 json, shared with the cache so it must not be modified */
+  public byte[] getBody() {
+    return body;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof CachedJson)) {
+      return false;
+    }
+    CachedJson that = (CachedJson) o;
+    return Objects.equals(id, that.id)
+        && Objects.equals(version, that.version)
+        && Arrays.equals(body, that.body);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * Objects.hash(id, version) + Arrays.hashCode(body);
+  }
+}
@@ -1,8 +1,12 @@
 package com.somamission.peanutbutter.domain;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.somamission.peanutbutter.constants.ErrorMessageConstants;
 import lombok.Data;
+import org.apache.commons.lang3.StringUtils;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.DynamicUpdate;
 import org.hibernate.validator.constraints.Length;
 import org.hibernate.validator.constraints.URL;
 
@@ -11,27 +15,46 @@ import javax.validation.constraints.Email;
 import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
 import java.io.Serializable;
+import java.util.Date;
 
 @Entity
-@Table(name = "users")
+@DynamicUpdate
+@Table(
+    name = "users",
+    uniqueConstraints = {
+      @UniqueConstraint(name = User.USERNAME_CONSTRAINT, columnNames = "username"),
+      @UniqueConstraint(name = User.EMAIL_CONSTRAINT, columnNames = "email")
+    },
+    // listing pages by user_id, only the email domain index serves that order, see
+    // UserListingService; the name prefix filter spans two columns and has no index of its own
+    indexes = {
+      @Index(name = "idx_users_email_domain", columnList = "email_domain,user_id"),
+      @Index(name = "idx_users_created_at", columnList = "created_at,user_id")
+    })
 @Data
-public class User implements Serializable {
+public class User implements Serializable, Versioned {
 
   private static final long serialVersionUID = 1L;
 
+  // named so a violation can be traced back to the field that collided
+  public static final String USERNAME_CONSTRAINT = "uk_users_username";
+  public static final String EMAIL_CONSTRAINT = "uk_users_email";
+
+  // pooled ids let hibernate batch inserts instead of fetching an identity per row
   @Id
-  @GeneratedValue(strategy = GenerationType.AUTO)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_seq")
+  @SequenceGenerator(name = "users_seq", sequenceName = "users_seq", allocationSize = 50)
   @Column(name = "user_id")
   private Long userId;
 
   @NotNull
   @Length(min = 3, max = 60)
-  @Column(unique = true)
+  @Column(name = "username")
   private String username;
 
   @NotEmpty
   @Email(message = ErrorMessageConstants.EMAIL_FORMAT_REQUIREMENTS)
-  @Column(unique = true)
+  @Column(name = "email")
   private String email;
 
   @NotNull
@@ -56,4 +79,34 @@ public class User implements Serializable {
 
   @Column(name = "address_full")
   private String fullAddress;
+
+  @Version
+  @Column(name = "version")
+  private Long version;
+
+  // kept next to the email so listings can filter on it through an index
+  @JsonIgnore
+  @Column(name = "email_domain")
+  private String emailDomain;
+
+  @CreationTimestamp
+  @Temporal(TemporalType.TIMESTAMP)
+  @Column(name = "created_at", updatable = false)
+  private Date createdAt;
+
+  public void setEmail(String email) {
+    this.email = email;
+    this.emailDomain = emailDomainOf(email);
+  }
+
+  /** @return the lower cased part of the email after the last @, as kept in email_domain */
+  public static String emailDomainOf(String email) {
+    return StringUtils.lowerCase(StringUtils.substringAfterLast(email, "@"));
+  }
+
+  @Override
+  @JsonIgnore
+  public Long getId() {
+    return userId;
+  }
 }
@@ -0,0 +1,25 @@
+package com.somamission.peanutbutter.domain;
+
+import java.util.List;
+
+public class UserPage {
+  private final List<UserSummary> users;
+  private final String nextPageToken;
+
+  /**
+   * @param users the users of this page, ordered by id
+   * @param nextPageToken opaque token for the following page, null on the last page
+   */
+  public UserPage(List<UserSummary> users, String nextPageToken) {
+    this.users = users;
+    this.nextPageToken = nextPageToken;
+  }
+
+  public List<UserSummary> getUsers() {
+    return users;
+  }
+
+  public String getNextPageToken() {
+    return nextPageToken;
+  }
+}
@@ -0,0 +1,52 @@
+package com.somamission.peanutbutter.domain;
+
+import java.util.Date;
+
+/** Read only projection of a user for listings, never carries the password */
+public class UserSummary {
+  private final Long userId;
+  private final String username;
+  private final String email;
+  private final String firstName;
+  private final String lastName;
+  private final Date createdAt;
+
+  public UserSummary(
+      Long userId,
+      String username,
+      String email,
+      String firstName,
+      String lastName,
+      Date createdAt) {
+    this.userId = userId;
+    this.username = username;
+    this.email = email;
+    this.firstName = firstName;
+    this.lastName = lastName;
+    this.createdAt = createdAt;
+  }
+
+  public Long getUserId() {
+    return userId;
+  }
+
+  public String getUsername() {
+    return username;
+  }
+
+  public String getEmail() {
+    return email;
+  }
+
+  public String getFirstName() {
+    return firstName;
+  }
+
+  public String getLastName() {
+    return lastName;
+  }
+
+  public Date getCreatedAt() {
+    return createdAt;
+  }
+}
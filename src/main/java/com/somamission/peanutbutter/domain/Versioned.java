@@ -0,0 +1,12 @@
+package com.somamission.peanutbutter.domain;
+
+import java.io.Serializable;
+
+/** An entity whose cached copies can be ordered by the version column of its row */
+public interface Versioned {
+  /** @return the primary key of the row the version belongs to */
+  Serializable getId();
+
+  /** @return the optimistic lock version, incremented by every committed update */
+  Long getVersion();
+}
@@ -0,0 +1,18 @@
+package com.somamission.peanutbutter.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.SERVICE_UNAVAILABLE)
+public class ServiceUnavailableException extends RuntimeException {
+  private final long retryAfterSeconds;
+
+  public ServiceUnavailableException(String reason, long retryAfterSeconds) {
+    super("Service unavailable, reason: " + reason);
+    this.retryAfterSeconds = retryAfterSeconds;
+  }
+
+  public long getRetryAfterSeconds() {
+    return retryAfterSeconds;
+  }
+}
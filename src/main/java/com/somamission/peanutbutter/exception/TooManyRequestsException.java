@@ -0,0 +1,18 @@
+package com.somamission.peanutbutter.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.TOO_MANY_REQUESTS)
+public class TooManyRequestsException extends RuntimeException {
+  private final long retryAfterSeconds;
+
+  public TooManyRequestsException(String reason, long retryAfterSeconds) {
+    super("Too many requests, reason: " + reason);
+    this.retryAfterSeconds = retryAfterSeconds;
+  }
+
+  public long getRetryAfterSeconds() {
+    return retryAfterSeconds;
+  }
+}
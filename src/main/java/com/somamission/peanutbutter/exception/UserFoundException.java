@@ -5,7 +5,22 @@ import org.springframework.web.bind.annotation.ResponseStatus;
 
 @ResponseStatus(value = HttpStatus.CONFLICT)
 public class UserFoundException extends Exception {
+  private final String field;
+
   public UserFoundException(String reason) {
+    this(reason, null);
+  }
+
+  /**
+   * @param reason the message sent back to the client
+   * @param field the field whose value is taken, e.g. username or email
+   */
+  public UserFoundException(String reason, String field) {
     super(reason);
+    this.field = field;
+  }
+
+  public String getField() {
+    return field;
   }
 }
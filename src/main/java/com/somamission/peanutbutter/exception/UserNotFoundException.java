@@ -3,9 +3,10 @@ package com.somamission.peanutbutter.exception;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
+/** Thrown for every lookup of an unknown username, so it skips filling in a stack trace */
 @ResponseStatus(value = HttpStatus.NOT_FOUND)
 public class UserNotFoundException extends Exception {
     public UserNotFoundException(String reason) {
-        super("Cannot get user, reason: " + reason);
+        super("Cannot get user, reason: " + reason, null, false, false);
     }
 }
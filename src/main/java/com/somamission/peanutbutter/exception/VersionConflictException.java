@@ -0,0 +1,24 @@
+package com.somamission.peanutbutter.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.CONFLICT)
+public class VersionConflictException extends RuntimeException {
+  private final Long currentVersion;
+  private final String currentETag;
+
+  public VersionConflictException(String reason, Long currentVersion, String currentETag) {
+    super("Conflicting update, reason: " + reason);
+    this.currentVersion = currentVersion;
+    this.currentETag = currentETag;
+  }
+
+  public Long getCurrentVersion() {
+    return currentVersion;
+  }
+
+  public String getCurrentETag() {
+    return currentETag;
+  }
+}
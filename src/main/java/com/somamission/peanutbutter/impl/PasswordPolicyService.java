@@ -0,0 +1,118 @@
+package com.somamission.peanutbutter.impl;
+
+import com.somamission.peanutbutter.intf.IPasswordPolicyService;
+import com.somamission.peanutbutter.support.BreachedPasswordFilter;
+import com.somamission.peanutbutter.support.PasswordPolicy;
+import com.somamission.peanutbutter.support.PasswordPolicyResult;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+@Service
+public class PasswordPolicyService implements IPasswordPolicyService {
+  private static final Logger logger = LoggerFactory.getLogger(PasswordPolicyService.class);
+
+  @Autowired private Environment env;
+
+  @Autowired private MeterRegistry meterRegistry;
+
+  private PasswordPolicy policy;
+
+  private volatile BreachedPasswordFilter breachedPasswordFilter = BreachedPasswordFilter.empty();
+
+  private Path breachedList;
+
+  private double falsePositiveRate;
+
+  private long breachedListModified = -1L;
+
+  private Timer reloadTimer;
+
+  @PostConstruct
+  void init() {
+    policy =
+        new PasswordPolicy.Builder()
+            .withMinLength(env.getProperty("password.policy.min-length", Integer.class, 8))
+            .withMaxLength(env.getProperty("password.policy.max-length", Integer.class, 128))
+            .withMinUppercase(env.getProperty("password.policy.min-uppercase", Integer.class, 1))
+            .withMinLowercase(env.getProperty("password.policy.min-lowercase", Integer.class, 1))
+            .withMinDigits(env.getProperty("password.policy.min-digits", Integer.class, 1))
+            .withMinSpecial(env.getProperty("password.policy.min-special", Integer.class, 0))
+            .withWhitespaceAllowed(
+                env.getProperty("password.policy.whitespace-allowed", Boolean.class, false))
+            .build();
+
+    String breachedListPath = env.getProperty("password.policy.breached-list");
+    breachedList = StringUtils.isEmpty(breachedListPath) ? null : Paths.get(breachedListPath);
+    falsePositiveRate =
+        env.getProperty(
+            "password.policy.breached-list.false-positive-rate", Double.class, 0.001d);
+
+    reloadTimer =
+        Timer.builder("password.policy.breached.reload")
+            .description("Time to load the breached password list")
+            .register(meterRegistry);
+    Gauge.builder(
+            "password.policy.breached.size",
+            this,
+            service -> service.breachedPasswordFilter.size())
+        .description("Number of entries in the breached password list")
+        .register(meterRegistry);
+
+    reloadBreachedList();
+  }
+
+  @Override
+  public PasswordPolicyResult check(String password) {
+    PasswordPolicyResult result = policy.check(password);
+    if (PasswordPolicyResult.VALID == result && breachedPasswordFilter.mightContain(password)) {
+      return PasswordPolicyResult.BREACHED;
+    }
+    return result;
+  }
+
+  @Override
+  public PasswordPolicy getPolicy() {
+    return policy;
+  }
+
+  // the new filter is built next to the one in use and swapped in, checks never wait for a reload
+  @Override
+  @Scheduled(
+      initialDelayString = "${password.policy.breached-list.check-interval-ms:60000}",
+      fixedDelayString = "${password.policy.breached-list.check-interval-ms:60000}")
+  public synchronized void reloadBreachedList() {
+    if (null == breachedList) {
+      return;
+    }
+    try {
+      long modified = Files.getLastModifiedTime(breachedList).toMillis();
+      if (modified == breachedListModified) {
+        return;
+      }
+      long start = System.nanoTime();
+      breachedPasswordFilter = BreachedPasswordFilter.load(breachedList, falsePositiveRate);
+      breachedListModified = modified;
+      reloadTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+      logger.info(
+          "Loaded {} breached passwords from {}", breachedPasswordFilter.size(), breachedList);
+    } catch (IOException e) {
+      // keep serving the previous list, the next run tries again
+      logger.error("Could not load breached password list " + breachedList, e);
+    }
+  }
+}
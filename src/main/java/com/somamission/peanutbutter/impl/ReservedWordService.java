@@ -1,19 +1,56 @@
 package com.somamission.peanutbutter.impl;
 
+import com.somamission.peanutbutter.constants.CacheConstants;
 import com.somamission.peanutbutter.domain.ReservedWord;
 import com.somamission.peanutbutter.intf.IReservedWordService;
 import com.somamission.peanutbutter.repository.IReservedWordRepository;
+import com.somamission.peanutbutter.support.ReservedWordIndex;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
 import java.util.ArrayList;
 import java.util.List;
 
 @Service
 public class ReservedWordService implements IReservedWordService {
+  private static final Logger logger = LoggerFactory.getLogger(ReservedWordService.class);
 
   @Autowired IReservedWordRepository reservedWordRepository;
 
+  @Autowired private RedissonClient redissonClient;
+
+  @Autowired private MeterRegistry meterRegistry;
+
+  private volatile ReservedWordIndex reservedWordIndex = ReservedWordIndex.empty();
+
+  private RTopic refreshTopic;
+
+  private Timer refreshTimer;
+
+  @PostConstruct
+  void init() {
+    refreshTimer =
+        Timer.builder("reserved.words.refresh")
+            .description("Time to reload the reserved word snapshot")
+            .register(meterRegistry);
+    Gauge.builder("reserved.words.size", this, service -> service.reservedWordIndex.size())
+        .description("Number of words in the reserved word snapshot")
+        .register(meterRegistry);
+
+    refreshTopic = redissonClient.getTopic(CacheConstants.RESERVED_WORDS_TOPIC);
+    refreshTopic.addListener(String.class, (channel, message) -> refresh());
+    refresh();
+  }
+
   @Override
   public List<ReservedWord> getAllReservedWords() {
     List<ReservedWord> reservedWords = new ArrayList<>();
@@ -24,4 +61,31 @@ public class ReservedWordService implements IReservedWordService {
 
     return reservedWords;
   }
+
+  @Override
+  public boolean isReserved(String word) {
+    return reservedWordIndex.contains(word);
+  }
+
+  // safety net for rows changed without a refresh message, e.g. by a manual sql update
+  @Override
+  @Scheduled(
+      initialDelayString = "${reserved-words.refresh-interval-ms:300000}",
+      fixedDelayString = "${reserved-words.refresh-interval-ms:300000}")
+  public synchronized void refresh() {
+    refreshTimer.record(
+        () -> {
+          List<String> words = new ArrayList<>();
+          for (ReservedWord reservedWord : reservedWordRepository.findAll()) {
+            words.add(reservedWord.getWord());
+          }
+          reservedWordIndex = ReservedWordIndex.of(words);
+        });
+    logger.info("Loaded {} reserved words", reservedWordIndex.size());
+  }
+
+  @Override
+  public void publishRefresh() {
+    refreshTopic.publish("refresh");
+  }
 }
@@ -0,0 +1,387 @@
+package com.somamission.peanutbutter.impl;
+
+import com.somamission.peanutbutter.constants.CacheConstants;
+import com.somamission.peanutbutter.intf.IUserAvailabilityService;
+import com.somamission.peanutbutter.repository.IUserRepository;
+import com.somamission.peanutbutter.support.CircuitBreaker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.commons.lang3.StringUtils;
+import org.redisson.api.RBloomFilter;
+import org.redisson.api.RBucket;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+@Service
+public class UserAvailabilityService implements IUserAvailabilityService {
+  private static final Logger logger = LoggerFactory.getLogger(UserAvailabilityService.class);
+  // values recorded before the filters are seeded or while redis is out, added once they can be,
+  // past this the filters are distrusted on this node until it restarts
+  private static final int MAX_PENDING_ADDS = 10_000;
+
+  @Autowired private IUserRepository userRepository;
+
+  @Autowired private RedissonClient redissonClient;
+
+  @Autowired private CircuitBreaker redisCircuitBreaker;
+
+  @Autowired private PlatformTransactionManager transactionManager;
+
+  @Autowired private MeterRegistry meterRegistry;
+
+  @Autowired private Environment env;
+
+  private RBloomFilter<String> usernames;
+
+  private RBloomFilter<String> emails;
+
+  private RBucket<Boolean> seededMarker;
+
+  // once true it stays true, only the marker lookups until then cost a round trip
+  private volatile boolean seeded;
+
+  private final Set<String> pendingUsernames = ConcurrentHashMap.newKeySet();
+
+  private final Set<String> pendingEmails = ConcurrentHashMap.newKeySet();
+
+  // set when values could not be added to the filters, so a miss no longer proves a value free
+  private volatile boolean incomplete;
+
+  private Counter definitelyFree;
+
+  private Counter confirmedTaken;
+
+  private Counter falsePositives;
+
+  private Counter unseeded;
+
+  private Counter degraded;
+
+  private Timer filterContainsTimer;
+
+  private Timer filterAddTimer;
+
+  @PostConstruct
+  void init() {
+    usernames = redissonClient.getBloomFilter(CacheConstants.USERNAMES_FILTER);
+    emails = redissonClient.getBloomFilter(CacheConstants.EMAILS_FILTER);
+    seededMarker = redissonClient.getBucket(CacheConstants.AVAILABILITY_SEEDED);
+
+    definitelyFree = checks("definitely_free");
+    confirmedTaken = checks("taken");
+    falsePositives = checks("false_positive");
+    unseeded = checks("unseeded");
+    degraded = checks("degraded");
+    filterContainsTimer = filterTimer("contains");
+    filterAddTimer = filterTimer("add");
+    registerFilterGauges("username", usernames);
+    registerFilterGauges("email", emails);
+    redisCircuitBreaker.onClose(this::addPending);
+
+    seed();
+  }
+
+  @Override
+  public boolean isUsernameAvailable(String username) {
+    return isAvailable(username, usernames, name -> !userRepository.existsByUsername(name));
+  }
+
+  @Override
+  public boolean isEmailAvailable(String email) {
+    // the filter holds lower cased emails, the database is asked for the email as given
+    return isAvailable(emailKey(email), emails, key -> !userRepository.existsByEmail(email));
+  }
+
+  @Override
+  public void record(String username, String email) {
+    if (!StringUtils.isEmpty(username)) {
+      add(username, usernames, pendingUsernames);
+    }
+    if (!StringUtils.isEmpty(email)) {
+      add(emailKey(email), emails, pendingEmails);
+    }
+  }
+
+  private boolean isAvailable(
+      String value, RBloomFilter<String> filter, Predicate<String> freeInRepository) {
+    if (StringUtils.isEmpty(value)) {
+      return false;
+    }
+    if (!isSeeded()) {
+      unseeded.increment();
+      return freeInRepository.test(value);
+    }
+    Boolean contained =
+        incomplete
+            ? null
+            : redisCircuitBreaker.execute(
+                () -> filterContainsTimer.record(() -> filter.contains(value)), () -> null);
+    if (null == contained) {
+      degraded.increment();
+      return freeInRepository.test(value);
+    }
+    if (!contained) {
+      definitelyFree.increment();
+      return true;
+    }
+    boolean free = freeInRepository.test(value);
+    (free ? falsePositives : confirmedTaken).increment();
+    return free;
+  }
+
+  private boolean isSeeded() {
+    if (!seeded
+        && redisCircuitBreaker.execute(
+            () -> Boolean.TRUE.equals(seededMarker.get()), () -> false)) {
+      seeded = true;
+    }
+    return seeded;
+  }
+
+  private void add(String value, RBloomFilter<String> filter, Set<String> pending) {
+    // the filters may not even be initialised yet, the seed adds what was queued once it is done
+    if (isSeeded() && tryAdd(value, filter)) {
+      return;
+    }
+    if (pendingUsernames.size() + pendingEmails.size() < MAX_PENDING_ADDS) {
+      pending.add(value);
+    } else if (!incomplete) {
+      logger.warn("Too many values missing from the availability filters, checking the database");
+      incomplete = true;
+    }
+  }
+
+  // once redis is back, so a value taken during the outage is not reported free later
+  @Override
+  @Scheduled(
+      initialDelayString = "${users.availability.pending-retry-ms:5000}",
+      fixedDelayString = "${users.availability.pending-retry-ms:5000}")
+  public void addPending() {
+    if ((!pendingUsernames.isEmpty() || !pendingEmails.isEmpty())
+        && isSeeded()
+        && addPending(pendingUsernames, usernames)) {
+      addPending(pendingEmails, emails);
+    }
+  }
+
+  /** @return false if redis failed again before all values were added */
+  private boolean addPending(Set<String> pending, RBloomFilter<String> filter) {
+    for (String value : pending) {
+      if (!tryAdd(value, filter)) {
+        return false;
+      }
+      pending.remove(value);
+    }
+    return true;
+  }
+
+  private boolean tryAdd(String value, RBloomFilter<String> filter) {
+    try {
+      return redisCircuitBreaker.execute(
+          () -> {
+            filterAddTimer.record(() -> filter.add(value));
+            return true;
+          },
+          () -> false);
+    } catch (RuntimeException e) {
+      // not an outage, e.g. a filter deleted behind this node's back, the value waits its turn
+      logger.warn("Could not add to the availability filter {}", filter.getName(), e);
+      return false;
+    }
+  }
+
+  // whichever node holds the seeding lock fills the filters, the others wait for the marker
+  @Override
+  @Scheduled(
+      initialDelayString = "${users.availability.seed-retry-ms:60000}",
+      fixedDelayString = "${users.availability.seed-retry-ms:60000}")
+  public void seed() {
+    if (isSeeded()) {
+      return;
+    }
+    RLock seedingLock = redissonClient.getLock(CacheConstants.AVAILABILITY_SEEDING);
+    try {
+      // no lease time, redisson extends the lock while this node lives and lets it lapse when it
+      // dies, so a node that died mid-seed is taken over on the next retry
+      if (!seedingLock.tryLock()) {
+        logger.info("Another node is seeding the availability filters");
+        return;
+      }
+    } catch (RuntimeException e) {
+      logger.warn("Could not seed the availability filters, retrying later: {}", e.getMessage());
+      return;
+    }
+    try {
+      if (Boolean.TRUE.equals(seededMarker.get())) {
+        seeded = true;
+        return;
+      }
+      long expectedInsertions =
+          Math.max(
+              env.getProperty("users.availability.expected-insertions", Long.class, 1_000_000L),
+              userRepository.count() * 2);
+      double falsePositiveRate =
+          env.getProperty("users.availability.false-positive-rate", Double.class, 0.01d);
+      // filters left behind by a node that died mid-seed are kept, adding a value twice is harmless
+      usernames.tryInit(expectedInsertions, falsePositiveRate);
+      emails.tryInit(expectedInsertions, falsePositiveRate);
+
+      logger.info("Seeding availability filters for {} expected users", expectedInsertions);
+      long seededUsers = fillFilters();
+      seededMarker.set(Boolean.TRUE);
+      seeded = true;
+      logger.info("Seeded availability filters with {} users", seededUsers);
+      addPending();
+    } catch (RuntimeException e) {
+      logger.warn("Could not seed the availability filters, retrying later: {}", e.getMessage());
+    } finally {
+      try {
+        seedingLock.unlock();
+      } catch (RuntimeException e) {
+        // the lock lapses on its own once this node stops extending it
+        logger.debug("Could not release the seeding lock", e);
+      }
+    }
+  }
+
+  /**
+   * Each bloom filter add is a round trip of its own, redisson offers no batch for them, so the
+   * rows are added from several threads at once to keep that many round trips in flight
+   */
+  private long fillFilters() {
+    int threads = env.getProperty("users.availability.seed-threads", Integer.class, 8);
+    int batchSize = env.getProperty("users.availability.seed-batch-size", Integer.class, 1000);
+    AtomicInteger threadCount = new AtomicInteger();
+    ExecutorService executor =
+        Executors.newFixedThreadPool(
+            threads,
+            runnable -> {
+              Thread thread =
+                  new Thread(runnable, "users-availability-seed-" + threadCount.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+    TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+    transactionTemplate.setReadOnly(true);
+    try {
+      return transactionTemplate.execute(
+          status -> {
+            long count = 0;
+            List<Object[]> batch = new ArrayList<>(batchSize);
+            try (Stream<Object[]> rows = userRepository.streamUsernamesAndEmails()) {
+              for (Object[] row : (Iterable<Object[]>) rows::iterator) {
+                batch.add(row);
+                if (batch.size() == batchSize) {
+                  count += addAll(batch, executor, threads);
+                  batch.clear();
+                }
+              }
+            }
+            return count + addAll(batch, executor, threads);
+          });
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /** @return the number of rows added, once all of them were */
+  private int addAll(List<Object[]> rows, ExecutorService executor, int threads) {
+    List<Callable<Void>> slices = new ArrayList<>(threads);
+    int sliceSize = (rows.size() + threads - 1) / threads;
+    for (int from = 0; from < rows.size(); from += sliceSize) {
+      List<Object[]> slice = rows.subList(from, Math.min(from + sliceSize, rows.size()));
+      slices.add(
+          () -> {
+            for (Object[] row : slice) {
+              usernames.add((String) row[0]);
+              emails.add(emailKey((String) row[1]));
+            }
+            return null;
+          });
+    }
+    try {
+      for (Future<Void> slice : executor.invokeAll(slices)) {
+        slice.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while seeding the availability filters", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Could not add to the availability filters", e.getCause());
+    }
+    return rows.size();
+  }
+
+  // emails are compared case insensitively, a filter hit is still confirmed in the database
+  private static String emailKey(String email) {
+    return StringUtils.lowerCase(email, Locale.ROOT);
+  }
+
+  private Counter checks(String result) {
+    return Counter.builder("users.availability.checks")
+        .description("Availability checks by how they were answered")
+        .tag("result", result)
+        .register(meterRegistry);
+  }
+
+  private Timer filterTimer(String operation) {
+    return Timer.builder("users.availability.filter.latency")
+        .description("Latency of redis calls on the availability filters")
+        .tag("operation", operation)
+        .publishPercentileHistogram()
+        .register(meterRegistry);
+  }
+
+  private void registerFilterGauges(String field, RBloomFilter<String> filter) {
+    Gauge.builder(
+            "users.availability.filter.false.positive.rate",
+            filter,
+            f -> readFilter(f::getFalseProbability))
+        .description("Configured false positive rate of the availability filter")
+        .tag("field", field)
+        .register(meterRegistry);
+    Gauge.builder("users.availability.filter.size", filter, f -> readFilter(f::getSize))
+        .description("Number of bits of the availability filter")
+        .tag("field", field)
+        .register(meterRegistry);
+    Gauge.builder("users.availability.filter.count", filter, f -> readFilter(f::count))
+        .description("Estimated number of values in the availability filter")
+        .tag("field", field)
+        .register(meterRegistry);
+  }
+
+  // a scrape must not fail because redis is briefly unreachable
+  private static double readFilter(Supplier<? extends Number> read) {
+    try {
+      return read.get().doubleValue();
+    } catch (RuntimeException e) {
+      return Double.NaN;
+    }
+  }
+}
@@ -0,0 +1,100 @@
+package com.somamission.peanutbutter.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.somamission.peanutbutter.constants.CacheConstants;
+import com.somamission.peanutbutter.domain.CachedJson;
+import com.somamission.peanutbutter.domain.User;
+import com.somamission.peanutbutter.intf.IUserCacheService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.Callable;
+
+@Service
+public class UserCacheService implements IUserCacheService {
+  private static final Logger logger = LoggerFactory.getLogger(UserCacheService.class);
+
+  @Autowired private CacheManager cacheManager;
+
+  @Autowired private ObjectMapper objectMapper;
+
+  @Override
+  public void put(User user) {
+    // versioned values are compare-and-set by the tiered cache, see TieredCache#put
+    usersCache().put(user.getUsername(), user);
+    try {
+      putJson(user);
+    } catch (JsonProcessingException e) {
+      // never leave the previous version's body behind
+      logger.warn("Could not serialize user {}", user.getUserId(), e);
+      usersJsonCache().evict(user.getUsername());
+    }
+  }
+
+  @Override
+  public CachedJson putJson(User user) throws JsonProcessingException {
+    CachedJson json = toJson(user);
+    // an older version losing the compare-and-set still answers the read that loaded it
+    usersJsonCache().put(user.getUsername(), json);
+    return json;
+  }
+
+  @Override
+  public User get(String username, Callable<User> loader) {
+    return usersCache().get(username, loader);
+  }
+
+  @Override
+  public CachedJson getJson(String username, Callable<User> loader)
+      throws JsonProcessingException {
+    try {
+      // a missing user is cached as missing in both caches, so the next lookup ends at the first
+      return usersJsonCache()
+          .get(
+              username,
+              () -> {
+                User user = get(username, loader);
+                return null == user ? null : toJson(user);
+              });
+    } catch (Cache.ValueRetrievalException e) {
+      if (e.getCause() instanceof JsonProcessingException) {
+        throw (JsonProcessingException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  @Override
+  public User peek(String username) {
+    return usersCache().get(username, User.class);
+  }
+
+  @Override
+  public CachedJson peekJson(String username) {
+    return usersJsonCache().get(username, CachedJson.class);
+  }
+
+  @Override
+  public void evict(String username) {
+    usersCache().evict(username);
+    usersJsonCache().evict(username);
+  }
+
+  private CachedJson toJson(User user) throws JsonProcessingException {
+    return new CachedJson(
+        user.getUserId(), user.getVersion(), objectMapper.writeValueAsBytes(user));
+  }
+
+  private Cache usersCache() {
+    return cacheManager.getCache(CacheConstants.USERS);
+  }
+
+  private Cache usersJsonCache() {
+    return cacheManager.getCache(CacheConstants.USERS_JSON);
+  }
+}
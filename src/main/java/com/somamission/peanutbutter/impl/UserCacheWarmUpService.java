@@ -0,0 +1,285 @@
+package com.somamission.peanutbutter.impl;
+
+import com.somamission.peanutbutter.cache.TieredCache;
+import com.somamission.peanutbutter.constants.CacheConstants;
+import com.somamission.peanutbutter.domain.User;
+import com.somamission.peanutbutter.intf.IUserCacheService;
+import com.somamission.peanutbutter.intf.IUserCacheWarmUpService;
+import com.somamission.peanutbutter.repository.IUserRepository;
+import com.somamission.peanutbutter.support.TopKSketch;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.redisson.api.BatchOptions;
+import org.redisson.api.RBatch;
+import org.redisson.api.RScoredSortedSet;
+import org.redisson.api.RScoredSortedSetAsync;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reads of existing users are sampled into a top-k sketch, which every node adds to a sorted set
+ * in Redis once a minute. Scores in the set are halved every decay interval, so users that stop
+ * being read drop out of it. A starting node loads the top of the set into its caches and reports
+ * out of service on the health endpoint until it is done.
+ */
+@Service
+public class UserCacheWarmUpService implements IUserCacheWarmUpService {
+  private static final Logger logger = LoggerFactory.getLogger(UserCacheWarmUpService.class);
+  private static final String DECAYED_SUFFIX = ":decayed";
+
+  @Autowired private Environment env;
+
+  @Autowired private RedissonClient redissonClient;
+
+  @Autowired private IUserRepository userRepository;
+
+  @Autowired private IUserCacheService userCacheService;
+
+  @Autowired private CacheManager cacheManager;
+
+  @Autowired private MeterRegistry meterRegistry;
+
+  private boolean enabled;
+
+  private int sampleRate;
+
+  private TopKSketch sketch;
+
+  private RScoredSortedSet<String> hotUsernames;
+
+  private volatile boolean warmedUp;
+
+  private volatile long warmUpMillis;
+
+  private final LongAdder loadedFromRemote = new LongAdder();
+
+  private final LongAdder loadedFromDatabase = new LongAdder();
+
+  // users cache hits and lookups when warm-up ended, the hit ratio gauge counts from there
+  private volatile long[] hitCountsAtWarmUp;
+
+  private volatile long hitRatioWindowEnd;
+
+  private volatile double postWarmUpHitRatio = -1;
+
+  @PostConstruct
+  void init() {
+    enabled = env.getProperty("cache.warm-up.enabled", Boolean.class, true);
+    sampleRate = Math.max(1, env.getProperty("cache.warm-up.sample-rate", Integer.class, 10));
+    sketch =
+        new TopKSketch(env.getProperty("cache.warm-up.sketch-capacity", Integer.class, 10_000));
+    hotUsernames =
+        redissonClient.getScoredSortedSet(CacheConstants.HOT_USERNAMES, StringCodec.INSTANCE);
+    warmedUp = !enabled;
+
+    Gauge.builder("cache.warmup.duration", this, IUserCacheWarmUpService::getWarmUpMillis)
+        .description("Time the users cache warm-up took")
+        .baseUnit("milliseconds")
+        .register(meterRegistry);
+    Gauge.builder("cache.warmup.entries", loadedFromRemote, LongAdder::sum)
+        .description("Users the warm-up put in the caches")
+        .tags("source", "l2")
+        .register(meterRegistry);
+    Gauge.builder("cache.warmup.entries", loadedFromDatabase, LongAdder::sum)
+        .description("Users the warm-up put in the caches")
+        .tags("source", "database")
+        .register(meterRegistry);
+    Gauge.builder("cache.warmup.hit.ratio", this, UserCacheWarmUpService::getPostWarmUpHitRatio)
+        .description("Users cache hit ratio since warm-up, frozen once its window is over")
+        .register(meterRegistry);
+  }
+
+  @Override
+  public void recordAccess(String username) {
+    if (1 == sampleRate || 0 == ThreadLocalRandom.current().nextInt(sampleRate)) {
+      sketch.add(username, sampleRate);
+    }
+  }
+
+  @Override
+  @PreDestroy
+  @Scheduled(
+      initialDelayString = "${cache.warm-up.persist-interval-ms:60000}",
+      fixedDelayString = "${cache.warm-up.persist-interval-ms:60000}")
+  public void persistHotUsernames() {
+    Map<String, Long> counts = sketch.drain();
+    try {
+      if (!counts.isEmpty()) {
+        RBatch batch = redissonClient.createBatch(BatchOptions.defaults());
+        RScoredSortedSetAsync<String> set =
+            batch.getScoredSortedSet(CacheConstants.HOT_USERNAMES, StringCodec.INSTANCE);
+        for (Map.Entry<String, Long> count : counts.entrySet()) {
+          set.addScoreAsync(count.getKey(), count.getValue());
+        }
+        int tracked = env.getProperty("cache.warm-up.tracked", Integer.class, 10_000);
+        set.removeRangeByRankAsync(0, -(tracked + 1));
+        batch.execute();
+      }
+
+      // the first node to get here in an interval decays the ranking for all of them
+      long decayIntervalMs =
+          env.getProperty("cache.warm-up.decay-interval-ms", Long.class, 60 * 60 * 1000L);
+      if (redissonClient
+          .getBucket(CacheConstants.HOT_USERNAMES + DECAYED_SUFFIX, StringCodec.INSTANCE)
+          .trySet("1", decayIntervalMs, TimeUnit.MILLISECONDS)) {
+        hotUsernames.union(Collections.singletonMap(hotUsernames.getName(), 0.5));
+      }
+    } catch (RuntimeException e) {
+      // losing one interval of counts only makes the ranking a little older
+      logger.warn("Could not persist hot usernames: {}", e.getMessage());
+    }
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void onApplicationReady() {
+    if (!enabled) {
+      return;
+    }
+    Thread warmUpThread = new Thread(this::warmUp, "users-cache-warm-up");
+    warmUpThread.setDaemon(true);
+    warmUpThread.start();
+  }
+
+  @Override
+  public void warmUp() {
+    long start = System.nanoTime();
+    loadedFromRemote.reset();
+    loadedFromDatabase.reset();
+    int threads = env.getProperty("cache.warm-up.threads", Integer.class, 4);
+    int batchSize = env.getProperty("cache.warm-up.batch-size", Integer.class, 200);
+    int maxEntries = env.getProperty("cache.warm-up.max-entries", Integer.class, 5000);
+    long timeoutMs = env.getProperty("cache.warm-up.timeout-ms", Long.class, 30_000L);
+
+    AtomicInteger threadCount = new AtomicInteger();
+    ExecutorService executor =
+        Executors.newFixedThreadPool(
+            threads,
+            runnable -> {
+              Thread thread =
+                  new Thread(runnable, "users-cache-warm-up-" + threadCount.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+    try {
+      List<String> usernames = new ArrayList<>(hotUsernames.valueRangeReversed(0, maxEntries - 1));
+      List<Future<?>> batches = new ArrayList<>();
+      for (int from = 0; from < usernames.size(); from += batchSize) {
+        List<String> batch = usernames.subList(from, Math.min(from + batchSize, usernames.size()));
+        batches.add(executor.submit(() -> warmUpBatch(batch)));
+      }
+      long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+      for (Future<?> batch : batches) {
+        batch.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+      }
+    } catch (TimeoutException e) {
+      logger.warn("Users cache warm-up timed out after {} ms, serving the rest cold", timeoutMs);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException | RuntimeException e) {
+      // a cold cache is slower, not broken, so the node still goes into service
+      logger.warn("Users cache warm-up failed, serving cold", e);
+    } finally {
+      executor.shutdownNow();
+      warmUpMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+      hitCountsAtWarmUp = usersCacheHitCounts();
+      hitRatioWindowEnd =
+          System.currentTimeMillis()
+              + env.getProperty("cache.warm-up.hit-ratio-window-ms", Long.class, 10 * 60 * 1000L);
+      postWarmUpHitRatio = -1;
+      warmedUp = true;
+      logger.info(
+          "Warmed up users cache in {} ms: {} users from L2, {} from the database",
+          warmUpMillis,
+          loadedFromRemote.sum(),
+          loadedFromDatabase.sum());
+    }
+  }
+
+  @Override
+  public boolean isWarmedUp() {
+    return warmedUp;
+  }
+
+  @Override
+  public long getWarmUpMillis() {
+    return warmUpMillis;
+  }
+
+  @Override
+  public long getLoadedEntries() {
+    return loadedFromRemote.sum() + loadedFromDatabase.sum();
+  }
+
+  // L2 is asked first, after a deploy it still holds most of what the database would return
+  private void warmUpBatch(List<String> usernames) {
+    List<String> missing = new ArrayList<>();
+    for (String username : usernames) {
+      if (null == userCacheService.peek(username)) {
+        missing.add(username);
+      } else {
+        loadedFromRemote.increment();
+      }
+    }
+    if (missing.isEmpty()) {
+      return;
+    }
+    for (User user : userRepository.findByUsernameIn(missing)) {
+      userCacheService.put(user);
+      loadedFromDatabase.increment();
+    }
+  }
+
+  private double getPostWarmUpHitRatio() {
+    long[] baseline = hitCountsAtWarmUp;
+    if (null == baseline) {
+      return 0;
+    }
+    if (postWarmUpHitRatio >= 0) {
+      return postWarmUpHitRatio;
+    }
+    long[] current = usersCacheHitCounts();
+    long lookups = current[1] - baseline[1];
+    double ratio = 0 == lookups ? 0 : (double) (current[0] - baseline[0]) / lookups;
+    if (System.currentTimeMillis() >= hitRatioWindowEnd) {
+      postWarmUpHitRatio = ratio;
+    }
+    return ratio;
+  }
+
+  /** Hits and lookups of the users cache so far, cached misses left out of both */
+  private long[] usersCacheHitCounts() {
+    Cache cache = cacheManager.getCache(CacheConstants.USERS);
+    if (!(cache instanceof TieredCache)) {
+      return new long[] {0, 0};
+    }
+    TieredCache usersCache = (TieredCache) cache;
+    long hits = usersCache.getLocalHits() + usersCache.getRemoteHits();
+    return new long[] {hits, hits + usersCache.getMisses()};
+  }
+}
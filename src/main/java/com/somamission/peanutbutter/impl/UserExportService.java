@@ -0,0 +1,117 @@
+package com.somamission.peanutbutter.impl;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.somamission.peanutbutter.domain.User;
+import com.somamission.peanutbutter.intf.IUserExportService;
+import com.somamission.peanutbutter.param.ExportFormat;
+import com.somamission.peanutbutter.repository.IUserRepository;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+@Service
+public class UserExportService implements IUserExportService {
+  private static final int CHUNK_SIZE = 1000;
+  private static final String CSV_HEADER =
+      "user_id,username,email,name_first,name_last,profile_url,cover_url,address_full";
+  private static final Logger logger = LoggerFactory.getLogger(UserExportService.class);
+
+  @Autowired private IUserRepository userRepository;
+
+  @Autowired private ObjectMapper objectMapper;
+
+  @PersistenceContext private EntityManager entityManager;
+
+  @Override
+  @Transactional(readOnly = true)
+  public void exportUsers(ExportFormat format, OutputStream output) throws IOException {
+    logger.info("Exporting users as {}", format);
+    long count = 0;
+    try (Stream<User> users = userRepository.streamAll()) {
+      if (ExportFormat.CSV == format) {
+        count = writeCsv(users.iterator(), output);
+      } else {
+        count = writeNdjson(users.iterator(), output);
+      }
+    }
+    logger.info("Exported {} users", count);
+  }
+
+  private long writeNdjson(Iterator<User> users, OutputStream output) throws IOException {
+    long count = 0;
+    // flushing is left to the chunk boundaries
+    ObjectWriter userWriter =
+        objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    JsonGenerator generator = objectMapper.getFactory().createGenerator(output);
+    generator.setRootValueSeparator(new SerializedString("\n"));
+    while (users.hasNext()) {
+      userWriter.writeValue(generator, users.next());
+      if (++count % CHUNK_SIZE == 0) {
+        generator.flush();
+        entityManager.clear();
+      }
+    }
+    if (count > 0) {
+      generator.writeRaw('\n');
+    }
+    generator.flush();
+    return count;
+  }
+
+  private long writeCsv(Iterator<User> users, OutputStream output) throws IOException {
+    long count = 0;
+    Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+    writer.write(CSV_HEADER);
+    writer.write('\n');
+    while (users.hasNext()) {
+      User user = users.next();
+      writer.write(String.valueOf(user.getUserId()));
+      writeCsvField(writer, user.getUsername());
+      writeCsvField(writer, user.getEmail());
+      writeCsvField(writer, user.getFirstName());
+      writeCsvField(writer, user.getLastName());
+      writeCsvField(writer, user.getProfilePhotoUrl());
+      writeCsvField(writer, user.getCoverPhotoUrl());
+      writeCsvField(writer, user.getFullAddress());
+      writer.write('\n');
+      if (++count % CHUNK_SIZE == 0) {
+        writer.flush();
+        entityManager.clear();
+      }
+    }
+    writer.flush();
+    return count;
+  }
+
+  private static void writeCsvField(Writer writer, String value) throws IOException {
+    writer.write(',');
+    if (null == value) {
+      return;
+    }
+    if (StringUtils.containsAny(value, ",\"\r\n")) {
+      writer.write('"');
+      writer.write(StringUtils.replace(value, "\"", "\"\""));
+      writer.write('"');
+    } else {
+      writer.write(value);
+    }
+  }
+}
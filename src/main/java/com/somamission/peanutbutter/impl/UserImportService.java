@@ -0,0 +1,299 @@
+package com.somamission.peanutbutter.impl;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.somamission.peanutbutter.domain.User;
+import com.somamission.peanutbutter.exception.BadRequestException;
+import com.somamission.peanutbutter.intf.IUserAvailabilityService;
+import com.somamission.peanutbutter.intf.IUserCacheService;
+import com.somamission.peanutbutter.intf.IUserImportService;
+import com.somamission.peanutbutter.intf.IUserValidationService;
+import com.somamission.peanutbutter.param.UserParams;
+import com.somamission.peanutbutter.repository.IUserRepository;
+import com.somamission.peanutbutter.security.BoundedPasswordEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+@Service
+public class UserImportService implements IUserImportService {
+  private static final String CREATED = "created";
+  private static final String REJECTED = "rejected";
+  private static final String FAILED = "failed";
+  private static final String USER_ALREADY_EXISTS_MSG = "User already exists";
+  private static final String DUPLICATE_IN_REQUEST_MSG = "User appears twice in the request";
+  private static final String INVALID_RECORD_MSG = "Record is not a user: ";
+  private static final String MALFORMED_JSON_MSG = "Malformed JSON, the rest was not read: ";
+  private static final Logger logger = LoggerFactory.getLogger(UserImportService.class);
+
+  @Autowired private ObjectMapper objectMapper;
+
+  @Autowired private IUserRepository userRepository;
+
+  @Autowired private IUserValidationService userValidationService;
+
+  @Autowired private IUserAvailabilityService userAvailabilityService;
+
+  @Autowired private IUserCacheService userCacheService;
+
+  @Autowired private BoundedPasswordEncoder passwordEncoder;
+
+  @Autowired private PlatformTransactionManager transactionManager;
+
+  @PersistenceContext private EntityManager entityManager;
+
+  @Value("${users.import.batch-size:500}")
+  private int batchSize;
+
+  @Override
+  public void importUsers(InputStream input, OutputStream output) throws IOException {
+    logger.info("Importing users");
+    try (JsonParser parser = objectMapper.getFactory().createParser(input);
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(output)) {
+      generator.setRootValueSeparator(new SerializedString("\n"));
+
+      List<ImportRecord> batch = new ArrayList<>(batchSize);
+      int index = 0;
+      try {
+        JsonToken token = parser.nextToken();
+        if (JsonToken.START_ARRAY == token) {
+          token = parser.nextToken();
+        }
+        while (null != token && JsonToken.END_ARRAY != token) {
+          // read as a tree first, so a record of the wrong shape does not lose the parser's place
+          JsonNode node = parser.readValueAsTree();
+          UserParams userParams = toUserParams(node, index, generator);
+          if (null != userParams) {
+            batch.add(new ImportRecord(index, userParams));
+          }
+          index++;
+          if (batch.size() == batchSize) {
+            importBatch(batch, generator);
+            batch.clear();
+          }
+          token = parser.nextToken();
+        }
+      } catch (JsonParseException e) {
+        // nothing past a syntax error can be read, the records before it are still imported
+        writeResult(generator, index, null, REJECTED, MALFORMED_JSON_MSG + e.getOriginalMessage());
+      }
+      if (!batch.isEmpty()) {
+        importBatch(batch, generator);
+      }
+      logger.info("Imported {} user records", index);
+    }
+  }
+
+  /** @return the record's params, or null once the record was reported as rejected */
+  private UserParams toUserParams(JsonNode node, int index, JsonGenerator generator)
+      throws IOException {
+    try {
+      return objectMapper.treeToValue(node, UserParams.class);
+    } catch (JsonProcessingException e) {
+      writeResult(
+          generator,
+          index,
+          node.path("username").asText(null),
+          REJECTED,
+          INVALID_RECORD_MSG + e.getOriginalMessage());
+      return null;
+    }
+  }
+
+  private void importBatch(List<ImportRecord> batch, JsonGenerator generator) throws IOException {
+    List<ImportRecord> accepted = acceptValidRecords(batch, generator);
+    if (accepted.isEmpty()) {
+      return;
+    }
+
+    List<ImportRecord> built = hashAndBuildUsers(accepted, generator);
+    List<User> users = new ArrayList<>(built.size());
+    for (ImportRecord record : built) {
+      users.add(record.user);
+    }
+    try {
+      store(users);
+    } catch (RuntimeException e) {
+      // usually a user created concurrently through the single user endpoint, the others of the
+      // batch are still good
+      logger.info("Could not store user batch, storing its users one by one", e);
+      for (ImportRecord record : built) {
+        storeOne(record, generator);
+      }
+      generator.flush();
+      return;
+    }
+
+    for (ImportRecord record : built) {
+      created(record, generator);
+    }
+    generator.flush();
+  }
+
+  private void storeOne(ImportRecord record, JsonGenerator generator) throws IOException {
+    // the failed batch left ids and versions on the users, this is a new insert
+    record.user.setUserId(null);
+    record.user.setVersion(null);
+    try {
+      store(Collections.singletonList(record.user));
+    } catch (RuntimeException e) {
+      if (isTaken(e)) {
+        writeResult(generator, record, REJECTED, USER_ALREADY_EXISTS_MSG);
+      } else {
+        logger.info("Could not store imported user {}", record.index, e);
+        writeResult(generator, record, FAILED, e.getMessage());
+      }
+      return;
+    }
+    created(record, generator);
+  }
+
+  // the flush throws untranslated, so the constraint is looked for in the cause's message
+  private static boolean isTaken(RuntimeException e) {
+    String message = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+    String lowerCaseMessage = null == message ? "" : message.toLowerCase(Locale.ROOT);
+    return lowerCaseMessage.contains(User.USERNAME_CONSTRAINT)
+        || lowerCaseMessage.contains(User.EMAIL_CONSTRAINT);
+  }
+
+  private void store(List<User> users) {
+    new TransactionTemplate(transactionManager)
+        .execute(
+            status -> {
+              userRepository.saveAll(users);
+              // the batch is done with, keep the persistence context from growing with the import
+              entityManager.flush();
+              entityManager.clear();
+              return null;
+            });
+  }
+
+  private void created(ImportRecord record, JsonGenerator generator) throws IOException {
+    userAvailabilityService.record(record.userParams.getUsername(), record.userParams.getEmail());
+    // drops the username from the cached misses, imported users are not cached otherwise
+    userCacheService.evict(record.userParams.getUsername());
+    writeResult(generator, record, CREATED, null);
+  }
+
+  /** Runs the single user rules, then rejects users that exist already or twice in the batch */
+  private List<ImportRecord> acceptValidRecords(List<ImportRecord> batch, JsonGenerator generator)
+      throws IOException {
+    List<ImportRecord> valid = new ArrayList<>(batch.size());
+    Set<String> usernames = new HashSet<>();
+    Set<String> emails = new HashSet<>();
+    for (ImportRecord record : batch) {
+      UserParams userParams = record.userParams;
+      try {
+        userValidationService.validateNewUser(
+            userParams.getUsername(), userParams.getEmail(), userParams.getPassword());
+      } catch (BadRequestException e) {
+        writeResult(generator, record, REJECTED, e.getMessage());
+        continue;
+      }
+      // only an accepted record claims its username and email, a rejected one claims neither
+      if (usernames.contains(userParams.getUsername()) || emails.contains(userParams.getEmail())) {
+        writeResult(generator, record, REJECTED, DUPLICATE_IN_REQUEST_MSG);
+        continue;
+      }
+      usernames.add(userParams.getUsername());
+      emails.add(userParams.getEmail());
+      valid.add(record);
+    }
+    if (valid.isEmpty()) {
+      return valid;
+    }
+
+    Set<String> existingUsernames = new HashSet<>(userRepository.findExistingUsernames(usernames));
+    Set<String> existingEmails = new HashSet<>(userRepository.findExistingEmails(emails));
+    List<ImportRecord> accepted = new ArrayList<>(valid.size());
+    for (ImportRecord record : valid) {
+      if (existingUsernames.contains(record.userParams.getUsername())
+          || existingEmails.contains(record.userParams.getEmail())) {
+        writeResult(generator, record, REJECTED, USER_ALREADY_EXISTS_MSG);
+      } else {
+        accepted.add(record);
+      }
+    }
+    return accepted;
+  }
+
+  /** @return the records whose user was built, the others were reported as rejected */
+  private List<ImportRecord> hashAndBuildUsers(List<ImportRecord> accepted, JsonGenerator generator)
+      throws IOException {
+    List<String> rawPasswords = new ArrayList<>(accepted.size());
+    for (ImportRecord record : accepted) {
+      rawPasswords.add(record.userParams.getPassword());
+    }
+    List<String> encodedPasswords = passwordEncoder.encodeAll(rawPasswords);
+
+    List<ImportRecord> built = new ArrayList<>(accepted.size());
+    for (int i = 0; i < accepted.size(); i++) {
+      ImportRecord record = accepted.get(i);
+      User user = new User();
+      user.setUsername(record.userParams.getUsername());
+      user.setEmail(record.userParams.getEmail());
+      user.setPassword(encodedPasswords.get(i));
+      try {
+        userValidationService.validate(user);
+        record.user = user;
+        built.add(record);
+      } catch (BadRequestException e) {
+        writeResult(generator, record, REJECTED, e.getMessage());
+      }
+    }
+    return built;
+  }
+
+  private void writeResult(
+      JsonGenerator generator, ImportRecord record, String status, String reason)
+      throws IOException {
+    writeResult(generator, record.index, record.userParams.getUsername(), status, reason);
+  }
+
+  private static void writeResult(
+      JsonGenerator generator, int index, String username, String status, String reason)
+      throws IOException {
+    generator.writeStartObject();
+    generator.writeNumberField("index", index);
+    generator.writeStringField("username", username);
+    generator.writeStringField("status", status);
+    if (null != reason) {
+      generator.writeStringField("reason", reason);
+    }
+    generator.writeEndObject();
+  }
+
+  private static class ImportRecord {
+    private final int index;
+    private final UserParams userParams;
+    private User user;
+
+    private ImportRecord(int index, UserParams userParams) {
+      this.index = index;
+      this.userParams = userParams;
+    }
+  }
+}
@@ -0,0 +1,116 @@
+package com.somamission.peanutbutter.impl;
+
+import com.somamission.peanutbutter.domain.UserPage;
+import com.somamission.peanutbutter.domain.UserSummary;
+import com.somamission.peanutbutter.exception.BadRequestException;
+import com.somamission.peanutbutter.intf.IUserListingService;
+import com.somamission.peanutbutter.param.UserSearchParams;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Pages through users in id order. Only the email domain filter has an index that also serves
+ * that order, idx_users_email_domain (email_domain,user_id), so a deep page filtered by domain
+ * costs the same as the first. The name prefix and created after filters cannot keep the id order
+ * on their indexes: the database walks the primary key from the page token and drops the rows that
+ * do not match, which stays cheap while most rows match and slows down as they get rarer.
+ */
+@Service
+public class UserListingService implements IUserListingService {
+  private static final int DEFAULT_LIMIT = 50;
+  private static final int MAX_LIMIT = 500;
+  private static final String PAGE_TOKEN_PREFIX = "after:";
+  private static final String INVALID_PAGE_TOKEN_MSG = "page token is invalid";
+  private static final String INVALID_LIMIT_MSG = "limit must be between 1 and " + MAX_LIMIT;
+  private static final Logger logger = LoggerFactory.getLogger(UserListingService.class);
+
+  @PersistenceContext private EntityManager entityManager;
+
+  @Override
+  @Transactional(readOnly = true)
+  public UserPage listUsers(UserSearchParams userSearchParams) throws BadRequestException {
+    logger.info("Listing users");
+    int limit = null == userSearchParams.getLimit() ? DEFAULT_LIMIT : userSearchParams.getLimit();
+    if (limit < 1 || limit > MAX_LIMIT) {
+      throw new BadRequestException(INVALID_LIMIT_MSG);
+    }
+    long afterUserId = decodePageToken(userSearchParams.getPageToken());
+
+    // only the summary columns are selected, the password is never read
+    StringBuilder jpql =
+        new StringBuilder(
+            "select new com.somamission.peanutbutter.domain.UserSummary("
+                + "u.userId, u.username, u.email, u.firstName, u.lastName, u.createdAt) "
+                + "from User u where u.userId > :afterUserId");
+    if (!StringUtils.isEmpty(userSearchParams.getEmailDomain())) {
+      jpql.append(" and u.emailDomain = :emailDomain");
+    }
+    if (!StringUtils.isEmpty(userSearchParams.getNamePrefix())) {
+      jpql.append(
+          " and (u.firstName like :namePrefix escape '!'"
+              + " or u.lastName like :namePrefix escape '!')");
+    }
+    if (null != userSearchParams.getCreatedAfter()) {
+      jpql.append(" and u.createdAt > :createdAfter");
+    }
+    jpql.append(" order by u.userId");
+
+    TypedQuery<UserSummary> query = entityManager.createQuery(jpql.toString(), UserSummary.class);
+    query.setParameter("afterUserId", afterUserId);
+    if (!StringUtils.isEmpty(userSearchParams.getEmailDomain())) {
+      query.setParameter(
+          "emailDomain", userSearchParams.getEmailDomain().toLowerCase(Locale.ROOT));
+    }
+    if (!StringUtils.isEmpty(userSearchParams.getNamePrefix())) {
+      query.setParameter("namePrefix", escapeLike(userSearchParams.getNamePrefix()) + "%");
+    }
+    if (null != userSearchParams.getCreatedAfter()) {
+      query.setParameter("createdAfter", userSearchParams.getCreatedAfter());
+    }
+    // one extra row tells whether there is a next page
+    query.setMaxResults(limit + 1);
+
+    List<UserSummary> users = query.getResultList();
+    if (users.size() <= limit) {
+      return new UserPage(users, null);
+    }
+    List<UserSummary> page = users.subList(0, limit);
+    return new UserPage(page, encodePageToken(page.get(limit - 1).getUserId()));
+  }
+
+  private static String encodePageToken(long userId) {
+    return Base64.getUrlEncoder()
+        .withoutPadding()
+        .encodeToString((PAGE_TOKEN_PREFIX + userId).getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static long decodePageToken(String pageToken) throws BadRequestException {
+    if (StringUtils.isEmpty(pageToken)) {
+      return 0L;
+    }
+    try {
+      String decoded = new String(Base64.getUrlDecoder().decode(pageToken), StandardCharsets.UTF_8);
+      if (!decoded.startsWith(PAGE_TOKEN_PREFIX)) {
+        throw new BadRequestException(INVALID_PAGE_TOKEN_MSG);
+      }
+      return Long.parseLong(decoded.substring(PAGE_TOKEN_PREFIX.length()));
+    } catch (IllegalArgumentException e) {
+      throw new BadRequestException(INVALID_PAGE_TOKEN_MSG);
+    }
+  }
+
+  private static String escapeLike(String value) {
+    return value.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+  }
+}
@@ -1,142 +1,156 @@
 package com.somamission.peanutbutter.impl;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.somamission.peanutbutter.constants.ErrorMessageConstants;
-import com.somamission.peanutbutter.domain.ReservedWord;
+import com.somamission.peanutbutter.domain.CachedJson;
 import com.somamission.peanutbutter.domain.User;
 import com.somamission.peanutbutter.exception.BadRequestException;
 import com.somamission.peanutbutter.exception.ObjectNotFoundException;
+import com.somamission.peanutbutter.exception.ServiceUnavailableException;
 import com.somamission.peanutbutter.exception.UserFoundException;
 import com.somamission.peanutbutter.exception.UserNotFoundException;
-import com.somamission.peanutbutter.intf.IReservedWordService;
+import com.somamission.peanutbutter.exception.VersionConflictException;
+import com.somamission.peanutbutter.intf.IPasswordPolicyService;
+import com.somamission.peanutbutter.intf.IUserAvailabilityService;
+import com.somamission.peanutbutter.intf.IUserCacheService;
+import com.somamission.peanutbutter.intf.IUserCacheWarmUpService;
 import com.somamission.peanutbutter.intf.IUserService;
+import com.somamission.peanutbutter.intf.IUserValidationService;
 import com.somamission.peanutbutter.param.AddressParams;
 import com.somamission.peanutbutter.param.NameParams;
 import com.somamission.peanutbutter.param.PhotoParams;
 import com.somamission.peanutbutter.param.UserParams;
 import com.somamission.peanutbutter.repository.IUserRepository;
+import com.somamission.peanutbutter.security.UpgradablePasswordEncoder;
+import com.somamission.peanutbutter.support.EntityTags;
+import com.somamission.peanutbutter.support.OptimisticRetryExecutor;
+import com.somamission.peanutbutter.support.PasswordPolicy;
+import com.somamission.peanutbutter.support.PasswordPolicyResult;
 import org.apache.commons.lang3.StringUtils;
+import org.hibernate.exception.ConstraintViolationException;
 import org.passay.*;
-import org.redisson.api.RMapCache;
-import org.redisson.api.RedissonClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.BeanWrapperImpl;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.CacheManager;
-import org.springframework.cache.annotation.CachePut;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
-
-import javax.validation.ConstraintViolation;
-import javax.validation.Validator;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.PersistenceException;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaUpdate;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Root;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Set;
-import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
+import java.util.Locale;
+import java.util.Map;
 
 @Service
 public class UserService implements IUserService {
   private static final String USERNAME_INVALID_MSG =
       ErrorMessageConstants.REQUIRED_PARAMETER_NOT_FOUND + ": username";
-  private static final String EMAIL_INVALID_MSG =
-      ErrorMessageConstants.REQUIRED_PARAMETER_NOT_FOUND + ": email";
-  private static final String PASSWORD_INVALID_MSG =
-      ErrorMessageConstants.REQUIRED_PARAMETER_NOT_FOUND + ": password";
   private static final String USER_ALREADY_EXISTS_MSG = "User already exists";
+  private static final String NO_CHANGES_MSG = "no field to update";
+  private static final String EMAIL_PROPERTY = "email";
+  private static final String PASSWORD_GENERATION_FAILED_MSG =
+      "no generated password passed the password policy";
+  private static final int MAX_PASSWORD_ATTEMPTS = 10;
+  private static final long PASSWORD_RETRY_AFTER_SECONDS = 1L;
   private static final Logger logger = LoggerFactory.getLogger(UserService.class);
 
   @Autowired private IUserRepository userRepository;
 
-  @Autowired private IReservedWordService reservedWordService;
+  @Autowired private IUserValidationService userValidationService;
+
+  @Autowired private IPasswordPolicyService passwordPolicyService;
+
+  @Autowired private UpgradablePasswordEncoder passwordEncoder;
+
+  @Autowired private IUserCacheService userCacheService;
 
-  @Autowired private PasswordEncoder passwordEncoder;
+  @Autowired private IUserCacheWarmUpService userCacheWarmUpService;
 
-  @Autowired private RedissonClient redissonClient;
+  @Autowired private IUserAvailabilityService userAvailabilityService;
 
-  @Autowired private CacheManager cacheManager;
+  @Autowired private OptimisticRetryExecutor userUpdateRetryExecutor;
 
-  @Autowired private Validator validator;
+  @PersistenceContext private EntityManager entityManager;
 
   @Override
-  @Cacheable(cacheNames = "users", key = "#username")
   public User getUserByUsername(String username) throws UserNotFoundException {
-    logger.info("Getting user by username");
-    try {
-      if (StringUtils.isEmpty(username)) {
-        throw new ObjectNotFoundException();
-      }
-      return userRepository.findByUsername(username).orElseThrow(ObjectNotFoundException::new);
-    } catch (ObjectNotFoundException e) {
-      String notFoundMessage = "username " + username + " not found";
-      logger.info(notFoundMessage);
-      throw new UserNotFoundException(notFoundMessage);
+    User user =
+        StringUtils.isEmpty(username) ? null : userCacheService.get(username, () -> find(username));
+    if (null == user) {
+      throw notFound(username);
+    }
+    userCacheWarmUpService.recordAccess(username);
+    return user;
+  }
+
+  @Override
+  public CachedJson getUserJson(String username)
+      throws UserNotFoundException, JsonProcessingException {
+    CachedJson json =
+        StringUtils.isEmpty(username)
+            ? null
+            : userCacheService.getJson(username, () -> find(username));
+    if (null == json) {
+      throw notFound(username);
     }
+    userCacheWarmUpService.recordAccess(username);
+    return json;
   }
 
   @Override
   public UserDetails loadUserByUsername(String username) {
-    throw new UnsupportedOperationException();
+    User user =
+        userRepository
+            .findByUsername(username)
+            .orElseThrow(() -> new UsernameNotFoundException(username));
+    return org.springframework.security.core.userdetails.User.withUsername(user.getUsername())
+        .password(user.getPassword())
+        .roles("USER")
+        .build();
   }
 
   @Override
-  public void createNewUser(String username, String email, String password)
+  public User createNewUser(String username, String email, String password)
       throws BadRequestException, UserFoundException {
     logger.info("Inserting new user");
-
-    if (userRepository.findByUsername(username).isPresent()) {
-      String conflictMessage = USER_ALREADY_EXISTS_MSG + ": " + username;
-      logger.info(conflictMessage);
-      throw new UserFoundException(conflictMessage);
-    }
-
-    if (StringUtils.isEmpty(email)) {
-      logger.info(EMAIL_INVALID_MSG);
-      throw new BadRequestException(EMAIL_INVALID_MSG);
-    }
-    if (StringUtils.isEmpty(username)) {
-      logger.info(USERNAME_INVALID_MSG);
-      throw new BadRequestException(USERNAME_INVALID_MSG);
-    }
-    if (StringUtils.isEmpty(password)) {
-      logger.info(PASSWORD_INVALID_MSG);
-      throw new BadRequestException(PASSWORD_INVALID_MSG);
-    }
-
-    if (!isUsernameValid(username)) {
-      String usernameNotValidMessage =
-          username
-              + " username is invalid. Requirements: "
-              + ErrorMessageConstants.USERNAME_FORMAT_REQUIREMENTS;
-      logger.info(usernameNotValidMessage);
-      throw new BadRequestException(usernameNotValidMessage);
-    }
-
-    if (isPasswordValid(password)) {
-      String notSecureEnoughMessage =
-          "password is invalid. Requirements: "
-              + ErrorMessageConstants.PASSWORD_FORMAT_REQUIREMENTS;
-      logger.info(notSecureEnoughMessage);
-      throw new BadRequestException(notSecureEnoughMessage);
-    }
+    userValidationService.validateNewUser(username, email, password);
 
     User user = new User();
     user.setEmail(email);
     user.setUsername(username);
     user.setPassword(passwordEncoder.encode(password));
+    userValidationService.validate(user);
 
-    Set<ConstraintViolation<User>> errors = validator.validate(user);
-    if (!errors.isEmpty()) {
-      handleValidationErrors(errors);
+    // no existence check first, the unique keys decide and two racing signups cannot both win
+    User saved;
+    try {
+      saved = userRepository.saveAndFlush(user);
+    } catch (DataIntegrityViolationException e) {
+      throw toUserFoundException(e, username, email);
     }
-
-    userRepository.save(user);
-    updateUsersCacheForUsername(username, user);
+    userAvailabilityService.record(saved.getUsername(), saved.getEmail());
+    userCacheService.put(saved);
+    return saved;
   }
 
   @Override
-  public void updatePassword(String username, String password)
+  public User updatePassword(String username, String password)
       throws BadRequestException, UserNotFoundException {
     logger.info("Updating user password");
     if (StringUtils.isEmpty(username)) {
@@ -144,27 +158,49 @@ public class UserService implements IUserService {
       throw new BadRequestException(USERNAME_INVALID_MSG);
     }
 
-    if (isPasswordValid(password)) {
-      String passwordIsNotSecureEnoughMessage =
-          "password is invalid. Requirements: "
-              + ErrorMessageConstants.PASSWORD_FORMAT_REQUIREMENTS;
-      logger.info(passwordIsNotSecureEnoughMessage);
-      throw new BadRequestException(passwordIsNotSecureEnoughMessage);
-    }
+    userValidationService.validatePassword(password);
 
     UserParams userParams =
         new UserParams.Builder().withUsername(username).withPassword(password).build();
-    updateUser(userParams);
+    return updateUser(userParams);
   }
 
   @Override
-  public void resetPassword(String username) throws UserNotFoundException, BadRequestException {
+  public User resetPassword(String username) throws UserNotFoundException, BadRequestException {
     logger.info("Resetting user password");
-    updatePassword(username, generatePassword());
+    return updatePassword(username, generatePassword());
   }
 
   @Override
-  public void updateEmail(String username, String email)
+  public boolean matchesPassword(String username, String password) throws UserNotFoundException {
+    logger.info("Verifying user password");
+    User user;
+    try {
+      user = userRepository.findByUsername(username).orElseThrow(ObjectNotFoundException::new);
+    } catch (ObjectNotFoundException e) {
+      throw new UserNotFoundException(username);
+    }
+
+    if (!passwordEncoder.matches(password, user.getPassword())) {
+      return false;
+    }
+
+    // the raw password is only at hand now, so this is the moment to move it to the current hash
+    if (passwordEncoder.upgradeEncoding(user.getPassword())) {
+      logger.info("Rehashing user password with current parameters");
+      user.setPassword(passwordEncoder.encode(password));
+      try {
+        userCacheService.put(userRepository.save(user));
+      } catch (OptimisticLockingFailureException e) {
+        // the user changed meanwhile, the next successful login rehashes instead
+        logger.info("Skipping rehash of a concurrently updated user");
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public User updateEmail(String username, String email)
       throws BadRequestException, UserNotFoundException {
     logger.info("Updating user email");
     if (StringUtils.isEmpty(username)) {
@@ -174,35 +210,35 @@ public class UserService implements IUserService {
 
     UserParams userParams =
         new UserParams.Builder().withUsername(username).withEmail(email).build();
-    updateUser(userParams);
+    return updateUser(userParams);
   }
 
   @Override
-  public void updateUserInfo(String username, NameParams nameParams)
+  public User updateUserInfo(String username, NameParams nameParams)
       throws UserNotFoundException, BadRequestException {
     UserParams userParams =
         new UserParams.Builder().withUsername(username).withNameParams(nameParams).build();
-    this.updateUser(userParams);
+    return updateUser(userParams);
   }
 
   @Override
-  public void updateUserInfo(String username, PhotoParams photoParams)
+  public User updateUserInfo(String username, PhotoParams photoParams)
       throws BadRequestException, UserNotFoundException {
     UserParams userParams =
         new UserParams.Builder().withUsername(username).withPhotoParams(photoParams).build();
-    this.updateUser(userParams);
+    return updateUser(userParams);
   }
 
   @Override
-  public void updateUserInfo(String username, AddressParams addressParams)
+  public User updateUserInfo(String username, AddressParams addressParams)
       throws UserNotFoundException, BadRequestException {
     UserParams userParams =
         new UserParams.Builder().withUsername(username).withAddressParams(addressParams).build();
-    this.updateUser(userParams);
+    return updateUser(userParams);
   }
 
   @Override
-  public void updateUserInfo(
+  public User updateUserInfo(
       String username, NameParams nameParams, PhotoParams photoParams, AddressParams addressParams)
       throws UserNotFoundException, BadRequestException {
     UserParams userParams =
@@ -212,11 +248,105 @@ public class UserService implements IUserService {
             .withPhotoParams(photoParams)
             .withAddressParams(addressParams)
             .build();
-    this.updateUser(userParams);
+    return updateUser(userParams);
+  }
+
+  @Override
+  public User patchUser(UserParams userParams) throws UserNotFoundException, BadRequestException {
+    logger.info("Patching user");
+    requireChanges(userParams);
+    return updateUser(userParams);
+  }
+
+  @Override
+  // a taken email is thrown as checked, the failed update must still roll back
+  @Transactional(rollbackFor = UserFoundException.class)
+  public void patchUserInPlace(UserParams userParams)
+      throws UserNotFoundException, BadRequestException, UserFoundException {
+    logger.info("Patching user in place");
+    String username = userParams.getUsername();
+    Map<String, Object> changes = requireChanges(userParams);
+
+    // no read-modify-write here, so the row is neither selected nor locked before the update
+    CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+    CriteriaUpdate<User> update = criteriaBuilder.createCriteriaUpdate(User.class);
+    Root<User> root = update.from(User.class);
+    for (Map.Entry<String, Object> change : changes.entrySet()) {
+      update.set(root.get(change.getKey()), change.getValue());
+    }
+    if (changes.containsKey(EMAIL_PROPERTY)) {
+      update.set(root.get("emailDomain"), User.emailDomainOf((String) changes.get(EMAIL_PROPERTY)));
+    }
+    // bulk updates bypass optimistic locking, bump the version so cached copies and etags go stale
+    Path<Long> version = root.get("version");
+    update.set(version, criteriaBuilder.sum(version, 1L));
+    update.where(criteriaBuilder.equal(root.get("username"), username));
+
+    String email = (String) changes.get(EMAIL_PROPERTY);
+    int updated;
+    try {
+      updated = entityManager.createQuery(update).executeUpdate();
+    } catch (PersistenceException | DataIntegrityViolationException e) {
+      throw toUserFoundException(e, username, email);
+    }
+    if (0 == updated) {
+      throw new UserNotFoundException(username);
+    }
+    // evicted now for reads later in this transaction, and again once the update is visible, so
+    // that a reader who cached the old row in between does not keep it
+    userCacheService.evict(username);
+    afterCommit(
+        () -> {
+          userAvailabilityService.record(null, email);
+          userCacheService.evict(username);
+        });
   }
 
-  private void updateUser(UserParams userParams) throws UserNotFoundException, BadRequestException {
+  // runs the action once the current transaction committed, or at once outside of one
+  private static void afterCommit(Runnable action) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      action.run();
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(
+        new TransactionSynchronizationAdapter() {
+          @Override
+          public void afterCommit() {
+            action.run();
+          }
+        });
+  }
+
+  private User updateUser(UserParams userParams) throws UserNotFoundException, BadRequestException {
     String username = userParams.getUsername();
+    Map<String, Object> changes = validateChanges(userParams);
+    // hashed once, a replayed attempt only merges the fields again
+    String encodedPassword =
+        StringUtils.isEmpty(userParams.getPassword())
+            ? null
+            : passwordEncoder.encode(StringUtils.trim(userParams.getPassword()));
+
+    User saved;
+    try {
+      saved =
+          userUpdateRetryExecutor.execute(() -> mergeAndSave(username, changes, encodedPassword));
+      userAvailabilityService.record(null, (String) changes.get(EMAIL_PROPERTY));
+    } catch (OptimisticLockingFailureException e) {
+      User current = userRepository.findByUsername(username).orElse(null);
+      String conflictMessage = "user " + username + " kept changing while being updated";
+      logger.info(conflictMessage);
+      throw new VersionConflictException(
+          conflictMessage,
+          null == current ? null : current.getVersion(),
+          null == current ? null : EntityTags.of(current));
+    }
+    userCacheService.put(saved);
+    return saved;
+  }
+
+  // reads the current row on every attempt, so a retry merges onto what the winner wrote
+  private User mergeAndSave(String username, Map<String, Object> changes, String encodedPassword)
+      throws UserNotFoundException {
     User user;
     try {
       user = userRepository.findByUsername(username).orElseThrow(ObjectNotFoundException::new);
@@ -224,97 +354,139 @@ public class UserService implements IUserService {
       throw new UserNotFoundException(username);
     }
 
-    if (!StringUtils.isEmpty(userParams.getEmail())) {
-      user.setEmail(StringUtils.trim(userParams.getEmail()));
+    if (null != encodedPassword) {
+      user.setPassword(encodedPassword);
     }
 
-    if (!StringUtils.isEmpty(userParams.getPassword())) {
-      user.setPassword(passwordEncoder.encode(StringUtils.trim(userParams.getPassword())));
+    // the entity is dynamically updated, so only the columns set here end up in the UPDATE
+    BeanWrapper userWrapper = new BeanWrapperImpl(user);
+    for (Map.Entry<String, Object> change : changes.entrySet()) {
+      userWrapper.setPropertyValue(change.getKey(), change.getValue());
     }
 
-    if (null != userParams.getNameParams()) {
-      NameParams nameParams = userParams.getNameParams();
-      if (!StringUtils.isEmpty(nameParams.getFirstName())) {
-        user.setFirstName(StringUtils.trim(nameParams.getFirstName()));
+    // the version check of the UPDATE fails the save if another writer got there first
+    return userRepository.save(user);
+  }
+
+  // runs on cache misses only, a username that is not found is then cached as missing
+  private User find(String username) {
+    logger.info("Getting user by username");
+    return userRepository.findByUsername(username).orElse(null);
+  }
+
+  // repeated lookups of unknown usernames are cheap: no query, no log line and no stack trace
+  private static UserNotFoundException notFound(String username) {
+    return new UserNotFoundException("username " + username + " not found");
+  }
+
+  private UserFoundException toUserFoundException(
+      RuntimeException e, String username, String email) {
+    String constraint = violatedConstraint(e);
+    String conflictMessage;
+    String field;
+    if (constraint.contains(User.USERNAME_CONSTRAINT)) {
+      field = "username";
+      conflictMessage = USER_ALREADY_EXISTS_MSG + ": username " + username + " is taken";
+    } else if (constraint.contains(User.EMAIL_CONSTRAINT)) {
+      field = EMAIL_PROPERTY;
+      conflictMessage = USER_ALREADY_EXISTS_MSG + ": email " + email + " is taken";
+    } else {
+      throw e;
+    }
+    logger.info(conflictMessage);
+    return new UserFoundException(conflictMessage, field);
+  }
+
+  // the constraint name as hibernate extracted it, or the driver message when it could not
+  private static String violatedConstraint(RuntimeException e) {
+    for (Throwable cause = e; null != cause; cause = cause.getCause()) {
+      if (cause instanceof ConstraintViolationException
+          && null != ((ConstraintViolationException) cause).getConstraintName()) {
+        return ((ConstraintViolationException) cause).getConstraintName().toLowerCase(Locale.ROOT);
       }
+    }
+    String message = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+    return null == message ? "" : message.toLowerCase(Locale.ROOT);
+  }
 
+  private Map<String, Object> requireChanges(UserParams userParams) throws BadRequestException {
+    if (StringUtils.isEmpty(userParams.getUsername())) {
+      logger.info(USERNAME_INVALID_MSG);
+      throw new BadRequestException(USERNAME_INVALID_MSG);
+    }
+    Map<String, Object> changes = validateChanges(userParams);
+    if (changes.isEmpty()) {
+      logger.info(NO_CHANGES_MSG);
+      throw new BadRequestException(NO_CHANGES_MSG);
+    }
+    return changes;
+  }
+
+  // collects the entity properties the request touches and checks each one on its own
+  private Map<String, Object> validateChanges(UserParams userParams) throws BadRequestException {
+    Map<String, Object> changes = new LinkedHashMap<>();
+    if (!StringUtils.isEmpty(userParams.getEmail())) {
+      changes.put(EMAIL_PROPERTY, StringUtils.trim(userParams.getEmail()));
+    }
+
+    NameParams nameParams = userParams.getNameParams();
+    if (null != nameParams) {
+      if (!StringUtils.isEmpty(nameParams.getFirstName())) {
+        changes.put("firstName", StringUtils.trim(nameParams.getFirstName()));
+      }
       if (!StringUtils.isEmpty(nameParams.getLastName())) {
-        user.setLastName(StringUtils.trim(nameParams.getLastName()));
+        changes.put("lastName", StringUtils.trim(nameParams.getLastName()));
       }
     }
 
-    if (null != userParams.getPhotoParams()) {
-      PhotoParams photoParams = userParams.getPhotoParams();
+    PhotoParams photoParams = userParams.getPhotoParams();
+    if (null != photoParams) {
       if (!StringUtils.isEmpty(photoParams.getProfileUrl())) {
-        user.setProfilePhotoUrl(photoParams.getProfileUrl());
+        changes.put("profilePhotoUrl", photoParams.getProfileUrl());
       }
-
       if (!StringUtils.isEmpty(photoParams.getCoverUrl())) {
-        user.setCoverPhotoUrl(photoParams.getCoverUrl());
+        changes.put("coverPhotoUrl", photoParams.getCoverUrl());
       }
     }
 
-    if (null != userParams.getAddressParams()
-        && !StringUtils.isEmpty(userParams.getAddressParams().getFullAddress())) {
-      user.setFullAddress(StringUtils.trim(userParams.getAddressParams().getFullAddress()));
+    AddressParams addressParams = userParams.getAddressParams();
+    if (null != addressParams && !StringUtils.isEmpty(addressParams.getFullAddress())) {
+      changes.put("fullAddress", StringUtils.trim(addressParams.getFullAddress()));
     }
 
-    Set<ConstraintViolation<User>> errors = validator.validate(user);
-    if (!errors.isEmpty()) {
-      handleValidationErrors(errors);
+    for (Map.Entry<String, Object> change : changes.entrySet()) {
+      userValidationService.validateProperty(change.getKey(), change.getValue());
     }
-
-    userRepository.save(user);
-    updateUsersCacheForUsername(username, user);
-  }
-
-  // can this be part of hibernate validator?
-  private boolean isUsernameValid(String username) {
-    List<String> reservedWords =
-        reservedWordService.getAllReservedWords().stream()
-            .map(ReservedWord::getWord)
-            .collect(Collectors.toList());
-    return !reservedWords.contains(username);
-  }
-
-  // can this be part of hibernate validator?
-  private boolean isPasswordValid(String password) {
-    // should we have a special character rule?
-    PasswordValidator passwordValidator =
-        new PasswordValidator(
-            new LengthRule(8, 128),
-            new CharacterRule(EnglishCharacterData.UpperCase, 1),
-            new CharacterRule(EnglishCharacterData.LowerCase, 1),
-            new CharacterRule(EnglishCharacterData.Digit, 1),
-            new WhitespaceRule());
-
-    RuleResult result = passwordValidator.validate(new PasswordData(password));
-    return !result.isValid();
+    return changes;
   }
 
   private String generatePassword() {
+    PasswordPolicy policy = passwordPolicyService.getPolicy();
+    int uppercase = Math.max(1, policy.getMinUppercase());
+    int lowercase = Math.max(1, policy.getMinLowercase());
+    int digits = Math.max(1, policy.getMinDigits());
+    int special = Math.max(1, policy.getMinSpecial());
     List<CharacterRule> rules =
         Arrays.asList(
-            new CharacterRule(EnglishCharacterData.UpperCase, 1),
-            new CharacterRule(EnglishCharacterData.LowerCase, 1),
-            new CharacterRule(EnglishCharacterData.Digit, 1),
-            new CharacterRule(EnglishCharacterData.Special, 1));
+            new CharacterRule(EnglishCharacterData.UpperCase, uppercase),
+            new CharacterRule(EnglishCharacterData.LowerCase, lowercase),
+            new CharacterRule(EnglishCharacterData.Digit, digits),
+            new CharacterRule(EnglishCharacterData.Special, special));
+    int required = uppercase + lowercase + digits + special;
+    int length =
+        Math.min(policy.getMaxLength(), Math.max(Math.max(12, policy.getMinLength()), required));
 
     PasswordGenerator generator = new PasswordGenerator();
-    return generator.generatePassword(12, rules);
-  }
-
-  private void handleValidationErrors(Set<ConstraintViolation<User>> errors)
-      throws BadRequestException {
-    String errorMessage =
-        StringUtils.join(errors.stream().map(ConstraintViolation::getMessage).toArray(), "\n");
-    logger.info(errorMessage);
-    throw new BadRequestException(errorMessage);
-  }
-
-  @CachePut(cacheNames = "users", key = "#username")
-  private void updateUsersCacheForUsername(String username, User user) {
-    RMapCache<String, User> userRMapCache = redissonClient.getMapCache("users");
-    userRMapCache.put(username, user, 30, TimeUnit.MINUTES);
+    // a generated password can still be a bloom filter false positive, just draw another one
+    for (int attempt = 0; attempt < MAX_PASSWORD_ATTEMPTS; attempt++) {
+      String password = generator.generatePassword(length, rules);
+      if (PasswordPolicyResult.VALID == passwordPolicyService.check(password)) {
+        return password;
+      }
+    }
+    // a policy no generated password meets, or a filter that flags everything
+    logger.error("No generated password passed the password policy");
+    throw new ServiceUnavailableException(
+        PASSWORD_GENERATION_FAILED_MSG, PASSWORD_RETRY_AFTER_SECONDS);
   }
 }
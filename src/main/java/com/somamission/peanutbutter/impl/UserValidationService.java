@@ -0,0 +1,111 @@
+package com.somamission.peanutbutter.impl;
+
+import com.somamission.peanutbutter.constants.ErrorMessageConstants;
+import com.somamission.peanutbutter.domain.User;
+import com.somamission.peanutbutter.exception.BadRequestException;
+import com.somamission.peanutbutter.intf.IPasswordPolicyService;
+import com.somamission.peanutbutter.intf.IReservedWordService;
+import com.somamission.peanutbutter.intf.IUserValidationService;
+import com.somamission.peanutbutter.support.PasswordPolicyResult;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.util.Locale;
+import java.util.Set;
+
+@Service
+public class UserValidationService implements IUserValidationService {
+  private static final String USERNAME_INVALID_MSG =
+      ErrorMessageConstants.REQUIRED_PARAMETER_NOT_FOUND + ": username";
+  private static final String EMAIL_INVALID_MSG =
+      ErrorMessageConstants.REQUIRED_PARAMETER_NOT_FOUND + ": email";
+  private static final String PASSWORD_INVALID_MSG =
+      ErrorMessageConstants.REQUIRED_PARAMETER_NOT_FOUND + ": password";
+  private static final Logger logger = LoggerFactory.getLogger(UserValidationService.class);
+
+  @Autowired private IReservedWordService reservedWordService;
+
+  @Autowired private IPasswordPolicyService passwordPolicyService;
+
+  @Autowired private Validator validator;
+
+  @Override
+  public void validateNewUser(String username, String email, String password)
+      throws BadRequestException {
+    if (StringUtils.isEmpty(email)) {
+      logger.info(EMAIL_INVALID_MSG);
+      throw new BadRequestException(EMAIL_INVALID_MSG);
+    }
+    if (StringUtils.isEmpty(username)) {
+      logger.info(USERNAME_INVALID_MSG);
+      throw new BadRequestException(USERNAME_INVALID_MSG);
+    }
+    if (StringUtils.isEmpty(password)) {
+      logger.info(PASSWORD_INVALID_MSG);
+      throw new BadRequestException(PASSWORD_INVALID_MSG);
+    }
+
+    if (!isUsernameValid(username)) {
+      String usernameNotValidMessage =
+          username
+              + " username is invalid. Requirements: "
+              + ErrorMessageConstants.USERNAME_FORMAT_REQUIREMENTS;
+      logger.info(usernameNotValidMessage);
+      throw new BadRequestException(usernameNotValidMessage);
+    }
+
+    validatePassword(password);
+  }
+
+  @Override
+  public void validatePassword(String password) throws BadRequestException {
+    PasswordPolicyResult result = passwordPolicyService.check(password);
+    if (PasswordPolicyResult.BREACHED == result) {
+      logger.info(ErrorMessageConstants.PASSWORD_BREACHED);
+      throw new BadRequestException(ErrorMessageConstants.PASSWORD_BREACHED);
+    }
+    if (PasswordPolicyResult.VALID != result) {
+      String notSecureEnoughMessage =
+          "password is invalid ("
+              + result.name().toLowerCase(Locale.ROOT)
+              + "). Requirements: "
+              + ErrorMessageConstants.PASSWORD_FORMAT_REQUIREMENTS;
+      logger.info(notSecureEnoughMessage);
+      throw new BadRequestException(notSecureEnoughMessage);
+    }
+  }
+
+  @Override
+  public void validate(User user) throws BadRequestException {
+    Set<ConstraintViolation<User>> errors = validator.validate(user);
+    if (!errors.isEmpty()) {
+      handleValidationErrors(errors);
+    }
+  }
+
+  @Override
+  public void validateProperty(String property, Object value) throws BadRequestException {
+    Set<ConstraintViolation<User>> errors = validator.validateValue(User.class, property, value);
+    if (!errors.isEmpty()) {
+      handleValidationErrors(errors);
+    }
+  }
+
+  // can this be part of hibernate validator?
+  private boolean isUsernameValid(String username) {
+    return !reservedWordService.isReserved(username);
+  }
+
+  private void handleValidationErrors(Set<ConstraintViolation<User>> errors)
+      throws BadRequestException {
+    String errorMessage =
+        StringUtils.join(errors.stream().map(ConstraintViolation::getMessage).toArray(), "\n");
+    logger.info(errorMessage);
+    throw new BadRequestException(errorMessage);
+  }
+}
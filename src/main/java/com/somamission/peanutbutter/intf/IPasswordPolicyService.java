@@ -0,0 +1,20 @@
+package com.somamission.peanutbutter.intf;
+
+import com.somamission.peanutbutter.support.PasswordPolicy;
+import com.somamission.peanutbutter.support.PasswordPolicyResult;
+
+public interface IPasswordPolicyService {
+  /**
+   * Checks a password against the configured rules, then against the breached password list
+   *
+   * @param password the candidate password
+   * @return the first rule the password breaks, or VALID
+   */
+  PasswordPolicyResult check(String password);
+
+  /** @return the rules compiled from the password.policy.* properties */
+  PasswordPolicy getPolicy();
+
+  /** Loads the breached password list again if the file changed, the old list serves meanwhile */
+  void reloadBreachedList();
+}
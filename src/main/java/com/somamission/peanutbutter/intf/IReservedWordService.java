@@ -6,4 +6,18 @@ import java.util.List;
 
 public interface IReservedWordService {
   List<ReservedWord> getAllReservedWords();
+
+  /**
+   * Checks a word against the in-memory snapshot of reserved words, ignoring case
+   *
+   * @param word the word to look up
+   * @return true if the word is reserved
+   */
+  boolean isReserved(String word);
+
+  /** Reloads the local snapshot from the reserved_words table */
+  void refresh();
+
+  /** Asks every node, this one included, to reload its snapshot */
+  void publishRefresh();
 }
@@ -0,0 +1,42 @@
+package com.somamission.peanutbutter.intf;
+
+public interface IUserAvailabilityService {
+  /**
+   * Answers from the shared bloom filter when the username is certainly free, and asks the
+   * database only when the filter reports a possible match
+   *
+   * @param username the wanted username
+   * @return true if no user has this username
+   */
+  boolean isUsernameAvailable(String username);
+
+  /**
+   * Same as {@link #isUsernameAvailable(String)} for emails
+   *
+   * @param email the wanted email
+   * @return true if no user has this email
+   */
+  boolean isEmailAvailable(String email);
+
+  /**
+   * Adds a stored username and email to the filters, must be called after every insert and email
+   * change or the filters would report taken values as free
+   *
+   * @param username the stored username, null when it did not change
+   * @param email the stored email, null when it did not change
+   */
+  void record(String username, String email);
+
+  /**
+   * Fills the filters from the database unless some node did already. Runs at startup and then
+   * every users.availability.seed-retry-ms, so the filters still get seeded when the node that
+   * was filling them dies. Until then every check asks the database.
+   */
+  void seed();
+
+  /**
+   * Adds the values recorded before the filters were seeded or while Redis was unreachable. Runs
+   * every users.availability.pending-retry-ms, at the end of a seed and when Redis comes back.
+   */
+  void addPending();
+}
@@ -0,0 +1,69 @@
+package com.somamission.peanutbutter.intf;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.somamission.peanutbutter.domain.CachedJson;
+import com.somamission.peanutbutter.domain.User;
+
+import java.util.concurrent.Callable;
+
+/** Owns every write to the users cache and to the cache of their serialized responses */
+public interface IUserCacheService {
+  /**
+   * Caches a user, and its serialized response, in every tier unless a newer version of the same
+   * row is already cached
+   *
+   * @param user the user as persisted, carrying its current version
+   */
+  void put(User user);
+
+  /**
+   * Serializes a user as it is returned to clients and caches the bytes under its username
+   *
+   * @param user the user as persisted, carrying its current version
+   * @return the serialized user, also when a newer version was cached in the meantime
+   */
+  CachedJson putJson(User user) throws JsonProcessingException;
+
+  /**
+   * Reads a user from the cache, loading it on a miss. Concurrent misses share one load, and a
+   * user the loader did not find is remembered as missing for a short while.
+   *
+   * @param username the cache key
+   * @param loader finds the user, returning null when there is none
+   * @return the user, or null when there is none
+   */
+  User get(String username, Callable<User> loader);
+
+  /**
+   * Reads a serialized user from the cache, serializing the user from {@link #get(String,
+   * Callable)} on a miss
+   *
+   * @param username the cache key
+   * @param loader finds the user, returning null when there is none
+   * @return the response body and the version it was made from, or null when there is no user
+   */
+  CachedJson getJson(String username, Callable<User> loader) throws JsonProcessingException;
+
+  /**
+   * Reads a user from the cache without loading it on a miss
+   *
+   * @param username the cache key
+   * @return the cached user, or null when it is not cached
+   */
+  User peek(String username);
+
+  /**
+   * Reads a serialized user from the cache without loading it on a miss
+   *
+   * @param username the cache key
+   * @return the cached response body and the version it was made from, or null
+   */
+  CachedJson peekJson(String username);
+
+  /**
+   * Drops a user and its serialized response from every tier on every node
+   *
+   * @param username the cache key
+   */
+  void evict(String username);
+}
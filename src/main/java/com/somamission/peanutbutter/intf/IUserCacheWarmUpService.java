@@ -0,0 +1,29 @@
+package com.somamission.peanutbutter.intf;
+
+/** Keeps track of the most read users so a starting node can fill its caches with them */
+public interface IUserCacheWarmUpService {
+  /**
+   * Counts a read of a user that exists, sampled
+   *
+   * @param username the user read
+   */
+  void recordAccess(String username);
+
+  /** Adds the reads counted since the last call to the ranking shared by all nodes */
+  void persistHotUsernames();
+
+  /**
+   * Loads the top of the shared ranking into the users caches, from L2 when it still holds them
+   * and from the database otherwise, in parallel batches
+   */
+  void warmUp();
+
+  /** True once warm-up finished, failed or timed out, or when it is turned off */
+  boolean isWarmedUp();
+
+  /** How long the last warm-up took */
+  long getWarmUpMillis();
+
+  /** Users the last warm-up put in the caches */
+  long getLoadedEntries();
+}
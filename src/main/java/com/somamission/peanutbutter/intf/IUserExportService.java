@@ -0,0 +1,16 @@
+package com.somamission.peanutbutter.intf;
+
+import com.somamission.peanutbutter.param.ExportFormat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+public interface IUserExportService {
+  /**
+   * Writes every user, without passwords, straight from a database cursor to the output
+   *
+   * @param format newline delimited JSON or CSV with a header line
+   * @param output where the users are written
+   */
+  void exportUsers(ExportFormat format, OutputStream output) throws IOException;
+}
@@ -0,0 +1,17 @@
+package com.somamission.peanutbutter.intf;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+public interface IUserImportService {
+  /**
+   * Creates users from a JSON array or newline delimited JSON stream of user params, and writes
+   * one newline delimited JSON result per record as each batch is stored. A record that cannot be
+   * read or stored is reported as such, and the others are still imported.
+   *
+   * @param input the records, each with a username, email and password
+   * @param output where the results are written
+   */
+  void importUsers(InputStream input, OutputStream output) throws IOException;
+}
@@ -0,0 +1,16 @@
+package com.somamission.peanutbutter.intf;
+
+import com.somamission.peanutbutter.domain.UserPage;
+import com.somamission.peanutbutter.exception.BadRequestException;
+import com.somamission.peanutbutter.param.UserSearchParams;
+
+public interface IUserListingService {
+  /**
+   * Lists users ordered by id, one page at a time. Each page starts right after the last id of the
+   * previous one, so deep pages cost the same as the first.
+   *
+   * @param userSearchParams optional filters, the page token of the previous page and a page size
+   * @throws BadRequestException if the page token or the page size is invalid
+   */
+  UserPage listUsers(UserSearchParams userSearchParams) throws BadRequestException;
+}
@@ -1,5 +1,7 @@
 package com.somamission.peanutbutter.intf;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.somamission.peanutbutter.domain.CachedJson;
 import com.somamission.peanutbutter.domain.User;
 import com.somamission.peanutbutter.exception.BadRequestException;
 import com.somamission.peanutbutter.exception.UserFoundException;
@@ -7,31 +9,69 @@ import com.somamission.peanutbutter.exception.UserNotFoundException;
 import com.somamission.peanutbutter.param.AddressParams;
 import com.somamission.peanutbutter.param.NameParams;
 import com.somamission.peanutbutter.param.PhotoParams;
+import com.somamission.peanutbutter.param.UserParams;
 import org.springframework.security.core.userdetails.UserDetailsService;
 
 public interface IUserService extends UserDetailsService {
   User getUserByUsername(String username) throws UserNotFoundException;
 
-  void createNewUser(String username, String email, String password)
+  /**
+   * Gets a user serialized as returned to clients, from the cache or else serialized and cached
+   * for the next read
+   *
+   * @param username the user to look up
+   * @return the response body and the version it was made from
+   */
+  CachedJson getUserJson(String username) throws UserNotFoundException, JsonProcessingException;
+
+  User createNewUser(String username, String email, String password)
       throws BadRequestException, UserFoundException;
 
-  void updatePassword(String username, String password)
+  User updatePassword(String username, String password)
       throws BadRequestException, UserNotFoundException;
 
-  void resetPassword(String username) throws UserNotFoundException, BadRequestException;
+  User resetPassword(String username) throws UserNotFoundException, BadRequestException;
+
+  /**
+   * Checks a password against the stored hash, and rehashes it when the stored hash was made with
+   * outdated parameters
+   *
+   * @param username the user to check
+   * @param password the raw password
+   * @return true if the password matches
+   */
+  boolean matchesPassword(String username, String password) throws UserNotFoundException;
 
-  void updateEmail(String username, String email) throws BadRequestException, UserNotFoundException;
+  User updateEmail(String username, String email) throws BadRequestException, UserNotFoundException;
 
-  void updateUserInfo(String username, NameParams nameParams)
+  User updateUserInfo(String username, NameParams nameParams)
       throws UserNotFoundException, BadRequestException;
 
-  void updateUserInfo(String username, PhotoParams photoParams)
+  User updateUserInfo(String username, PhotoParams photoParams)
       throws BadRequestException, UserNotFoundException;
 
-  void updateUserInfo(String username, AddressParams addressParams)
+  User updateUserInfo(String username, AddressParams addressParams)
       throws UserNotFoundException, BadRequestException;
 
-  void updateUserInfo(
+  User updateUserInfo(
       String username, NameParams nameParams, PhotoParams photoParams, AddressParams addressParams)
       throws UserNotFoundException, BadRequestException;
+
+  /**
+   * Updates only the fields present in the params, validating each of them on its own
+   *
+   * @param userParams the username and any subset of email, name, photo and address
+   * @return the saved user
+   * @throws BadRequestException if no field is given or a field is invalid
+   */
+  User patchUser(UserParams userParams) throws UserNotFoundException, BadRequestException;
+
+  /**
+   * Like {@link #patchUser(UserParams)} but writes the fields with a single UPDATE statement
+   * without reading the user first, and only evicts it from the cache
+   *
+   * @throws UserFoundException if the new email belongs to another user
+   */
+  void patchUserInPlace(UserParams userParams)
+      throws UserNotFoundException, BadRequestException, UserFoundException;
 }
@@ -0,0 +1,30 @@
+package com.somamission.peanutbutter.intf;
+
+import com.somamission.peanutbutter.domain.User;
+import com.somamission.peanutbutter.exception.BadRequestException;
+
+public interface IUserValidationService {
+  /**
+   * Checks the fields required to create a user, before anything is hashed or stored
+   *
+   * @throws BadRequestException if a field is missing, the username is reserved or the password is
+   *     not secure enough
+   */
+  void validateNewUser(String username, String email, String password) throws BadRequestException;
+
+  /** @throws BadRequestException if the password is not secure enough */
+  void validatePassword(String password) throws BadRequestException;
+
+  /** @throws BadRequestException with every constraint the user entity violates */
+  void validate(User user) throws BadRequestException;
+
+  /**
+   * Checks one property value against the constraints declared on the user entity, without
+   * building or loading a user
+   *
+   * @param property the entity property, e.g. email
+   * @param value the new value
+   * @throws BadRequestException with every constraint the value violates
+   */
+  void validateProperty(String property, Object value) throws BadRequestException;
+}
@@ -0,0 +1,75 @@
+package com.somamission.peanutbutter.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.repository.Repository;
+import org.springframework.stereotype.Component;
+
+/**
+ * Times every user service method and every repository call, tagged by method and by the
+ * exception thrown if any. Endpoints are timed by actuator as http.server.requests.
+ */
+@Aspect
+@Component
+public class LatencyAspect {
+  private static final String NONE = "none";
+
+  @Autowired private MeterRegistry meterRegistry;
+
+  @Around("execution(* com.somamission.peanutbutter.intf.IUserService+.*(..))")
+  public Object timeUserService(ProceedingJoinPoint joinPoint) throws Throwable {
+    return time(
+        "user.service",
+        "Latency of user service calls",
+        joinPoint.getSignature().getDeclaringType().getSimpleName(),
+        joinPoint);
+  }
+
+  // the repositories are spring data proxies, so inherited methods like save are matched too
+  @Around("this(org.springframework.data.repository.Repository)")
+  public Object timeRepository(ProceedingJoinPoint joinPoint) throws Throwable {
+    return time(
+        "repository.calls",
+        "Latency of repository calls",
+        repositoryName(joinPoint.getTarget()),
+        joinPoint);
+  }
+
+  private Object time(
+      String name, String description, String className, ProceedingJoinPoint joinPoint)
+      throws Throwable {
+    Timer.Sample sample = Timer.start(meterRegistry);
+    String exception = NONE;
+    try {
+      return joinPoint.proceed();
+    } catch (Throwable e) {
+      exception = e.getClass().getSimpleName();
+      throw e;
+    } finally {
+      sample.stop(
+          Timer.builder(name)
+              .description(description)
+              .tags(
+                  "class", className,
+                  "method", joinPoint.getSignature().getName(),
+                  "exception", exception)
+              .publishPercentileHistogram()
+              .register(meterRegistry));
+    }
+  }
+
+  // save and findAll are declared by spring data, name the repository they were called on instead
+  private static String repositoryName(Object repository) {
+    for (Class<?> type : repository.getClass().getInterfaces()) {
+      if (Repository.class.isAssignableFrom(type)
+          && type.getName().startsWith("com.somamission.peanutbutter")) {
+        return type.getSimpleName();
+      }
+    }
+    return repository.getClass().getSimpleName();
+  }
+}
@@ -0,0 +1,27 @@
+package com.somamission.peanutbutter.metrics;
+
+import com.somamission.peanutbutter.intf.IUserCacheWarmUpService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the node out of service until the users cache is warmed up, so a load balancer checking
+ * /actuator/health only sends it traffic once the hottest users are cached
+ */
+@Component
+public class UserCacheWarmUpHealthIndicator implements HealthIndicator {
+  @Autowired private IUserCacheWarmUpService userCacheWarmUpService;
+
+  @Override
+  public Health health() {
+    if (!userCacheWarmUpService.isWarmedUp()) {
+      return Health.outOfService().withDetail("warmUp", "in progress").build();
+    }
+    return Health.up()
+        .withDetail("warmUpMillis", userCacheWarmUpService.getWarmUpMillis())
+        .withDetail("loadedEntries", userCacheWarmUpService.getLoadedEntries())
+        .build();
+  }
+}
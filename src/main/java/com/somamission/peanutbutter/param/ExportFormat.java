@@ -0,0 +1,6 @@
+package com.somamission.peanutbutter.param;
+
+public enum ExportFormat {
+  NDJSON,
+  CSV
+}
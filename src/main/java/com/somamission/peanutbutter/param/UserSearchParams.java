@@ -0,0 +1,76 @@
+package com.somamission.peanutbutter.param;
+
+import java.util.Date;
+
+public class UserSearchParams {
+  public static class Builder {
+    private String emailDomain;
+    private String namePrefix;
+    private Date createdAfter;
+    private String pageToken;
+    private Integer limit;
+
+    public Builder withEmailDomain(String emailDomain) {
+      this.emailDomain = emailDomain;
+      return this;
+    }
+
+    public Builder withNamePrefix(String namePrefix) {
+      this.namePrefix = namePrefix;
+      return this;
+    }
+
+    public Builder withCreatedAfter(Date createdAfter) {
+      this.createdAfter = createdAfter;
+      return this;
+    }
+
+    public Builder withPageToken(String pageToken) {
+      this.pageToken = pageToken;
+      return this;
+    }
+
+    public Builder withLimit(Integer limit) {
+      this.limit = limit;
+      return this;
+    }
+
+    public UserSearchParams build() {
+      UserSearchParams userSearchParams = new UserSearchParams();
+      userSearchParams.emailDomain = this.emailDomain;
+      userSearchParams.namePrefix = this.namePrefix;
+      userSearchParams.createdAfter = this.createdAfter;
+      userSearchParams.pageToken = this.pageToken;
+      userSearchParams.limit = this.limit;
+      return userSearchParams;
+    }
+  }
+
+  private String emailDomain;
+  private String namePrefix;
+  private Date createdAfter;
+  private String pageToken;
+  private Integer limit;
+
+  private UserSearchParams() {}
+
+  public String getEmailDomain() {
+    return emailDomain;
+  }
+
+  public String getNamePrefix() {
+    return namePrefix;
+  }
+
+  public Date getCreatedAfter() {
+    return createdAfter;
+  }
+
+  public String getPageToken() {
+    return pageToken;
+  }
+
+  public Integer getLimit() {
+    return limit;
+  }
+}
@@ -0,0 +1,154 @@
+package com.somamission.peanutbutter.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.somamission.peanutbutter.support.CircuitBreaker;
+import org.redisson.api.RRateLimiter;
+import org.redisson.api.RateIntervalUnit;
+import org.redisson.api.RateType;
+import org.redisson.api.RedissonClient;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rate limits keys across all nodes with redisson's {@link RRateLimiter}, a counter per period
+ * kept in Redis. To keep Redis off the path of most requests, a node takes a share of a key's
+ * permits at once and hands them out locally until they run out or go stale. A key can therefore
+ * overshoot its limit by one share per node, and a share a node does not use in time is lost.
+ * While the circuit breaker keeps Redis out, limits are not enforced.
+ */
+public class DistributedRateLimiter {
+  private static final String KEY_PREFIX = "rate-limit:";
+  // locally held permits are dropped after this, so they cannot drift far into the next period
+  private static final long MAX_LOCAL_PERMITS_AGE_MS = 1000;
+  private static final long LOCAL_IDLE_MS = 5 * 60 * 1000L;
+  // outlives the local entries, so a node never finds the limiter it set up gone from Redis
+  private static final long MIN_KEY_TTL_MS = 2 * LOCAL_IDLE_MS;
+
+  private final RedissonClient redissonClient;
+  private final double localShare;
+  private final CircuitBreaker circuitBreaker;
+  private final com.github.benmanes.caffeine.cache.Cache<String, LocalPermits> localPermits;
+  private final LongAdder remoteAcquires = new LongAdder();
+
+  /**
+   * @param localShare share of a key's permits per period a node takes from Redis at once, 0 to
+   *     take them one by one
+   * @param maxLocalKeys how many keys a node keeps permits for
+   * @param circuitBreaker guards the calls to Redis, null to let their failures reach the caller
+   */
+  public DistributedRateLimiter(
+      RedissonClient redissonClient,
+      double localShare,
+      long maxLocalKeys,
+      CircuitBreaker circuitBreaker) {
+    this.redissonClient = redissonClient;
+    this.localShare = localShare;
+    this.circuitBreaker = circuitBreaker;
+    this.localPermits =
+        Caffeine.newBuilder()
+            .maximumSize(maxLocalKeys)
+            .expireAfterAccess(LOCAL_IDLE_MS, TimeUnit.MILLISECONDS)
+            .build();
+  }
+
+  /**
+   * Takes a permit for a key
+   *
+   * @param key what the limit counts, e.g. the bucket, scope and client
+   * @param config the limit of the key, the same on every call for that key
+   * @return true if the request may go ahead
+   */
+  public boolean tryAcquire(String key, RateLimitConfig config) {
+    if (!config.isLimited()) {
+      return true;
+    }
+    LocalPermits permits = localPermits.get(key, k -> new LocalPermits());
+    if (permits.tryTake()) {
+      return true;
+    }
+    // one thread per key goes to Redis, the others then take from what it brought back
+    synchronized (permits) {
+      if (permits.tryTake()) {
+        return true;
+      }
+      if (null == circuitBreaker) {
+        return refill(key, permits, config);
+      }
+      return circuitBreaker.execute(() -> refill(key, permits, config), () -> true);
+    }
+  }
+
+  /** Round trips to Redis for permits, a request that was served locally makes none */
+  public long getRemoteAcquires() {
+    return remoteAcquires.sum();
+  }
+
+  private boolean refill(String key, LocalPermits permits, RateLimitConfig config) {
+    RRateLimiter limiter = redissonClient.getRateLimiter(KEY_PREFIX + key);
+    try {
+      if (!permits.initialized) {
+        // only sets the rate when no node did yet, a changed limit applies once the key expires
+        limiter.trySetRate(
+            RateType.OVERALL,
+            config.getPermits(),
+            config.getPeriodMs(),
+            RateIntervalUnit.MILLISECONDS);
+        permits.initialized = true;
+      }
+      long share = Math.max(1, (long) (config.getPermits() * localShare));
+      remoteAcquires.increment();
+      boolean acquired = limiter.tryAcquire(share);
+      if (!acquired && share > 1) {
+        // near the limit, what is left goes one permit at a time
+        share = 1;
+        remoteAcquires.increment();
+        acquired = limiter.tryAcquire(1);
+      }
+      // redisson keeps a limiter's rate and permits forever, let all of its keys go once no node
+      // has used it for a while
+      limiter.expireAsync(
+          Math.max(MIN_KEY_TTL_MS, 2 * config.getPeriodMs()), TimeUnit.MILLISECONDS);
+      if (acquired) {
+        permits.fill(
+            share - 1,
+            System.nanoTime()
+                + TimeUnit.MILLISECONDS.toNanos(
+                    Math.min(config.getPeriodMs(), MAX_LOCAL_PERMITS_AGE_MS)));
+      }
+      return acquired;
+    } catch (RuntimeException e) {
+      // set the rate up again next time, in case Redis lost it
+      permits.initialized = false;
+      throw e;
+    }
+  }
+
+  /** The permits a node took for a key and has not handed out yet */
+  private static final class LocalPermits {
+    private final AtomicLong remaining = new AtomicLong();
+    private volatile long expiresAtNanos;
+    // guarded by the instance lock
+    private boolean initialized;
+
+    private boolean tryTake() {
+      if (System.nanoTime() - expiresAtNanos >= 0) {
+        return false;
+      }
+      long current;
+      do {
+        current = remaining.get();
+        if (current <= 0) {
+          return false;
+        }
+      } while (!remaining.compareAndSet(current, current - 1));
+      return true;
+    }
+
+    private void fill(long permits, long expiresAtNanos) {
+      remaining.set(permits);
+      this.expiresAtNanos = expiresAtNanos;
+    }
+  }
+}
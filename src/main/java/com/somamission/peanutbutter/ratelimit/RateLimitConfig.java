@@ -0,0 +1,33 @@
+package com.somamission.peanutbutter.ratelimit;
+
+/** How many requests a key may make per period */
+public class RateLimitConfig {
+  private final long permits;
+  private final long periodMs;
+
+  /**
+   * @param permits requests allowed per period, 0 for no limit
+   * @param periodMs length of the period
+   */
+  public RateLimitConfig(long permits, long periodMs) {
+    this.permits = permits;
+    this.periodMs = periodMs;
+  }
+
+  public long getPermits() {
+    return permits;
+  }
+
+  public long getPeriodMs() {
+    return periodMs;
+  }
+
+  public boolean isLimited() {
+    return permits > 0 && periodMs > 0;
+  }
+
+  /** How long a rejected client should wait, at most one period */
+  public long getRetryAfterSeconds() {
+    return Math.max(1, (periodMs + 999) / 1000);
+  }
+}
@@ -0,0 +1,148 @@
+package com.somamission.peanutbutter.ratelimit;
+
+import com.somamission.peanutbutter.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+/**
+ * Checks the {@link RateLimited} bucket of a controller method before it runs, per user, per
+ * client address and globally, and answers 429 with a Retry-After header once a limit is reached.
+ * When Redis cannot be reached requests go ahead, a limiter outage must not become an API outage.
+ */
+public class RateLimitInterceptor extends HandlerInterceptorAdapter {
+  private static final Logger logger = LoggerFactory.getLogger(RateLimitInterceptor.class);
+  private static final String USERNAME_VARIABLE = "username";
+  private static final String NOT_RATE_LIMITED = "";
+
+  private final DistributedRateLimiter rateLimiter;
+  private final BiFunction<String, RateLimitScope, RateLimitConfig> configResolver;
+  private final MeterRegistry meterRegistry;
+  private final ConcurrentMap<Method, String> buckets = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, RateLimitConfig> configs = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Counter> decisions = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Timer> overheadTimers = new ConcurrentHashMap<>();
+
+  /**
+   * @param configResolver gives the limit of a bucket in a scope, asked once per pair
+   * @param meterRegistry where decisions and the time spent taking them are recorded
+   */
+  public RateLimitInterceptor(
+      DistributedRateLimiter rateLimiter,
+      BiFunction<String, RateLimitScope, RateLimitConfig> configResolver,
+      MeterRegistry meterRegistry) {
+    this.rateLimiter = rateLimiter;
+    this.configResolver = configResolver;
+    this.meterRegistry = meterRegistry;
+  }
+
+  @Override
+  public boolean preHandle(
+      HttpServletRequest request, HttpServletResponse response, Object handler) {
+    if (!(handler instanceof HandlerMethod)) {
+      return true;
+    }
+    String bucket = bucketOf((HandlerMethod) handler);
+    if (NOT_RATE_LIMITED.equals(bucket)) {
+      return true;
+    }
+
+    long start = System.nanoTime();
+    try {
+      for (RateLimitScope scope : RateLimitScope.values()) {
+        String id = idOf(scope, request);
+        RateLimitConfig config = configOf(bucket, scope);
+        if (null == id || !config.isLimited()) {
+          continue;
+        }
+        if (!tryAcquire(bucket, scope, id, config)) {
+          decision(bucket, scope.getPropertyName(), "rejected").increment();
+          throw new TooManyRequestsException(
+              bucket + " limit per " + scope.getPropertyName() + " reached",
+              config.getRetryAfterSeconds());
+        }
+      }
+      decision(bucket, "none", "allowed").increment();
+      return true;
+    } finally {
+      overheadTimer(bucket).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  private boolean tryAcquire(
+      String bucket, RateLimitScope scope, String id, RateLimitConfig config) {
+    try {
+      return rateLimiter.tryAcquire(bucket + ":" + scope.getPropertyName() + ":" + id, config);
+    } catch (RuntimeException e) {
+      logger.warn("Could not check the {} rate limit of {}: {}", scope, bucket, e.getMessage());
+      decision(bucket, scope.getPropertyName(), "error").increment();
+      return true;
+    }
+  }
+
+  private String bucketOf(HandlerMethod handlerMethod) {
+    return buckets.computeIfAbsent(
+        handlerMethod.getMethod(),
+        method -> {
+          RateLimited rateLimited = handlerMethod.getMethodAnnotation(RateLimited.class);
+          return null == rateLimited ? NOT_RATE_LIMITED : rateLimited.value();
+        });
+  }
+
+  @SuppressWarnings("unchecked")
+  private static String idOf(RateLimitScope scope, HttpServletRequest request) {
+    switch (scope) {
+      case USER:
+        Map<String, String> variables =
+            (Map<String, String>)
+                request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        return null == variables ? null : variables.get(USERNAME_VARIABLE);
+      case IP:
+        return request.getRemoteAddr();
+      case GLOBAL:
+        return "all";
+      default:
+        throw new IllegalStateException("Unhandled rate limit scope " + scope);
+    }
+  }
+
+  private RateLimitConfig configOf(String bucket, RateLimitScope scope) {
+    return configs.computeIfAbsent(
+        bucket + ":" + scope.getPropertyName(), key -> configResolver.apply(bucket, scope));
+  }
+
+  private Counter decision(String bucket, String scope, String result) {
+    return decisions.computeIfAbsent(
+        bucket + ":" + scope + ":" + result,
+        key ->
+            Counter.builder("rate.limit.decisions")
+                .description("Requests let through or rejected by the rate limiter")
+                .tags("bucket", bucket, "scope", scope, "result", result)
+                .register(meterRegistry));
+  }
+
+  private Timer overheadTimer(String bucket) {
+    return overheadTimers.computeIfAbsent(
+        bucket,
+        key ->
+            Timer.builder("rate.limit.overhead")
+                .description("Time spent checking the rate limits of a request")
+                .tags("bucket", bucket)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+  }
+}
@@ -0,0 +1,26 @@
+package com.somamission.peanutbutter.ratelimit;
+
+/**
+ * What a rate limit counts requests per, in the order the limits are checked. Each check takes a
+ * permit that is not given back when a later one rejects, so the broadest limit goes first and a
+ * request it turns away costs no user its quota.
+ */
+public enum RateLimitScope {
+  /** Every request to the bucket across all nodes */
+  GLOBAL("global"),
+  /** The client address, as resolved by the servlet container */
+  IP("ip"),
+  /** The {username} of the request path, skipped for paths without one */
+  USER("user");
+
+  private final String propertyName;
+
+  RateLimitScope(String propertyName) {
+    this.propertyName = propertyName;
+  }
+
+  /** How the scope is named in rate limit properties and keys */
+  public String getPropertyName() {
+    return propertyName;
+  }
+}
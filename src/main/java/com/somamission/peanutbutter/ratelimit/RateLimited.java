@@ -0,0 +1,19 @@
+package com.somamission.peanutbutter.ratelimit;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Puts a controller method behind the rate limits of a bucket, configured per {@link
+ * RateLimitScope} with rate-limit.&lt;bucket&gt;.&lt;scope&gt;.permits and period-ms
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RateLimited {
+  /** The bucket, shared by every method naming it */
+  String value();
+}
@@ -0,0 +1,33 @@
+package com.somamission.peanutbutter.security;
+
+import org.springframework.security.crypto.bcrypt.BCrypt;
+
+public class BCryptHashAlgorithm implements PasswordHashAlgorithm {
+  public static final String ID = "bcrypt";
+
+  @Override
+  public String getId() {
+    return ID;
+  }
+
+  @Override
+  public int getMinCost() {
+    return 10;
+  }
+
+  @Override
+  public int getMaxCost() {
+    return 31;
+  }
+
+  @Override
+  public String encode(CharSequence rawPassword, int cost) {
+    return BCrypt.hashpw(rawPassword.toString(), BCrypt.gensalt(cost));
+  }
+
+  @Override
+  public boolean matches(CharSequence rawPassword, String hash, int cost) {
+    // the log rounds are part of the bcrypt hash itself
+    return BCrypt.checkpw(rawPassword.toString(), hash);
+  }
+}
@@ -0,0 +1,189 @@
+package com.somamission.peanutbutter.security;
+
+import com.somamission.peanutbutter.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the hashing of a delegate encoder on a fixed pool with a bounded queue. Request threads
+ * wait for the result instead of burning CPU themselves, so at most one hash per pool thread runs
+ * at a time. When the queue is full the call fails fast with a {@link
+ * ServiceUnavailableException} instead of piling up more waiting request threads.
+ */
+public class BoundedPasswordEncoder implements UpgradablePasswordEncoder, DisposableBean {
+  private static final String ENCODE = "encode";
+  private static final String MATCHES = "matches";
+
+  private final PasswordEncoder delegate;
+  private final ThreadPoolExecutor executor;
+  private final long timeoutMillis;
+  private final long retryAfterSeconds;
+
+  private final Timer encodeWaitTimer;
+  private final Timer matchesWaitTimer;
+  private final Timer encodeTimer;
+  private final Timer matchesTimer;
+  private final Counter rejectedCounter;
+
+  /**
+   * @param delegate the encoder doing the actual hashing
+   * @param threads size of the hashing pool
+   * @param queueCapacity number of hashes allowed to wait for a pool thread
+   * @param timeoutMillis how long a caller waits for its hash before giving up
+   * @param retryAfterSeconds hint returned to rejected clients
+   * @param meterRegistry where queue depth, wait and hash times are reported
+   */
+  public BoundedPasswordEncoder(
+      PasswordEncoder delegate,
+      int threads,
+      int queueCapacity,
+      long timeoutMillis,
+      long retryAfterSeconds,
+      MeterRegistry meterRegistry) {
+    this.delegate = delegate;
+    this.timeoutMillis = timeoutMillis;
+    this.retryAfterSeconds = retryAfterSeconds;
+
+    AtomicInteger threadCount = new AtomicInteger();
+    this.executor =
+        new ThreadPoolExecutor(
+            threads,
+            threads,
+            0L,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            runnable -> {
+              Thread thread =
+                  new Thread(runnable, "password-hashing-" + threadCount.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            },
+            new ThreadPoolExecutor.AbortPolicy());
+
+    Gauge.builder("password.hashing.queue.depth", executor, e -> e.getQueue().size())
+        .description("Hashes waiting for a pool thread")
+        .register(meterRegistry);
+    this.encodeWaitTimer = waitTimer(ENCODE, meterRegistry);
+    this.matchesWaitTimer = waitTimer(MATCHES, meterRegistry);
+    this.encodeTimer = hashTimer(ENCODE, meterRegistry);
+    this.matchesTimer = hashTimer(MATCHES, meterRegistry);
+    this.rejectedCounter =
+        Counter.builder("password.hashing.rejected")
+            .description("Hashes rejected because the queue was full")
+            .register(meterRegistry);
+  }
+
+  @Override
+  public String encode(CharSequence rawPassword) {
+    return await(submit(() -> delegate.encode(rawPassword), encodeWaitTimer, encodeTimer));
+  }
+
+  @Override
+  public boolean matches(CharSequence rawPassword, String encodedPassword) {
+    return await(
+        submit(
+            () -> delegate.matches(rawPassword, encodedPassword), matchesWaitTimer, matchesTimer));
+  }
+
+  /**
+   * Encodes many passwords in parallel. At most one hash per pool thread is in flight at a time,
+   * so a bulk caller never fills the queue that interactive requests rely on.
+   *
+   * @param rawPasswords the passwords to encode
+   * @return the hashes, in the same order
+   */
+  public List<String> encodeAll(List<? extends CharSequence> rawPasswords) {
+    List<String> encodedPasswords = new ArrayList<>(rawPasswords.size());
+    int window = executor.getCorePoolSize();
+    for (int from = 0; from < rawPasswords.size(); from += window) {
+      List<Future<String>> futures = new ArrayList<>(window);
+      for (CharSequence rawPassword :
+          rawPasswords.subList(from, Math.min(from + window, rawPasswords.size()))) {
+        futures.add(submit(() -> delegate.encode(rawPassword), encodeWaitTimer, encodeTimer));
+      }
+      for (Future<String> future : futures) {
+        encodedPasswords.add(await(future));
+      }
+    }
+    return encodedPasswords;
+  }
+
+  @Override
+  public boolean upgradeEncoding(String encodedPassword) {
+    // only inspects the stored parameters, no need to queue it
+    return delegate instanceof UpgradablePasswordEncoder
+        && ((UpgradablePasswordEncoder) delegate).upgradeEncoding(encodedPassword);
+  }
+
+  @Override
+  public void destroy() {
+    executor.shutdownNow();
+  }
+
+  private <T> Future<T> submit(Callable<T> hashing, Timer waitTimer, Timer hashTimer) {
+    long submittedAt = System.nanoTime();
+    try {
+      return executor.submit(
+          () -> {
+            long startedAt = System.nanoTime();
+            waitTimer.record(startedAt - submittedAt, TimeUnit.NANOSECONDS);
+            try {
+              return hashing.call();
+            } finally {
+              hashTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+            }
+          });
+    } catch (RejectedExecutionException e) {
+      rejectedCounter.increment();
+      throw new ServiceUnavailableException("password hashing is saturated", retryAfterSeconds);
+    }
+  }
+
+  private <T> T await(Future<T> future) {
+    try {
+      return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      future.cancel(true);
+      throw new ServiceUnavailableException("password hashing timed out", retryAfterSeconds);
+    } catch (InterruptedException e) {
+      future.cancel(true);
+      Thread.currentThread().interrupt();
+      throw new ServiceUnavailableException("password hashing interrupted", retryAfterSeconds);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  private static Timer waitTimer(String operation, MeterRegistry meterRegistry) {
+    return Timer.builder("password.hashing.wait")
+        .description("Time a hash waited in the queue")
+        .tag("operation", operation)
+        .register(meterRegistry);
+  }
+
+  private static Timer hashTimer(String operation, MeterRegistry meterRegistry) {
+    return Timer.builder("password.hashing.time")
+        .description("Time spent hashing on a pool thread")
+        .tag("operation", operation)
+        .register(meterRegistry);
+  }
+}
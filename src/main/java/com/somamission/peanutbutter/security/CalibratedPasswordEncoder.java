@@ -0,0 +1,137 @@
+package com.somamission.peanutbutter.security;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encodes with one configured algorithm at a cost picked by timing it on this machine, and
+ * verifies hashes made with any known algorithm. Every hash is stored as {id:cost}hash, so a hash
+ * made by another algorithm or a lower cost can be detected and replaced. Hashes without a prefix
+ * are plain bcrypt from before this encoder existed.
+ */
+public class CalibratedPasswordEncoder implements UpgradablePasswordEncoder {
+  private static final Logger logger = LoggerFactory.getLogger(CalibratedPasswordEncoder.class);
+  private static final String CALIBRATION_PASSWORD = "Calibrati0n-Passw0rd";
+  private static final int CALIBRATION_RUNS = 2;
+
+  private final Map<String, PasswordHashAlgorithm> algorithms = new HashMap<>();
+  private final PasswordHashAlgorithm algorithm;
+  private final int cost;
+  private final long calibratedMillis;
+
+  private CalibratedPasswordEncoder(
+      PasswordHashAlgorithm algorithm, int cost, long calibratedMillis) {
+    this.algorithm = algorithm;
+    this.cost = cost;
+    this.calibratedMillis = calibratedMillis;
+  }
+
+  /**
+   * Times the algorithm at increasing costs, starting from its minimum, and keeps the highest cost
+   * whose hashing time fits the budget. The minimum cost is kept even when it does not fit.
+   *
+   * @param algorithm used for every new hash
+   * @param targetMillis latency budget of a single hash
+   * @param knownAlgorithms every algorithm whose hashes must still verify
+   */
+  public static CalibratedPasswordEncoder calibrate(
+      PasswordHashAlgorithm algorithm,
+      long targetMillis,
+      PasswordHashAlgorithm... knownAlgorithms) {
+    int cost = algorithm.getMinCost();
+    long costMillis = time(algorithm, cost);
+    logger.info("{} cost {} takes {} ms", algorithm.getId(), cost, costMillis);
+    while (cost < algorithm.getMaxCost() && costMillis * 2 <= targetMillis) {
+      long nextCostMillis = time(algorithm, cost + 1);
+      logger.info("{} cost {} takes {} ms", algorithm.getId(), cost + 1, nextCostMillis);
+      if (nextCostMillis > targetMillis) {
+        break;
+      }
+      cost++;
+      costMillis = nextCostMillis;
+    }
+    logger.info(
+        "Calibrated {} to cost {} ({} ms) for a {} ms budget",
+        algorithm.getId(),
+        cost,
+        costMillis,
+        targetMillis);
+
+    CalibratedPasswordEncoder encoder = new CalibratedPasswordEncoder(algorithm, cost, costMillis);
+    encoder.algorithms.put(algorithm.getId(), algorithm);
+    for (PasswordHashAlgorithm knownAlgorithm : knownAlgorithms) {
+      encoder.algorithms.put(knownAlgorithm.getId(), knownAlgorithm);
+    }
+    return encoder;
+  }
+
+  @Override
+  public String encode(CharSequence rawPassword) {
+    return "{" + algorithm.getId() + ":" + cost + "}" + algorithm.encode(rawPassword, cost);
+  }
+
+  @Override
+  public boolean matches(CharSequence rawPassword, String encodedPassword) {
+    if (null == rawPassword || null == encodedPassword) {
+      return false;
+    }
+    int prefixEnd = encodedPassword.indexOf('}');
+    if (!encodedPassword.startsWith("{") || prefixEnd < 0) {
+      return algorithms.containsKey(BCryptHashAlgorithm.ID)
+          && algorithms.get(BCryptHashAlgorithm.ID).matches(rawPassword, encodedPassword, 0);
+    }
+
+    String[] parameters = encodedPassword.substring(1, prefixEnd).split(":");
+    PasswordHashAlgorithm hashAlgorithm = algorithms.get(parameters[0]);
+    if (null == hashAlgorithm || parameters.length != 2 || !isNumeric(parameters[1])) {
+      logger.info("Unknown password hash prefix");
+      return false;
+    }
+    return hashAlgorithm.matches(
+        rawPassword, encodedPassword.substring(prefixEnd + 1), Integer.parseInt(parameters[1]));
+  }
+
+  @Override
+  public boolean upgradeEncoding(String encodedPassword) {
+    String prefix = "{" + algorithm.getId() + ":";
+    if (null == encodedPassword || !encodedPassword.startsWith(prefix)) {
+      return true;
+    }
+    int prefixEnd = encodedPassword.indexOf('}');
+    if (prefixEnd < 0 || !isNumeric(encodedPassword.substring(prefix.length(), prefixEnd))) {
+      return true;
+    }
+    return Integer.parseInt(encodedPassword.substring(prefix.length(), prefixEnd)) < cost;
+  }
+
+  public String getAlgorithmId() {
+    return algorithm.getId();
+  }
+
+  public int getCost() {
+    return cost;
+  }
+
+  public long getCalibratedMillis() {
+    return calibratedMillis;
+  }
+
+  private static boolean isNumeric(String value) {
+    return !StringUtils.isEmpty(value) && StringUtils.isNumeric(value);
+  }
+
+  private static long time(PasswordHashAlgorithm algorithm, int cost) {
+    long fastest = Long.MAX_VALUE;
+    for (int run = 0; run < CALIBRATION_RUNS; run++) {
+      long start = System.nanoTime();
+      algorithm.encode(CALIBRATION_PASSWORD, cost);
+      fastest = Math.min(fastest, System.nanoTime() - start);
+    }
+    return TimeUnit.NANOSECONDS.toMillis(fastest);
+  }
+}
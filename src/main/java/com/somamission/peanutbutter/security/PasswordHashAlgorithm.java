@@ -0,0 +1,19 @@
+package com.somamission.peanutbutter.security;
+
+/**
+ * A password hashing function with a tunable work factor. The cost is a base 2 logarithm for
+ * every algorithm, so raising it by one doubles the hashing time.
+ */
+public interface PasswordHashAlgorithm {
+  /** @return the id stored in the prefix of every hash, e.g. bcrypt */
+  String getId();
+
+  /** @return the lowest cost accepted regardless of the latency budget */
+  int getMinCost();
+
+  int getMaxCost();
+
+  String encode(CharSequence rawPassword, int cost);
+
+  boolean matches(CharSequence rawPassword, String hash, int cost);
+}
@@ -0,0 +1,51 @@
+package com.somamission.peanutbutter.security;
+
+import org.springframework.security.crypto.password.Pbkdf2PasswordEncoder;
+
+/** PBKDF2 with HMAC-SHA1, running 2^cost iterations */
+public class Pbkdf2HashAlgorithm implements PasswordHashAlgorithm {
+  public static final String ID = "pbkdf2";
+  private static final int HASH_WIDTH = 256;
+
+  // built up front so that every thread sees them fully constructed through the final field
+  private final Pbkdf2PasswordEncoder[] encoders;
+
+  public Pbkdf2HashAlgorithm() {
+    encoders = new Pbkdf2PasswordEncoder[getMaxCost() + 1];
+    for (int cost = 0; cost < encoders.length; cost++) {
+      encoders[cost] = new Pbkdf2PasswordEncoder("", 1 << cost, HASH_WIDTH);
+    }
+  }
+
+  @Override
+  public String getId() {
+    return ID;
+  }
+
+  @Override
+  public int getMinCost() {
+    return 16;
+  }
+
+  @Override
+  public int getMaxCost() {
+    return 24;
+  }
+
+  @Override
+  public String encode(CharSequence rawPassword, int cost) {
+    return encoder(cost).encode(rawPassword);
+  }
+
+  @Override
+  public boolean matches(CharSequence rawPassword, String hash, int cost) {
+    return encoder(cost).matches(rawPassword, hash);
+  }
+
+  private Pbkdf2PasswordEncoder encoder(int cost) {
+    if (cost < 0 || cost > getMaxCost()) {
+      throw new IllegalArgumentException("pbkdf2 cost out of range: " + cost);
+    }
+    return encoders[cost];
+  }
+}
@@ -0,0 +1,12 @@
+package com.somamission.peanutbutter.security;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/** A {@link PasswordEncoder} that can tell when a stored hash was made with outdated parameters */
+public interface UpgradablePasswordEncoder extends PasswordEncoder {
+  /**
+   * @param encodedPassword a stored hash
+   * @return true if the password should be encoded again once the raw value is at hand
+   */
+  boolean upgradeEncoding(String encodedPassword);
+}
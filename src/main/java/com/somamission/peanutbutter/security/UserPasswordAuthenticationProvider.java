@@ -0,0 +1,63 @@
+package com.somamission.peanutbutter.security;
+
+import com.somamission.peanutbutter.exception.UserNotFoundException;
+import com.somamission.peanutbutter.intf.IUserService;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Authenticates logins through {@link IUserService#matchesPassword(String, String)}, so that a
+ * successful login also moves a legacy hash to the current parameters
+ */
+public class UserPasswordAuthenticationProvider implements AuthenticationProvider {
+  private static final String BAD_CREDENTIALS_MSG = "Bad credentials";
+
+  private final IUserService userService;
+  private final PasswordEncoder passwordEncoder;
+
+  private volatile String unknownUserHash;
+
+  public UserPasswordAuthenticationProvider(
+      IUserService userService, PasswordEncoder passwordEncoder) {
+    this.userService = userService;
+    this.passwordEncoder = passwordEncoder;
+  }
+
+  @Override
+  public Authentication authenticate(Authentication authentication) {
+    String username = authentication.getName();
+    String password = String.valueOf(authentication.getCredentials());
+    boolean matches;
+    try {
+      matches = userService.matchesPassword(username, password);
+    } catch (UserNotFoundException e) {
+      // hash anyway, an unknown username must not answer faster than a wrong password
+      passwordEncoder.matches(password, unknownUserHash());
+      matches = false;
+    }
+    if (!matches) {
+      throw new BadCredentialsException(BAD_CREDENTIALS_MSG);
+    }
+    return new UsernamePasswordAuthenticationToken(
+        username, null, AuthorityUtils.createAuthorityList("ROLE_USER"));
+  }
+
+  @Override
+  public boolean supports(Class<?> authentication) {
+    return UsernamePasswordAuthenticationToken.class.isAssignableFrom(authentication);
+  }
+
+  private String unknownUserHash() {
+    String hash = unknownUserHash;
+    if (null == hash) {
+      // racing threads hash the same placeholder, whichever lands last is kept
+      hash = passwordEncoder.encode("userNotFoundPassword");
+      unknownUserHash = hash;
+    }
+    return hash;
+  }
+}
@@ -0,0 +1,145 @@
+package com.somamission.peanutbutter.support;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Bloom filter of breached passwords kept in a memory-mapped file, so a list of hundreds of
+ * millions of entries costs page cache instead of heap. Candidates are hashed char by char, a
+ * lookup never allocates.
+ */
+public final class BreachedPasswordFilter {
+  private static final BreachedPasswordFilter EMPTY = new BreachedPasswordFilter(null, 0L, 0, 0L);
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+  private static final long MAX_BITS = (long) Integer.MAX_VALUE * Byte.SIZE;
+
+  private final MappedByteBuffer bits;
+  private final long numBits;
+  private final int numHashes;
+  private final long size;
+
+  private BreachedPasswordFilter(MappedByteBuffer bits, long numBits, int numHashes, long size) {
+    this.bits = bits;
+    this.numBits = numBits;
+    this.numHashes = numHashes;
+    this.size = size;
+  }
+
+  public static BreachedPasswordFilter empty() {
+    return EMPTY;
+  }
+
+  /**
+   * Builds a filter from a text file with one password per line. The file is read twice, once to
+   * size the filter and once to fill it, and is never held in memory as a whole.
+   *
+   * @param list the breached password list
+   * @param falsePositiveRate wanted probability that a password not on the list is reported as
+   *     breached
+   */
+  public static BreachedPasswordFilter load(Path list, double falsePositiveRate)
+      throws IOException {
+    if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+      throw new IllegalArgumentException("false positive rate must be between 0 and 1");
+    }
+    long entries = countEntries(list);
+    if (0 == entries) {
+      return EMPTY;
+    }
+
+    double ln2 = Math.log(2);
+    long optimalBits = (long) Math.ceil(-entries * Math.log(falsePositiveRate) / (ln2 * ln2));
+    long numBits = Math.min(MAX_BITS, Math.max(Long.SIZE, optimalBits));
+    int numHashes = Math.max(1, (int) Math.round((double) numBits / entries * ln2));
+
+    // the backing file is unlinked right after mapping, the mapping keeps the pages alive until the
+    // buffer is collected, so a reload never leaves files behind
+    Path backingFile = Files.createTempFile("breached-passwords", ".bloom");
+    MappedByteBuffer bits;
+    try (FileChannel channel =
+        FileChannel.open(
+            backingFile,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.DELETE_ON_CLOSE)) {
+      bits = channel.map(FileChannel.MapMode.READ_WRITE, 0, (numBits + Byte.SIZE - 1) / Byte.SIZE);
+    }
+
+    try (BufferedReader reader = Files.newBufferedReader(list, StandardCharsets.UTF_8)) {
+      String line;
+      while (null != (line = reader.readLine())) {
+        if (line.isEmpty()) {
+          continue;
+        }
+        long hash = hash(line);
+        long step = mix(hash) | 1L;
+        for (int i = 0; i < numHashes; i++) {
+          long bit = Long.remainderUnsigned(hash + i * step, numBits);
+          int index = (int) (bit >>> 3);
+          bits.put(index, (byte) (bits.get(index) | (1 << (bit & 7))));
+        }
+      }
+    }
+    return new BreachedPasswordFilter(bits, numBits, numHashes, entries);
+  }
+
+  /** @return true if the password is probably on the list, false if it is certainly not */
+  public boolean mightContain(CharSequence password) {
+    if (null == bits || null == password || 0 == password.length()) {
+      return false;
+    }
+    long hash = hash(password);
+    long step = mix(hash) | 1L;
+    for (int i = 0; i < numHashes; i++) {
+      long bit = Long.remainderUnsigned(hash + i * step, numBits);
+      if (0 == (bits.get((int) (bit >>> 3)) & (1 << (bit & 7)))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** @return number of entries the filter was built from */
+  public long size() {
+    return size;
+  }
+
+  private static long countEntries(Path list) throws IOException {
+    long entries = 0;
+    try (BufferedReader reader = Files.newBufferedReader(list, StandardCharsets.UTF_8)) {
+      String line;
+      while (null != (line = reader.readLine())) {
+        if (!line.isEmpty()) {
+          entries++;
+        }
+      }
+    }
+    return entries;
+  }
+
+  // FNV-1a over the chars, finished with a mixing step so nearby inputs spread over the whole range
+  private static long hash(CharSequence value) {
+    long hash = FNV_OFFSET_BASIS;
+    for (int i = 0; i < value.length(); i++) {
+      hash ^= value.charAt(i);
+      hash *= FNV_PRIME;
+    }
+    return mix(hash);
+  }
+
+  private static long mix(long value) {
+    value ^= value >>> 33;
+    value *= 0xff51afd7ed558ccdL;
+    value ^= value >>> 33;
+    value *= 0xc4ceb9fe1a85ec53L;
+    value ^= value >>> 33;
+    return value;
+  }
+}
@@ -0,0 +1,256 @@
+package com.somamission.peanutbutter.support;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Stops calling a dependency that keeps failing or answering slowly, so callers fall back at once
+ * instead of each waiting out a timeout. Closed, it keeps the outcomes of the last windowSize
+ * calls, a call slower than slowCallMs counting as failed, and opens once at least minimumCalls
+ * were made and the share of failures reaches the threshold. Open, it turns calls away for openMs
+ * and then lets halfOpenProbes calls through: it closes again when they all succeed and reopens on
+ * the first that fails.
+ */
+public class CircuitBreaker {
+  private static final Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+
+  public enum State {
+    CLOSED,
+    HALF_OPEN,
+    OPEN
+  }
+
+  private final String name;
+  private final Class<? extends RuntimeException> failureType;
+  private final int minimumCalls;
+  private final double failureRateThreshold;
+  private final long slowCallNanos;
+  private final long openNanos;
+  private final int halfOpenProbes;
+  private final List<Runnable> closeListeners = new CopyOnWriteArrayList<>();
+
+  // guarded by this, a ring of the last outcomes, true for a failure
+  private final boolean[] outcomes;
+  private int outcomeCount;
+  private int nextOutcome;
+  private int failureCount;
+  private State state = State.CLOSED;
+  private long openedAtNanos;
+  private int probesStarted;
+  private int probesSucceeded;
+
+  private final Counter successfulCalls;
+  private final Counter failedCalls;
+  private final Counter slowCalls;
+  private final Counter rejectedCalls;
+  private final Map<State, Counter> transitions = new EnumMap<>(State.class);
+
+  /**
+   * @param failureType what the dependency throws when it fails, e.g. a connection or timeout
+   *     error; anything else thrown by a call is a bug in the call and is rethrown
+   * @param failureRateThreshold share of failed calls in the window that opens the breaker
+   * @param slowCallMs calls taking longer count as failed, as a dependency that slow is as good as
+   *     down to the requests waiting on it
+   */
+  public CircuitBreaker(
+      String name,
+      Class<? extends RuntimeException> failureType,
+      int windowSize,
+      int minimumCalls,
+      double failureRateThreshold,
+      long slowCallMs,
+      long openMs,
+      int halfOpenProbes,
+      MeterRegistry meterRegistry) {
+    if (windowSize < 1 || halfOpenProbes < 1) {
+      throw new IllegalArgumentException("windowSize and halfOpenProbes must be at least 1");
+    }
+    this.name = name;
+    this.failureType = failureType;
+    this.outcomes = new boolean[windowSize];
+    this.minimumCalls = Math.max(1, Math.min(minimumCalls, windowSize));
+    this.failureRateThreshold = failureRateThreshold;
+    this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(slowCallMs);
+    this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMs);
+    this.halfOpenProbes = halfOpenProbes;
+
+    Gauge.builder("circuit.breaker.state", this, breaker -> breaker.getState().ordinal())
+        .description("State of the circuit breaker: 0 closed, 1 half open, 2 open")
+        .tag("name", name)
+        .register(meterRegistry);
+    successfulCalls = calls("success", meterRegistry);
+    failedCalls = calls("failure", meterRegistry);
+    slowCalls = calls("slow", meterRegistry);
+    rejectedCalls = calls("rejected", meterRegistry);
+    for (State to : State.values()) {
+      transitions.put(
+          to,
+          Counter.builder("circuit.breaker.transitions")
+              .description("Times the circuit breaker changed state, by the state it went to")
+              .tags("name", name, "state", to.name().toLowerCase())
+              .register(meterRegistry));
+    }
+  }
+
+  /**
+   * Runs a call to the dependency unless the breaker is open
+   *
+   * @param fallback answers instead when the breaker turns the call away or the call fails with
+   *     the failure type
+   */
+  public <T> T execute(Supplier<T> call, Supplier<T> fallback) {
+    if (!tryAcquirePermission()) {
+      return fallback.get();
+    }
+    long start = System.nanoTime();
+    T result;
+    try {
+      result = call.get();
+    } catch (RuntimeException e) {
+      if (!failureType.isInstance(e)) {
+        // the dependency is not to blame, and a fallback would hide the bug from the caller
+        onResult(System.nanoTime() - start, false);
+        throw e;
+      }
+      onResult(System.nanoTime() - start, true);
+      logger.debug("Call through circuit breaker {} failed, falling back", name, e);
+      return fallback.get();
+    }
+    onResult(System.nanoTime() - start, false);
+    return result;
+  }
+
+  /** @return false when the call must not be made, the caller then reports no result */
+  public synchronized boolean tryAcquirePermission() {
+    if (State.CLOSED == state) {
+      return true;
+    }
+    if (State.OPEN == state) {
+      if (System.nanoTime() - openedAtNanos < openNanos) {
+        rejectedCalls.increment();
+        return false;
+      }
+      transitionTo(State.HALF_OPEN);
+    }
+    if (probesStarted >= halfOpenProbes) {
+      rejectedCalls.increment();
+      return false;
+    }
+    probesStarted++;
+    return true;
+  }
+
+  /** Records how a call made after {@link #tryAcquirePermission()} went */
+  public void onResult(long durationNanos, boolean error) {
+    boolean slow = !error && durationNanos > slowCallNanos;
+    (error ? failedCalls : slow ? slowCalls : successfulCalls).increment();
+    boolean closed;
+    synchronized (this) {
+      closed = record(error || slow);
+    }
+    if (closed) {
+      // off the caller's thread, catching up on what was missed may take a while
+      for (Runnable listener : closeListeners) {
+        CompletableFuture.runAsync(listener)
+            .exceptionally(
+                e -> {
+                  logger.warn("Close listener of circuit breaker {} failed", name, e);
+                  return null;
+                });
+      }
+    }
+  }
+
+  /** Runs a listener every time the breaker closes again after having opened */
+  public void onClose(Runnable listener) {
+    closeListeners.add(listener);
+  }
+
+  public synchronized State getState() {
+    return state;
+  }
+
+  /** True while calls go through as usual, a half open breaker lets only its probes through */
+  public boolean isClosed() {
+    return State.CLOSED == getState();
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /** @return true if the breaker closed */
+  private boolean record(boolean failure) {
+    switch (state) {
+      case HALF_OPEN:
+        if (failure) {
+          transitionTo(State.OPEN);
+          return false;
+        }
+        if (++probesSucceeded >= halfOpenProbes) {
+          transitionTo(State.CLOSED);
+          return true;
+        }
+        return false;
+      case CLOSED:
+        if (outcomeCount == outcomes.length) {
+          if (outcomes[nextOutcome]) {
+            failureCount--;
+          }
+        } else {
+          outcomeCount++;
+        }
+        outcomes[nextOutcome] = failure;
+        if (failure) {
+          failureCount++;
+        }
+        nextOutcome = (nextOutcome + 1) % outcomes.length;
+        if (outcomeCount >= minimumCalls
+            && failureCount >= failureRateThreshold * outcomeCount) {
+          transitionTo(State.OPEN);
+        }
+        return false;
+      default:
+        // a call that started before the breaker opened
+        return false;
+    }
+  }
+
+  private void transitionTo(State to) {
+    logger.info("Circuit breaker {} goes from {} to {}", name, state, to);
+    state = to;
+    transitions.get(to).increment();
+    switch (to) {
+      case OPEN:
+        openedAtNanos = System.nanoTime();
+        break;
+      case HALF_OPEN:
+        probesStarted = 0;
+        probesSucceeded = 0;
+        break;
+      default:
+        outcomeCount = 0;
+        nextOutcome = 0;
+        failureCount = 0;
+        break;
+    }
+  }
+
+  private Counter calls(String result, MeterRegistry meterRegistry) {
+    return Counter.builder("circuit.breaker.calls")
+        .description("Calls through the circuit breaker by outcome")
+        .tags("name", name, "result", result)
+        .register(meterRegistry);
+  }
+}
@@ -0,0 +1,38 @@
+package com.somamission.peanutbutter.support;
+
+import com.somamission.peanutbutter.domain.Versioned;
+
+/** Strong ETags built from the id and the version of an entity */
+public final class EntityTags {
+  private EntityTags() {
+    throw new IllegalStateException("Utility class");
+  }
+
+  /** @return the quoted ETag of the entity, e.g. "42.3" */
+  public static String of(Versioned entity) {
+    return "\"" + entity.getId() + "." + entity.getVersion() + "\"";
+  }
+
+  /**
+   * Compares an If-None-Match header with an ETag, as a weak comparison so W/ prefixed tags match
+   *
+   * @param ifNoneMatch the header value, may list several tags or be *
+   * @param etag the current ETag
+   * @return true if the client copy is current
+   */
+  public static boolean matches(String ifNoneMatch, String etag) {
+    if (null == ifNoneMatch || null == etag) {
+      return false;
+    }
+    for (String candidate : ifNoneMatch.split(",")) {
+      String tag = candidate.trim();
+      if (tag.startsWith("W/")) {
+        tag = tag.substring(2);
+      }
+      if ("*".equals(tag) || etag.equals(tag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,83 @@
+package com.somamission.peanutbutter.support;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a read-modify-write again when it loses an optimistic locking race. Attempts are spaced by
+ * an exponential backoff with full jitter, so writers that collided once do not collide again in
+ * lockstep.
+ */
+public class OptimisticRetryExecutor {
+  /** One read-modify-write, replayed from the read on every attempt */
+  @FunctionalInterface
+  public interface Attempt<T, E extends Exception> {
+    T run() throws E;
+  }
+
+  private final int maxAttempts;
+  private final long baseBackoffMillis;
+  private final long maxBackoffMillis;
+  private final Counter retries;
+  private final Counter exhausted;
+
+  public OptimisticRetryExecutor(
+      String name,
+      int maxAttempts,
+      long baseBackoffMillis,
+      long maxBackoffMillis,
+      MeterRegistry meterRegistry) {
+    if (maxAttempts < 1) {
+      throw new IllegalArgumentException("maxAttempts must be at least 1");
+    }
+    this.maxAttempts = maxAttempts;
+    this.baseBackoffMillis = baseBackoffMillis;
+    this.maxBackoffMillis = maxBackoffMillis;
+    this.retries =
+        Counter.builder("optimistic.retries")
+            .description("Attempts replayed after an optimistic locking conflict")
+            .tag("name", name)
+            .register(meterRegistry);
+    this.exhausted =
+        Counter.builder("optimistic.retries.exhausted")
+            .description("Writes that still conflicted after the last attempt")
+            .tag("name", name)
+            .register(meterRegistry);
+  }
+
+  /**
+   * @return the result of the first attempt that did not conflict
+   * @throws OptimisticLockingFailureException from the last attempt once every attempt conflicted
+   */
+  public <T, E extends Exception> T execute(Attempt<T, E> attempt) throws E {
+    for (int attemptNumber = 1; ; attemptNumber++) {
+      try {
+        return attempt.run();
+      } catch (OptimisticLockingFailureException e) {
+        if (attemptNumber >= maxAttempts) {
+          exhausted.increment();
+          throw e;
+        }
+        retries.increment();
+        backoff(attemptNumber);
+      }
+    }
+  }
+
+  private void backoff(int attemptNumber) {
+    long ceiling = Math.min(maxBackoffMillis, baseBackoffMillis << Math.min(attemptNumber, 20));
+    if (ceiling <= 0) {
+      return;
+    }
+    try {
+      TimeUnit.MILLISECONDS.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting to retry", e);
+    }
+  }
+}
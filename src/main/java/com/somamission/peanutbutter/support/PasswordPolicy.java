@@ -0,0 +1,150 @@
+package com.somamission.peanutbutter.support;
+
+/**
+ * Immutable password rules compiled from configuration. A check is one pass over the chars of the
+ * candidate and returns a shared enum constant, so it does not allocate.
+ */
+public final class PasswordPolicy {
+  public static class Builder {
+    private int minLength = 8;
+    private int maxLength = 128;
+    private int minUppercase = 1;
+    private int minLowercase = 1;
+    private int minDigits = 1;
+    private int minSpecial = 0;
+    private boolean whitespaceAllowed = false;
+
+    public Builder withMinLength(int minLength) {
+      this.minLength = minLength;
+      return this;
+    }
+
+    public Builder withMaxLength(int maxLength) {
+      this.maxLength = maxLength;
+      return this;
+    }
+
+    public Builder withMinUppercase(int minUppercase) {
+      this.minUppercase = minUppercase;
+      return this;
+    }
+
+    public Builder withMinLowercase(int minLowercase) {
+      this.minLowercase = minLowercase;
+      return this;
+    }
+
+    public Builder withMinDigits(int minDigits) {
+      this.minDigits = minDigits;
+      return this;
+    }
+
+    public Builder withMinSpecial(int minSpecial) {
+      this.minSpecial = minSpecial;
+      return this;
+    }
+
+    public Builder withWhitespaceAllowed(boolean whitespaceAllowed) {
+      this.whitespaceAllowed = whitespaceAllowed;
+      return this;
+    }
+
+    public PasswordPolicy build() {
+      if (minLength < 1 || maxLength < minLength) {
+        throw new IllegalArgumentException(
+            "password length bounds are invalid: " + minLength + ".." + maxLength);
+      }
+      if (minUppercase + minLowercase + minDigits + minSpecial > maxLength) {
+        throw new IllegalArgumentException("password character rules exceed the maximum length");
+      }
+      return new PasswordPolicy(this);
+    }
+  }
+
+  private final int minLength;
+  private final int maxLength;
+  private final int minUppercase;
+  private final int minLowercase;
+  private final int minDigits;
+  private final int minSpecial;
+  private final boolean whitespaceAllowed;
+
+  private PasswordPolicy(Builder builder) {
+    this.minLength = builder.minLength;
+    this.maxLength = builder.maxLength;
+    this.minUppercase = builder.minUppercase;
+    this.minLowercase = builder.minLowercase;
+    this.minDigits = builder.minDigits;
+    this.minSpecial = builder.minSpecial;
+    this.whitespaceAllowed = builder.whitespaceAllowed;
+  }
+
+  public PasswordPolicyResult check(CharSequence password) {
+    int length = password.length();
+    if (length < minLength) {
+      return PasswordPolicyResult.TOO_SHORT;
+    }
+    if (length > maxLength) {
+      return PasswordPolicyResult.TOO_LONG;
+    }
+
+    int uppercase = 0;
+    int lowercase = 0;
+    int digits = 0;
+    int special = 0;
+    for (int i = 0; i < length; i++) {
+      char c = password.charAt(i);
+      if (Character.isWhitespace(c)) {
+        if (!whitespaceAllowed) {
+          return PasswordPolicyResult.CONTAINS_WHITESPACE;
+        }
+      } else if (Character.isUpperCase(c)) {
+        uppercase++;
+      } else if (Character.isLowerCase(c)) {
+        lowercase++;
+      } else if (Character.isDigit(c)) {
+        digits++;
+      } else {
+        special++;
+      }
+    }
+
+    if (uppercase < minUppercase) {
+      return PasswordPolicyResult.MISSING_UPPERCASE;
+    }
+    if (lowercase < minLowercase) {
+      return PasswordPolicyResult.MISSING_LOWERCASE;
+    }
+    if (digits < minDigits) {
+      return PasswordPolicyResult.MISSING_DIGIT;
+    }
+    if (special < minSpecial) {
+      return PasswordPolicyResult.MISSING_SPECIAL;
+    }
+    return PasswordPolicyResult.VALID;
+  }
+
+  public int getMinLength() {
+    return minLength;
+  }
+
+  public int getMaxLength() {
+    return maxLength;
+  }
+
+  public int getMinUppercase() {
+    return minUppercase;
+  }
+
+  public int getMinLowercase() {
+    return minLowercase;
+  }
+
+  public int getMinDigits() {
+    return minDigits;
+  }
+
+  public int getMinSpecial() {
+    return minSpecial;
+  }
+}
@@ -0,0 +1,14 @@
+package com.somamission.peanutbutter.support;
+
+/** Outcome of a password policy check, the first rule a password breaks or VALID */
+public enum PasswordPolicyResult {
+  VALID,
+  TOO_SHORT,
+  TOO_LONG,
+  MISSING_UPPERCASE,
+  MISSING_LOWERCASE,
+  MISSING_DIGIT,
+  MISSING_SPECIAL,
+  CONTAINS_WHITESPACE,
+  BREACHED
+}
@@ -0,0 +1,86 @@
+package com.somamission.peanutbutter.support;
+
+import java.util.Collection;
+
+/**
+ * Immutable open-addressing hash set of words with case-insensitive lookups. The candidate is
+ * hashed and compared in place, so a lookup never allocates.
+ */
+public final class ReservedWordIndex {
+  private static final ReservedWordIndex EMPTY = new ReservedWordIndex(new String[1], 0);
+
+  private final String[] slots;
+  private final int mask;
+  private final int size;
+
+  private ReservedWordIndex(String[] slots, int size) {
+    this.slots = slots;
+    this.mask = slots.length - 1;
+    this.size = size;
+  }
+
+  public static ReservedWordIndex empty() {
+    return EMPTY;
+  }
+
+  public static ReservedWordIndex of(Collection<String> words) {
+    // keep the table at most half full so probe chains stay short and always end on a null slot
+    int capacity = 2;
+    while (capacity < words.size() * 2) {
+      capacity <<= 1;
+    }
+
+    String[] slots = new String[capacity];
+    int size = 0;
+    for (String word : words) {
+      if (null == word || word.isEmpty()) {
+        continue;
+      }
+      int slot = hash(word) & (capacity - 1);
+      boolean duplicate = false;
+      while (null != slots[slot]) {
+        if (slots[slot].equalsIgnoreCase(word)) {
+          duplicate = true;
+          break;
+        }
+        slot = (slot + 1) & (capacity - 1);
+      }
+      if (!duplicate) {
+        slots[slot] = word;
+        size++;
+      }
+    }
+    return new ReservedWordIndex(slots, size);
+  }
+
+  public boolean contains(String word) {
+    if (null == word) {
+      return false;
+    }
+    int slot = hash(word) & mask;
+    while (null != slots[slot]) {
+      if (slots[slot].equalsIgnoreCase(word)) {
+        return true;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return false;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  private static int hash(String word) {
+    int h = 0;
+    for (int i = 0; i < word.length(); i++) {
+      h = 31 * h + fold(word.charAt(i));
+    }
+    return h ^ (h >>> 16);
+  }
+
+  /** Folds a char the same way {@link String#equalsIgnoreCase(String)} compares it. */
+  private static char fold(char c) {
+    return Character.toLowerCase(Character.toUpperCase(c));
+  }
+}
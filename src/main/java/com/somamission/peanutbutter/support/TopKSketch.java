@@ -0,0 +1,148 @@
+package com.somamission.peanutbutter.support;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Approximate counts of the most frequent keys of a stream in bounded memory (Space-Saving). At
+ * most capacity keys are counted: when full, a new key takes over the counter of the least
+ * counted key and carries on from its count, an overestimate. Any key seen more than total /
+ * capacity times is guaranteed to be among those kept.
+ *
+ * <p>Counters are kept in buckets of equal count, linked in ascending order (Stream-Summary), so
+ * the least counted key is at hand and adding a key costs the same however many are kept.
+ */
+public class TopKSketch {
+  private final int capacity;
+
+  // guarded by this
+  private Map<String, Counter> counters;
+  private Bucket minBucket;
+
+  public TopKSketch(int capacity) {
+    this.capacity = capacity;
+    this.counters = new HashMap<>(capacity * 2);
+  }
+
+  public synchronized void add(String key, long count) {
+    Counter counter = counters.get(key);
+    if (null != counter) {
+      increment(counter, count);
+      return;
+    }
+    if (counters.size() < capacity) {
+      counter = new Counter(key);
+      counters.put(key, counter);
+      attach(counter, count);
+      return;
+    }
+    counter = minBucket.counters.iterator().next();
+    counters.remove(counter.key);
+    counter.key = key;
+    counters.put(key, counter);
+    increment(counter, count);
+  }
+
+  /**
+   * Takes the counts gathered so far and starts over
+   *
+   * @return the estimated count of every key kept
+   */
+  public synchronized Map<String, Long> drain() {
+    Map<String, Long> drained = new HashMap<>(counters.size() * 2);
+    for (Bucket bucket = minBucket; null != bucket; bucket = bucket.next) {
+      for (Counter counter : bucket.counters) {
+        drained.put(counter.key, bucket.count);
+      }
+    }
+    counters = new HashMap<>(capacity * 2);
+    minBucket = null;
+    return drained;
+  }
+
+  public synchronized int size() {
+    return counters.size();
+  }
+
+  /** Puts a new counter in the bucket of its count, searching from the least counted one */
+  private void attach(Counter counter, long count) {
+    Bucket previous = null;
+    Bucket bucket = minBucket;
+    while (null != bucket && bucket.count < count) {
+      previous = bucket;
+      bucket = bucket.next;
+    }
+    Bucket target = null != bucket && bucket.count == count ? bucket : insertAfter(previous, count);
+    target.counters.add(counter);
+    counter.bucket = target;
+  }
+
+  /** Moves a counter up by count, past buckets it overtakes, usually none or one */
+  private void increment(Counter counter, long count) {
+    Bucket current = counter.bucket;
+    long newCount = current.count + count;
+    Bucket previous = current;
+    while (null != previous.next && previous.next.count < newCount) {
+      previous = previous.next;
+    }
+    Bucket target =
+        null != previous.next && previous.next.count == newCount
+            ? previous.next
+            : insertAfter(previous, newCount);
+    current.counters.remove(counter);
+    target.counters.add(counter);
+    counter.bucket = target;
+    if (current.counters.isEmpty()) {
+      unlink(current);
+    }
+  }
+
+  /** @param previous the bucket to insert after, null to insert as the least counted */
+  private Bucket insertAfter(Bucket previous, long count) {
+    Bucket bucket = new Bucket(count);
+    bucket.prev = previous;
+    bucket.next = null == previous ? minBucket : previous.next;
+    if (null != bucket.next) {
+      bucket.next.prev = bucket;
+    }
+    if (null == previous) {
+      minBucket = bucket;
+    } else {
+      previous.next = bucket;
+    }
+    return bucket;
+  }
+
+  private void unlink(Bucket bucket) {
+    if (null == bucket.prev) {
+      minBucket = bucket.next;
+    } else {
+      bucket.prev.next = bucket.next;
+    }
+    if (null != bucket.next) {
+      bucket.next.prev = bucket.prev;
+    }
+  }
+
+  private static final class Counter {
+    private String key;
+    private Bucket bucket;
+
+    private Counter(String key) {
+      this.key = key;
+    }
+  }
+
+  private static final class Bucket {
+    private final long count;
+    private final Set<Counter> counters = new LinkedHashSet<>();
+    private Bucket prev;
+    private Bucket next;
+
+    private Bucket(long count) {
+      this.count = count;
+    }
+  }
+}
@@ -0,0 +1,121 @@
+package com.somamission.peanutbutter;
+
+import com.somamission.peanutbutter.controller.ControllerExceptionHandler;
+import com.somamission.peanutbutter.exception.ServiceUnavailableException;
+import com.somamission.peanutbutter.security.BoundedPasswordEncoder;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class BoundedPasswordEncoderTest {
+  private static final long RETRY_AFTER_SECONDS = 7;
+
+  private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private final CountDownLatch release = new CountDownLatch(1);
+
+  private BoundedPasswordEncoder passwordEncoder;
+
+  @BeforeEach
+  public void setUp() {
+    PasswordEncoder blockingEncoder =
+        new PasswordEncoder() {
+          @Override
+          public String encode(CharSequence rawPassword) {
+            try {
+              release.await();
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+            return "hashed";
+          }
+
+          @Override
+          public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            return true;
+          }
+        };
+    passwordEncoder =
+        new BoundedPasswordEncoder(
+            blockingEncoder, 1, 1, 10_000, RETRY_AFTER_SECONDS, meterRegistry);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    release.countDown();
+    passwordEncoder.destroy();
+  }
+
+  @Test
+  @DisplayName("Should answer 503 with Retry-After once the hashing queue is full")
+  public void shouldShedLoadWhenQueueIsFull() throws Exception {
+    // one hash on the only pool thread, one waiting in the queue of one
+    CompletableFuture<String> running = CompletableFuture.supplyAsync(this::encode);
+    CompletableFuture<String> queued = CompletableFuture.supplyAsync(this::encode);
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (queueDepth() < 1 && System.nanoTime() < deadline) {
+      TimeUnit.MILLISECONDS.sleep(10);
+    }
+    assertThat(queueDepth()).isEqualTo(1);
+
+    Throwable thrown = catchThrowable(this::encode);
+    assertThat(thrown).isInstanceOf(ServiceUnavailableException.class);
+    assertThat(((ServiceUnavailableException) thrown).getRetryAfterSeconds())
+        .isEqualTo(RETRY_AFTER_SECONDS);
+    assertThat(meterRegistry.get("password.hashing.rejected").counter().count()).isEqualTo(1);
+
+    MockMvc mockMvc =
+        MockMvcBuilders.standaloneSetup(new HashingController(passwordEncoder))
+            .setControllerAdvice(new ControllerExceptionHandler())
+            .build();
+    mockMvc
+        .perform(post("/hash"))
+        .andExpect(status().isServiceUnavailable())
+        .andExpect(header().string(HttpHeaders.RETRY_AFTER, String.valueOf(RETRY_AFTER_SECONDS)));
+
+    release.countDown();
+    assertThat(running.get(10, TimeUnit.SECONDS)).isEqualTo("hashed");
+    assertThat(queued.get(10, TimeUnit.SECONDS)).isEqualTo("hashed");
+  }
+
+  private String encode() {
+    return passwordEncoder.encode("password");
+  }
+
+  private double queueDepth() {
+    return meterRegistry.get("password.hashing.queue.depth").gauge().value();
+  }
+
+  @RestController
+  static class HashingController {
+    private final PasswordEncoder passwordEncoder;
+
+    HashingController(PasswordEncoder passwordEncoder) {
+      this.passwordEncoder = passwordEncoder;
+    }
+
+    @PostMapping("/hash")
+    public String hash() {
+      return passwordEncoder.encode("password");
+    }
+  }
+}
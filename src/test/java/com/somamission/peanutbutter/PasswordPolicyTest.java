@@ -0,0 +1,49 @@
+package com.somamission.peanutbutter;
+
+import com.somamission.peanutbutter.support.BreachedPasswordFilter;
+import com.somamission.peanutbutter.support.PasswordPolicy;
+import com.somamission.peanutbutter.support.PasswordPolicyResult;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PasswordPolicyTest {
+  @Test
+  @DisplayName("Should report the first rule a password breaks")
+  public void shouldCheckRules() {
+    PasswordPolicy policy = new PasswordPolicy.Builder().withMinSpecial(1).build();
+    assertThat(policy.check("s3curePassword!")).isEqualTo(PasswordPolicyResult.VALID);
+    assertThat(policy.check("s3C!")).isEqualTo(PasswordPolicyResult.TOO_SHORT);
+    assertThat(policy.check("s3curepassword!")).isEqualTo(PasswordPolicyResult.MISSING_UPPERCASE);
+    assertThat(policy.check("S3CUREPASSWORD!")).isEqualTo(PasswordPolicyResult.MISSING_LOWERCASE);
+    assertThat(policy.check("securePassword!")).isEqualTo(PasswordPolicyResult.MISSING_DIGIT);
+    assertThat(policy.check("s3curePassword")).isEqualTo(PasswordPolicyResult.MISSING_SPECIAL);
+    assertThat(policy.check("s3cure Password!"))
+        .isEqualTo(PasswordPolicyResult.CONTAINS_WHITESPACE);
+  }
+
+  @Test
+  @DisplayName("Should find every listed password in the breached password filter")
+  public void shouldFindBreachedPasswords() throws IOException {
+    Path list = Files.createTempFile("breached", ".txt");
+    try {
+      Files.write(list, Arrays.asList("Password1", "", "Qwerty123", "Letmein1"));
+      BreachedPasswordFilter filter = BreachedPasswordFilter.load(list, 0.0001);
+
+      assertThat(filter.size()).isEqualTo(3);
+      assertThat(filter.mightContain("Password1")).isTrue();
+      assertThat(filter.mightContain("Qwerty123")).isTrue();
+      assertThat(filter.mightContain("Letmein1")).isTrue();
+      assertThat(filter.mightContain("s3curePassword!")).isFalse();
+      assertThat(BreachedPasswordFilter.empty().mightContain("Password1")).isFalse();
+    } finally {
+      Files.delete(list);
+    }
+  }
+}
@@ -0,0 +1,71 @@
+package com.somamission.peanutbutter;
+
+import com.somamission.peanutbutter.ratelimit.DistributedRateLimiter;
+import com.somamission.peanutbutter.ratelimit.RateLimitConfig;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+public class RateLimiterTest {
+  @Autowired private DistributedRateLimiter rateLimiter;
+
+  @Autowired private RedissonClient redissonClient;
+
+  @Test
+  @DisplayName("Should reject a key once it used up its permits for the period")
+  public void shouldRejectOverLimit() {
+    String key = "test:user:" + UUID.randomUUID();
+    RateLimitConfig config = new RateLimitConfig(5, 60_000);
+    for (int i = 0; i < 5; i++) {
+      assertThat(rateLimiter.tryAcquire(key, config)).isTrue();
+    }
+    assertThat(rateLimiter.tryAcquire(key, config)).isFalse();
+    assertThat(rateLimiter.tryAcquire("test:user:" + UUID.randomUUID(), config)).isTrue();
+  }
+
+  @Test
+  @DisplayName("Should serve most permits from the share a node took from redis")
+  public void shouldTakePermitsInShares() {
+    String key = "test:global:" + UUID.randomUUID();
+    // a share of 5 per round trip with the default local share of 5%
+    RateLimitConfig config = new RateLimitConfig(100, 60_000);
+    long remoteAcquiresBefore = rateLimiter.getRemoteAcquires();
+    for (int i = 0; i < 10; i++) {
+      assertThat(rateLimiter.tryAcquire(key, config)).isTrue();
+    }
+    assertThat(rateLimiter.getRemoteAcquires() - remoteAcquiresBefore).isEqualTo(2);
+  }
+
+  @Test
+  @DisplayName("Should let every redis key of a limiter expire")
+  public void shouldExpireAllLimiterKeys() throws InterruptedException {
+    String key = "test:ip:" + UUID.randomUUID();
+    assertThat(rateLimiter.tryAcquire(key, new RateLimitConfig(5, 60_000))).isTrue();
+
+    List<String> names = new ArrayList<>();
+    redissonClient.getKeys().getKeysByPattern("*" + key + "*").forEach(names::add);
+    // the rate, and the permits left and taken
+    assertThat(names).isNotEmpty();
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (names.stream().anyMatch(name -> redissonClient.getBucket(name).remainTimeToLive() < 0)
+        && System.nanoTime() < deadline) {
+      TimeUnit.MILLISECONDS.sleep(50);
+    }
+    for (String name : names) {
+      assertThat(redissonClient.getBucket(name).remainTimeToLive()).as(name).isPositive();
+    }
+  }
+}
@@ -0,0 +1,179 @@
+package com.somamission.peanutbutter;
+
+import com.somamission.peanutbutter.cache.LocalCacheConfig;
+import com.somamission.peanutbutter.cache.TieredCache;
+import com.somamission.peanutbutter.cache.TieredCacheManager;
+import com.somamission.peanutbutter.support.CircuitBreaker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.redisson.Redisson;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.RedisConnectionException;
+import org.redisson.client.RedisException;
+import org.redisson.config.Config;
+import org.redisson.spring.cache.CacheConfig;
+import org.redisson.spring.cache.RedissonSpringCacheManager;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class RedisCircuitBreakerTest {
+  private static final String CACHE = "breaker-test";
+  private static final long OPEN_MS = 500;
+
+  private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private RedisServer redisServer;
+
+  private RedissonClient redissonClient;
+
+  private CircuitBreaker circuitBreaker;
+
+  private TieredCache cache;
+
+  @BeforeEach
+  public void setUp() throws IOException {
+    int port;
+    try (ServerSocket socket = new ServerSocket(0)) {
+      port = socket.getLocalPort();
+    }
+    redisServer = new RedisServer(port);
+    redisServer.start();
+
+    Config config = new Config();
+    config
+        .useSingleServer()
+        .setAddress("redis://127.0.0.1:" + port)
+        .setTimeout(200)
+        .setRetryAttempts(0);
+    redissonClient = Redisson.create(config);
+
+    circuitBreaker =
+        new CircuitBreaker(
+            "redis", RedisException.class, 10, 4, 0.5, 1000, OPEN_MS, 1, meterRegistry);
+    Map<String, CacheConfig> remoteConfigs =
+        Collections.singletonMap(CACHE, new CacheConfig(60_000, 0));
+    TieredCacheManager cacheManager =
+        new TieredCacheManager(
+            new RedissonSpringCacheManager(redissonClient, remoteConfigs),
+            remoteConfigs,
+            Collections.singletonMap(CACHE, new LocalCacheConfig(1000, 60_000)),
+            Collections.emptyMap(),
+            redissonClient.getTopic(CACHE + ":invalidations"),
+            redissonClient::getLock,
+            circuitBreaker,
+            meterRegistry);
+    cache = (TieredCache) cacheManager.getCache(CACHE);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    redissonClient.shutdown();
+    redisServer.stop();
+  }
+
+  @Test
+  @DisplayName("Should serve from L1 and the source while redis is down, then catch L2 up")
+  public void shouldDegradeAndRecover() throws InterruptedException {
+    cache.put("cached", "before");
+    redisServer.stop();
+
+    for (int i = 0; i < 10; i++) {
+      String key = "missing" + i;
+      assertThat(cache.get(key, () -> "loaded " + key)).isEqualTo("loaded " + key);
+    }
+    assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    // loads change nothing L2 could hold a stale copy of
+    assertThat(cache.getPendingEvictions()).isZero();
+
+    // an open breaker answers without waiting on redis timeouts
+    long start = System.nanoTime();
+    assertThat(cache.get("missing", () -> "loaded")).isEqualTo("loaded");
+    assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(100);
+    assertThat(cache.get("cached", String.class)).isEqualTo("before");
+    cache.put("cached", "during");
+    assertThat(cache.get("cached", String.class)).isEqualTo("during");
+    assertThat(cache.getPendingEvictions()).isGreaterThan(0);
+
+    redisServer.start();
+    // the first call after open-ms probes redis, the breaker closes once one succeeds
+    assertThat(
+            awaitTrue(
+                () -> {
+                  cache.get("probe", String.class);
+                  return circuitBreaker.isClosed();
+                }))
+        .isTrue();
+    assertThat(awaitTrue(() -> 0 == cache.getPendingEvictions())).isTrue();
+    assertThat(redissonClient.getMapCache(CACHE).containsKey("cached")).isFalse();
+    assertThat(
+            meterRegistry
+                .get("circuit.breaker.transitions")
+                .tags("name", "redis", "state", "closed")
+                .counter()
+                .count())
+        .isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("Should reopen when a half open probe fails")
+  public void shouldReopenOnFailedProbe() throws InterruptedException {
+    for (int i = 0; i < 4; i++) {
+      assertThat(circuitBreaker.execute(this::fail, () -> "fallback")).isEqualTo("fallback");
+    }
+    assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    assertThat(circuitBreaker.execute(() -> "called", () -> "fallback")).isEqualTo("fallback");
+
+    TimeUnit.MILLISECONDS.sleep(OPEN_MS + 50);
+    assertThat(circuitBreaker.execute(this::fail, () -> "fallback")).isEqualTo("fallback");
+    assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+    TimeUnit.MILLISECONDS.sleep(OPEN_MS + 50);
+    assertThat(circuitBreaker.execute(() -> "called", () -> "fallback")).isEqualTo("called");
+    assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+  }
+
+  @Test
+  @DisplayName("Should rethrow what is not a redis failure and stay closed")
+  public void shouldRethrowBugs() {
+    for (int i = 0; i < 10; i++) {
+      assertThat(
+              catchThrowable(
+                  () ->
+                      circuitBreaker.execute(
+                          () -> {
+                            throw new IllegalArgumentException("bug in the call");
+                          },
+                          () -> "fallback")))
+          .isInstanceOf(IllegalArgumentException.class);
+    }
+    assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+  }
+
+  private String fail() {
+    throw new RedisConnectionException("redis is down");
+  }
+
+  private static boolean awaitTrue(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (System.nanoTime() < deadline) {
+      if (condition.getAsBoolean()) {
+        return true;
+      }
+      TimeUnit.MILLISECONDS.sleep(50);
+    }
+    return false;
+  }
+}
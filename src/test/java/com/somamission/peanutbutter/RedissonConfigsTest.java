@@ -0,0 +1,77 @@
+package com.somamission.peanutbutter;
+
+import com.somamission.peanutbutter.config.RedissonConfigs;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.redisson.config.Config;
+import org.redisson.config.ReadMode;
+import org.springframework.mock.env.MockEnvironment;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class RedissonConfigsTest {
+  @Test
+  @DisplayName("Should default to a single server at REDIS_URL")
+  public void shouldDefaultToSingleServer() {
+    Config config =
+        RedissonConfigs.fromEnvironment(
+            new MockEnvironment().withProperty("REDIS_URL", "redis://127.0.0.1:6379"));
+    assertThat(config.isClusterConfig()).isFalse();
+    assertThat(config.isSentinelConfig()).isFalse();
+    assertThat(config.getNettyThreads()).isEqualTo(32);
+  }
+
+  @Test
+  @DisplayName("Should set up a cluster from its seed nodes, with event loops for each")
+  public void shouldConfigureCluster() {
+    Config config =
+        RedissonConfigs.fromEnvironment(
+            new MockEnvironment()
+                .withProperty("redis.mode", "cluster")
+                .withProperty(
+                    "redis.nodes",
+                    "redis://10.0.0.1:6379, redis://10.0.0.2:6379, redis://10.0.0.3:6379"));
+    assertThat(config.isClusterConfig()).isTrue();
+    assertThat(config.getNettyThreads()).isEqualTo(48);
+  }
+
+  @Test
+  @DisplayName("Should read from replicas as redis.read-mode says, unless asked for master reads")
+  public void shouldKeepMasterReadsOnMaster() {
+    MockEnvironment env =
+        new MockEnvironment()
+            .withProperty("redis.mode", "master-replica")
+            .withProperty("redis.master-address", "redis://10.0.0.1:6379")
+            .withProperty("redis.replica-addresses", "redis://10.0.0.2:6379");
+    assertThat(RedissonConfigs.readsFromReplicas(env)).isTrue();
+    assertThat(RedissonConfigs.fromEnvironment(env).useMasterSlaveServers().getReadMode())
+        .isEqualTo(ReadMode.SLAVE);
+    assertThat(RedissonConfigs.masterReads(env).useMasterSlaveServers().getReadMode())
+        .isEqualTo(ReadMode.MASTER);
+
+    assertThat(RedissonConfigs.readsFromReplicas(env.withProperty("redis.read-mode", "master")))
+        .isFalse();
+    assertThat(RedissonConfigs.readsFromReplicas(new MockEnvironment())).isFalse();
+  }
+
+  @Test
+  @DisplayName("Should reject an unknown mode or read mode")
+  public void shouldRejectUnknownModes() {
+    assertThat(
+            catchThrowable(
+                () ->
+                    RedissonConfigs.fromEnvironment(
+                        new MockEnvironment().withProperty("redis.mode", "replicated"))))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThat(
+            catchThrowable(
+                () ->
+                    RedissonConfigs.fromEnvironment(
+                        new MockEnvironment()
+                            .withProperty("redis.mode", "master-replica")
+                            .withProperty("redis.master-address", "redis://10.0.0.1:6379")
+                            .withProperty("redis.read-mode", "nearest"))))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}
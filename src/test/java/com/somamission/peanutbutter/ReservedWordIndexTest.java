@@ -0,0 +1,65 @@
+package com.somamission.peanutbutter;
+
+import com.somamission.peanutbutter.support.ReservedWordIndex;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ReservedWordIndexTest {
+  @Test
+  @DisplayName("Should match words regardless of case, as equalsIgnoreCase does")
+  public void shouldIgnoreCase() {
+    ReservedWordIndex index = ReservedWordIndex.of(Arrays.asList("admin", "ROOT", "Stra\u00dfe"));
+    assertThat(index.contains("ADMIN")).isTrue();
+    assertThat(index.contains("Admin")).isTrue();
+    assertThat(index.contains("root")).isTrue();
+    assertThat(index.contains("STRASSE")).isFalse();
+    assertThat(index.contains("stra\u00dfe")).isTrue();
+    assertThat(index.contains("admins")).isFalse();
+    assertThat(index.contains(null)).isFalse();
+  }
+
+  @Test
+  @DisplayName("Should count words differing only in case, nulls and empty words once")
+  public void shouldSkipDuplicates() {
+    ReservedWordIndex index =
+        ReservedWordIndex.of(Arrays.asList("admin", "Admin", "ADMIN", null, "", "root"));
+    assertThat(index.size()).isEqualTo(2);
+  }
+
+  @Test
+  @DisplayName("Should find every word of a large set through colliding probe chains")
+  public void shouldFindEveryWordOfLargeSet() {
+    List<String> words = new ArrayList<>();
+    // "Aa" and "BB" share a hash code, so every combination of them collides
+    for (int i = 0; i < 1 << 10; i++) {
+      StringBuilder word = new StringBuilder();
+      for (int bit = 0; bit < 10; bit++) {
+        word.append(0 == (i & (1 << bit)) ? "Aa" : "BB");
+      }
+      words.add(word.toString());
+    }
+    for (int i = 0; i < 10_000; i++) {
+      words.add("word" + i);
+    }
+    ReservedWordIndex index = ReservedWordIndex.of(words);
+    assertThat(index.size()).isEqualTo(words.size());
+    for (String word : words) {
+      assertThat(index.contains(word.toUpperCase())).isTrue();
+    }
+    assertThat(index.contains("word10000")).isFalse();
+    assertThat(index.contains("AaAaAaAaAaAaAaAaAaAaAa")).isFalse();
+  }
+
+  @Test
+  @DisplayName("Should answer no for any word when empty")
+  public void shouldContainNothingWhenEmpty() {
+    assertThat(ReservedWordIndex.empty().contains("admin")).isFalse();
+    assertThat(ReservedWordIndex.of(new ArrayList<>()).contains("admin")).isFalse();
+  }
+}
@@ -0,0 +1,47 @@
+package com.somamission.peanutbutter;
+
+import com.somamission.peanutbutter.domain.ReservedWord;
+import com.somamission.peanutbutter.intf.IReservedWordService;
+import com.somamission.peanutbutter.repository.IReservedWordRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// not transactional, the refresh reads the table on the topic listener's thread
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+public class ReservedWordRefreshTest {
+  @Autowired private IReservedWordService reservedWordService;
+
+  @Autowired private IReservedWordRepository reservedWordRepository;
+
+  @Test
+  @DisplayName("Should pick up a new reserved word once a refresh is published")
+  public void shouldRefreshOnPublishedMessage() throws InterruptedException {
+    String word = "reserved" + UUID.randomUUID().toString().replace("-", "");
+    ReservedWord reservedWord = new ReservedWord();
+    reservedWord.setWord(word);
+    reservedWord = reservedWordRepository.save(reservedWord);
+    try {
+      assertThat(reservedWordService.isReserved(word)).isFalse();
+
+      reservedWordService.publishRefresh();
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+      while (!reservedWordService.isReserved(word) && System.nanoTime() < deadline) {
+        TimeUnit.MILLISECONDS.sleep(50);
+      }
+      assertThat(reservedWordService.isReserved(word.toUpperCase())).isTrue();
+    } finally {
+      reservedWordRepository.delete(reservedWord);
+      reservedWordService.refresh();
+    }
+  }
+}
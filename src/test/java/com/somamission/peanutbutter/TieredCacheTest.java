@@ -0,0 +1,262 @@
+package com.somamission.peanutbutter;
+
+import com.somamission.peanutbutter.cache.LoadConfig;
+import com.somamission.peanutbutter.cache.LocalCacheConfig;
+import com.somamission.peanutbutter.cache.TieredCache;
+import com.somamission.peanutbutter.cache.TieredCacheManager;
+import com.somamission.peanutbutter.constants.CacheConstants;
+import com.somamission.peanutbutter.domain.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.redisson.Redisson;
+import org.redisson.api.RMapCache;
+import org.redisson.api.RedissonClient;
+import org.redisson.config.Config;
+import org.redisson.spring.cache.CacheConfig;
+import org.redisson.spring.cache.RedissonCache;
+import org.redisson.spring.cache.RedissonSpringCacheManager;
+import org.springframework.cache.Cache;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Two nodes, each with its own redisson client and L1, sharing one embedded redis */
+public class TieredCacheTest {
+  private static final String USERNAME = "fbar";
+
+  private final List<RedissonClient> redissonClients = new ArrayList<>();
+
+  private RedisServer redisServer;
+
+  private String redisAddress;
+
+  private TieredCache nodeA;
+
+  private TieredCache nodeB;
+
+  @BeforeEach
+  public void setUp() throws IOException {
+    int port;
+    try (ServerSocket socket = new ServerSocket(0)) {
+      port = socket.getLocalPort();
+    }
+    redisServer = new RedisServer(port);
+    redisServer.start();
+    redisAddress = "redis://127.0.0.1:" + port;
+    nodeA = node();
+    nodeB = node();
+  }
+
+  @AfterEach
+  public void tearDown() {
+    for (RedissonClient redissonClient : redissonClients) {
+      redissonClient.shutdown();
+    }
+    redisServer.stop();
+  }
+
+  @Test
+  @DisplayName("Should drop a key from the other node's L1 when one node writes it")
+  public void shouldInvalidateOtherNodes() throws InterruptedException {
+    nodeA.put(USERNAME, user(1L, "Foo"));
+    assertThat(nodeB.get(USERNAME, User.class).getFirstName()).isEqualTo("Foo");
+    assertThat(nodeB.getLocalSize()).isEqualTo(1);
+
+    nodeA.put(USERNAME, user(2L, "Baz"));
+    assertThat(awaitTrue(() -> "Baz".equals(nodeB.get(USERNAME, User.class).getFirstName())))
+        .isTrue();
+
+    nodeA.evict(USERNAME);
+    assertThat(awaitTrue(() -> null == nodeB.get(USERNAME))).isTrue();
+  }
+
+  @Test
+  @DisplayName("Should keep the newer version in L2 when a node writes an older one")
+  public void shouldNotOverwriteNewerVersion() {
+    nodeA.put(USERNAME, user(2L, "Baz"));
+    // a node that read the row before the update caches it late
+    nodeB.put(USERNAME, user(1L, "Foo"));
+
+    nodeA.invalidateLocal(USERNAME);
+    assertThat(nodeA.get(USERNAME, User.class).getVersion()).isEqualTo(2L);
+    assertThat(nodeB.get(USERNAME, User.class).getVersion()).isEqualTo(2L);
+  }
+
+  @Test
+  @DisplayName("Should drop a key on every node when a write gives up on the compare-and-set")
+  public void shouldInvalidateOtherNodesOnGiveUp() throws InterruptedException {
+    TieredCache contendedNode = contendedNode();
+    contendedNode.put(USERNAME, user(1L, "Foo"));
+    assertThat(nodeB.get(USERNAME, User.class).getFirstName()).isEqualTo("Foo");
+
+    contendedNode.put(USERNAME, user(2L, "Baz"));
+    assertThat(contendedNode.getEvictions()).isEqualTo(1);
+    assertThat(awaitTrue(() -> null == nodeB.get(USERNAME))).isTrue();
+    assertThat(contendedNode.get(USERNAME)).isNull();
+  }
+
+  @Test
+  @DisplayName("Should read only values from replicas, null entries and versions from the master")
+  public void shouldKeepNegativeAndCompareAndSetReadsOnMaster() throws InterruptedException {
+    RedissonClient redissonClient = client();
+    CacheConfig remoteConfig =
+        new CacheConfig(CacheConstants.USERS_TTL, CacheConstants.USERS_MAX_IDLE_TIME);
+    // a map of its own stands in for a replica that has not caught up with the master
+    Cache replica =
+        new RedissonCache(redissonClient.getMapCache("lagging-replica"), remoteConfig, true);
+    TieredCache laggingNode =
+        new TieredCache(
+            new RedissonCache(
+                redissonClient.getMapCache(CacheConstants.USERS), remoteConfig, true),
+            replica,
+            remoteConfig,
+            new LocalCacheConfig(
+                CacheConstants.LOCAL_DEFAULT_MAX_SIZE, CacheConstants.LOCAL_DEFAULT_TTL, 100),
+            LoadConfig.DEFAULT,
+            redissonClient.getTopic(CacheConstants.INVALIDATION_TOPIC),
+            redissonClient::getLock,
+            "lagging",
+            null,
+            Runnable::run,
+            new SimpleMeterRegistry());
+
+    nodeA.put(USERNAME, user(2L, "Baz"));
+    replica.put(USERNAME, null);
+    assertThat(laggingNode.get(USERNAME, User.class).getFirstName()).isEqualTo("Baz");
+
+    laggingNode.put(USERNAME, user(1L, "Foo"));
+    nodeA.invalidateLocal(USERNAME);
+    assertThat(nodeA.get(USERNAME, User.class).getVersion()).isEqualTo(2L);
+
+    replica.put(USERNAME, user(1L, "Foo"));
+    laggingNode.invalidateLocal(USERNAME);
+    assertThat(laggingNode.get(USERNAME, User.class).getFirstName()).isEqualTo("Foo");
+    // a stale replica copy leaves L1 on the replica ttl, well before the L1 ttl
+    replica.put(USERNAME, user(2L, "Baz"));
+    assertThat(awaitTrue(() -> "Baz".equals(laggingNode.get(USERNAME, User.class).getFirstName())))
+        .isTrue();
+  }
+
+  @Test
+  @DisplayName("Should refresh a due key in the background and write it to the other nodes")
+  public void shouldRefreshInBackground() throws InterruptedException {
+    // a beta this large makes every read of a loaded key due for a refresh
+    TieredCache refreshingNode = node(new LoadConfig(false, 0, 1e12));
+    assertThat(refreshingNode.get(USERNAME, () -> user(1L, "Foo")).getFirstName())
+        .isEqualTo("Foo");
+    assertThat(nodeB.get(USERNAME, User.class).getFirstName()).isEqualTo("Foo");
+
+    // the read answers with what it holds, the newer row arrives with the refresh
+    assertThat(refreshingNode.get(USERNAME, () -> user(2L, "Baz")).getFirstName())
+        .isEqualTo("Foo");
+    assertThat(awaitTrue(() -> "Baz".equals(nodeB.get(USERNAME, User.class).getFirstName())))
+        .isTrue();
+    assertThat(refreshingNode.getEarlyRefreshes()).isEqualTo(1);
+  }
+
+  private TieredCache node() {
+    return node(LoadConfig.DEFAULT);
+  }
+
+  private TieredCache node(LoadConfig loadConfig) {
+    RedissonClient redissonClient = client();
+    Map<String, CacheConfig> remoteConfigs =
+        Collections.singletonMap(
+            CacheConstants.USERS,
+            new CacheConfig(CacheConstants.USERS_TTL, CacheConstants.USERS_MAX_IDLE_TIME));
+    TieredCacheManager cacheManager =
+        new TieredCacheManager(
+            new RedissonSpringCacheManager(redissonClient, remoteConfigs),
+            remoteConfigs,
+            Collections.singletonMap(
+                CacheConstants.USERS,
+                new LocalCacheConfig(
+                    CacheConstants.LOCAL_DEFAULT_MAX_SIZE, CacheConstants.LOCAL_DEFAULT_TTL)),
+            Collections.singletonMap(CacheConstants.USERS, loadConfig),
+            redissonClient.getTopic(CacheConstants.INVALIDATION_TOPIC),
+            redissonClient::getLock,
+            null,
+            new SimpleMeterRegistry());
+    return (TieredCache) cacheManager.getCache(CacheConstants.USERS);
+  }
+
+  /** A node whose compare-and-set on L2 never wins, as if other writers always got there first */
+  @SuppressWarnings("unchecked")
+  private TieredCache contendedNode() {
+    RedissonClient redissonClient = client();
+    RMapCache<Object, Object> remoteMap = redissonClient.getMapCache(CacheConstants.USERS);
+    RMapCache<Object, Object> contendedMap =
+        (RMapCache<Object, Object>)
+            Proxy.newProxyInstance(
+                RMapCache.class.getClassLoader(),
+                new Class<?>[] {RMapCache.class},
+                (proxy, method, args) -> {
+                  if ("replace".equals(method.getName()) && 3 == args.length) {
+                    return false;
+                  }
+                  try {
+                    return method.invoke(remoteMap, args);
+                  } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                  }
+                });
+    CacheConfig remoteConfig =
+        new CacheConfig(CacheConstants.USERS_TTL, CacheConstants.USERS_MAX_IDLE_TIME);
+    return new TieredCache(
+        new RedissonCache(contendedMap, remoteConfig, true),
+        remoteConfig,
+        new LocalCacheConfig(
+            CacheConstants.LOCAL_DEFAULT_MAX_SIZE, CacheConstants.LOCAL_DEFAULT_TTL),
+        LoadConfig.DEFAULT,
+        redissonClient.getTopic(CacheConstants.INVALIDATION_TOPIC),
+        redissonClient::getLock,
+        "contended",
+        null,
+        new SimpleMeterRegistry());
+  }
+
+  private RedissonClient client() {
+    Config config = new Config();
+    config.useSingleServer().setAddress(redisAddress);
+    RedissonClient redissonClient = Redisson.create(config);
+    redissonClients.add(redissonClient);
+    return redissonClient;
+  }
+
+  private static User user(long version, String firstName) {
+    User user = new User();
+    user.setUserId(1L);
+    user.setVersion(version);
+    user.setUsername(USERNAME);
+    user.setEmail("foo_bar@gmail.com");
+    user.setPassword("{bcrypt:10}hash");
+    user.setFirstName(firstName);
+    user.setLastName("Bar");
+    return user;
+  }
+
+  private static boolean awaitTrue(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (System.nanoTime() < deadline) {
+      if (condition.getAsBoolean()) {
+        return true;
+      }
+      TimeUnit.MILLISECONDS.sleep(50);
+    }
+    return false;
+  }
+}
@@ -0,0 +1,62 @@
+package com.somamission.peanutbutter;
+
+import com.somamission.peanutbutter.support.TopKSketch;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TopKSketchTest {
+  @Test
+  @DisplayName("Should count exactly while there is room for every key")
+  public void shouldCountExactlyBelowCapacity() {
+    TopKSketch sketch = new TopKSketch(3);
+    sketch.add("a", 1);
+    sketch.add("b", 2);
+    sketch.add("a", 2);
+    sketch.add("c", 1);
+    sketch.add("c", 5);
+
+    Map<String, Long> expected = new HashMap<>();
+    expected.put("a", 3L);
+    expected.put("b", 2L);
+    expected.put("c", 6L);
+    assertThat(sketch.drain()).isEqualTo(expected);
+    assertThat(sketch.size()).isZero();
+    assertThat(sketch.drain()).isEmpty();
+  }
+
+  @Test
+  @DisplayName("Should keep every key seen more than total / capacity times, never undercounted")
+  public void shouldKeepHeavyHitters() {
+    int capacity = 10;
+    TopKSketch sketch = new TopKSketch(capacity);
+    Map<String, Long> exact = new HashMap<>();
+    long total = 0;
+    Random random = new Random(42);
+    for (int i = 0; i < 100_000; i++) {
+      // a skewed stream, a few keys take most of the weight
+      String key = "key" + (int) Math.abs(random.nextGaussian() * 20);
+      long count = 1 + random.nextInt(3);
+      sketch.add(key, count);
+      exact.merge(key, count, Long::sum);
+      total += count;
+    }
+
+    Map<String, Long> counts = sketch.drain();
+    assertThat(counts).hasSize(capacity);
+    assertThat(counts.values().stream().mapToLong(Long::longValue).sum()).isEqualTo(total);
+    for (Map.Entry<String, Long> count : counts.entrySet()) {
+      assertThat(count.getValue()).isGreaterThanOrEqualTo(exact.get(count.getKey()));
+    }
+    for (Map.Entry<String, Long> count : exact.entrySet()) {
+      if (count.getValue() > total / capacity) {
+        assertThat(counts).containsKey(count.getKey());
+      }
+    }
+  }
+}
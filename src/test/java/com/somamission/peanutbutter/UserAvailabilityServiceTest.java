@@ -0,0 +1,72 @@
+package com.somamission.peanutbutter;
+
+import com.somamission.peanutbutter.exception.BadRequestException;
+import com.somamission.peanutbutter.exception.UserFoundException;
+import com.somamission.peanutbutter.intf.IUserAvailabilityService;
+import com.somamission.peanutbutter.intf.IUserService;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@Transactional
+public class UserAvailabilityServiceTest {
+  @Autowired private IUserAvailabilityService userAvailabilityService;
+
+  @Autowired private IUserService userService;
+
+  private static final String NEW_USER_PATH = "json/happy/new_user.json";
+
+  private JSONObject newUserParams;
+
+  @BeforeEach
+  void initEach() throws BadRequestException, JSONException, UserFoundException {
+    newUserParams = new JSONObject(TestUtils.getFileToJson(NEW_USER_PATH));
+    userService.createNewUser(
+        newUserParams.optString("username"),
+        newUserParams.optString("email"),
+        newUserParams.optString("password"));
+  }
+
+  @Test
+  @DisplayName("Should report created usernames and emails as taken")
+  public void shouldReportTakenValues() {
+    assertThat(userAvailabilityService.isUsernameAvailable(newUserParams.optString("username")))
+        .isFalse();
+    assertThat(userAvailabilityService.isEmailAvailable(newUserParams.optString("email")))
+        .isFalse();
+  }
+
+  @Test
+  @DisplayName("Should report unknown usernames and emails as free")
+  public void shouldReportFreeValues() {
+    String unknown = UUID.randomUUID().toString();
+    assertThat(userAvailabilityService.isUsernameAvailable(unknown)).isTrue();
+    assertThat(userAvailabilityService.isEmailAvailable(unknown + "@example.com")).isTrue();
+  }
+
+  @Test
+  @DisplayName("Should refuse a second user with a taken username")
+  public void shouldRefuseTakenUsername() {
+    assertThatExceptionOfType(UserFoundException.class)
+        .isThrownBy(
+            () ->
+                userService.createNewUser(
+                    newUserParams.optString("username"),
+                    "other_" + newUserParams.optString("email"),
+                    newUserParams.optString("password")));
+  }
+}
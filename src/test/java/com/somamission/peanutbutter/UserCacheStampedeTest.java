@@ -0,0 +1,124 @@
+package com.somamission.peanutbutter;
+
+import com.somamission.peanutbutter.constants.CacheConstants;
+import com.somamission.peanutbutter.domain.User;
+import com.somamission.peanutbutter.exception.UserNotFoundException;
+import com.somamission.peanutbutter.intf.IUserCacheService;
+import com.somamission.peanutbutter.intf.IUserService;
+import com.somamission.peanutbutter.repository.IUserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+// not transactional on purpose, the readers run on their own threads against a committed row
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+public class UserCacheStampedeTest {
+  @Autowired private IUserService userService;
+
+  @Autowired private IUserRepository userRepository;
+
+  @Autowired private IUserCacheService userCacheService;
+
+  @Autowired private MeterRegistry meterRegistry;
+
+  private static final String USERNAME = "popular_user";
+  private static final String MISSING_USERNAME = "not_yet_a_user";
+  private static final int READERS = 16;
+
+  @BeforeEach
+  void createUser() throws Exception {
+    userService.createNewUser(USERNAME, "popular_user@example.com", "s3curePassword!");
+    userCacheService.evict(USERNAME);
+  }
+
+  @AfterEach
+  void cleanUp() {
+    userRepository.findByUsername(USERNAME).ifPresent(userRepository::delete);
+    userCacheService.evict(USERNAME);
+    userRepository.findByUsername(MISSING_USERNAME).ifPresent(userRepository::delete);
+    userCacheService.evict(MISSING_USERNAME);
+  }
+
+  @Test
+  @DisplayName("Should query the database once for many concurrent misses on one user")
+  public void shouldCoalesceMisses() throws Exception {
+    long queriesBefore = findByUsernameCalls();
+    ExecutorService executor = Executors.newFixedThreadPool(READERS);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<User>> futures = new ArrayList<>();
+    for (int i = 0; i < READERS; i++) {
+      futures.add(
+          executor.submit(
+              () -> {
+                start.await();
+                return userService.getUserByUsername(USERNAME);
+              }));
+    }
+    start.countDown();
+    for (Future<User> future : futures) {
+      assertThat(future.get(60, TimeUnit.SECONDS).getUsername()).isEqualTo(USERNAME);
+    }
+    executor.shutdown();
+
+    assertThat(findByUsernameCalls() - queriesBefore).isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("Should query the database once for repeated lookups of an unknown username")
+  public void shouldCacheMissingUsername() throws Exception {
+    userCacheService.evict(MISSING_USERNAME);
+    long queriesBefore = findByUsernameCalls();
+    long negativeHitsBefore = negativeHits();
+    for (int i = 0; i < 3; i++) {
+      Throwable thrown = catchThrowable(() -> userService.getUserByUsername(MISSING_USERNAME));
+      assertThat(thrown).isInstanceOf(UserNotFoundException.class);
+      assertThat(thrown.getStackTrace()).isEmpty();
+    }
+    assertThat(findByUsernameCalls() - queriesBefore).isEqualTo(1);
+    assertThat(negativeHits() - negativeHitsBefore).isEqualTo(2);
+
+    userService.createNewUser(MISSING_USERNAME, "not_yet_a_user@example.com", "s3curePassword!");
+    assertThat(userService.getUserByUsername(MISSING_USERNAME).getUsername())
+        .isEqualTo(MISSING_USERNAME);
+    assertThat(userService.getUserJson(MISSING_USERNAME).getId()).isNotNull();
+  }
+
+  private double negativeHits() {
+    return meterRegistry
+        .find("cache.tiered.gets")
+        .tags("cache", CacheConstants.USERS, "result", "negative_hit")
+        .functionCounter()
+        .count();
+  }
+
+  private long findByUsernameCalls() {
+    long calls = 0;
+    for (Timer timer :
+        meterRegistry
+            .find("repository.calls")
+            .tags("class", "IUserRepository", "method", "findByUsername")
+            .timers()) {
+      calls += timer.count();
+    }
+    return calls;
+  }
+}
@@ -0,0 +1,67 @@
+package com.somamission.peanutbutter;
+
+import com.somamission.peanutbutter.constants.CacheConstants;
+import com.somamission.peanutbutter.intf.IUserCacheService;
+import com.somamission.peanutbutter.intf.IUserCacheWarmUpService;
+import com.somamission.peanutbutter.intf.IUserService;
+import com.somamission.peanutbutter.repository.IUserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// not transactional on purpose, warm-up batches run on their own threads against committed rows
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(properties = "cache.warm-up.sample-rate=1")
+public class UserCacheWarmUpTest {
+  @Autowired private IUserCacheWarmUpService userCacheWarmUpService;
+
+  @Autowired private IUserService userService;
+
+  @Autowired private IUserRepository userRepository;
+
+  @Autowired private IUserCacheService userCacheService;
+
+  @Autowired private RedissonClient redissonClient;
+
+  private static final String USERNAME = "warm_user";
+
+  @BeforeEach
+  void createUser() throws Exception {
+    userService.createNewUser(USERNAME, "warm_user@example.com", "s3curePassword!");
+  }
+
+  @AfterEach
+  void cleanUp() {
+    userRepository.findByUsername(USERNAME).ifPresent(userRepository::delete);
+    userCacheService.evict(USERNAME);
+    redissonClient
+        .getScoredSortedSet(CacheConstants.HOT_USERNAMES, StringCodec.INSTANCE)
+        .remove(USERNAME);
+  }
+
+  @Test
+  @DisplayName("Should load the users read most into the caches on warm-up")
+  public void shouldWarmUpHotUsers() throws Exception {
+    for (int i = 0; i < 100; i++) {
+      userService.getUserByUsername(USERNAME);
+    }
+    userCacheWarmUpService.persistHotUsernames();
+    userCacheService.evict(USERNAME);
+    assertThat(userCacheService.peek(USERNAME)).isNull();
+
+    userCacheWarmUpService.warmUp();
+
+    assertThat(userCacheWarmUpService.isWarmedUp()).isTrue();
+    assertThat(userCacheWarmUpService.getLoadedEntries()).isGreaterThanOrEqualTo(1);
+    assertThat(userCacheService.peek(USERNAME).getUsername()).isEqualTo(USERNAME);
+  }
+}
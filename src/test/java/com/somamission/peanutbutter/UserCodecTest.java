@@ -0,0 +1,101 @@
+package com.somamission.peanutbutter;
+
+import com.somamission.peanutbutter.cache.UserCodec;
+import com.somamission.peanutbutter.domain.User;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.redisson.client.codec.Codec;
+import org.redisson.codec.FstCodec;
+
+import java.io.IOException;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class UserCodecTest {
+  // schema 1 entries as written by the codec, kept as is so a layout change cannot go unnoticed
+  private static final String SCHEMA_1_ENTRY =
+      "b575010b9f0b375406046662617211666f6f5f62617240676d61696c2e636f6d0f7b6263727970743a31307d"
+          + "6861736803466f6f0342617280b0e5cec559";
+  private static final String SCHEMA_1_ENTRY_BEFORE_CREATED_AT =
+      "b575010a9f03315406046662617211666f6f5f62617240676d61696c2e636f6d0f7b6263727970743a31307d"
+          + "6861736803466f6f03426172";
+  private static final String SCHEMA_1_ENTRY_WITH_ADDED_FIELD =
+      "b575010c9f1b465406046662617211666f6f5f62617240676d61696c2e636f6d0f7b6263727970743a31307d"
+          + "6861736803466f6f0342617280b0e5cec5590e616e206164646564206669656c64";
+  private static final long CREATED_AT = 1538352000000L;
+
+  private final Codec fallbackCodec = new FstCodec();
+  private final UserCodec userCodec = new UserCodec(fallbackCodec);
+
+  @Test
+  @DisplayName("Should read back every field of a user, absent ones included")
+  public void shouldRoundTrip() throws IOException {
+    User user = user();
+    user.setProfilePhotoUrl("http://placeimg.com/100/100/people");
+    user.setFullAddress("123 Main St. #123 New York NY United States 10001");
+    assertThat(decode(encode(userCodec, user))).isEqualTo(user);
+
+    User sparseUser = new User();
+    sparseUser.setUsername("fbar");
+    assertThat(decode(encode(userCodec, sparseUser))).isEqualTo(sparseUser);
+  }
+
+  @Test
+  @DisplayName("Should encode a user in fewer bytes than the default codec")
+  public void shouldBeSmallerThanDefaultCodec() throws IOException {
+    assertThat(encode(userCodec, user()).length).isLessThan(encode(fallbackCodec, user()).length);
+  }
+
+  @Test
+  @DisplayName("Should read entries written before and after fields were added")
+  public void shouldReadOtherVersions() throws IOException {
+    assertThat(decode(ByteBufUtil.decodeHexDump(SCHEMA_1_ENTRY))).isEqualTo(user());
+
+    User userWithoutCreatedAt = user();
+    userWithoutCreatedAt.setCreatedAt(null);
+    assertThat(decode(ByteBufUtil.decodeHexDump(SCHEMA_1_ENTRY_BEFORE_CREATED_AT)))
+        .isEqualTo(userWithoutCreatedAt);
+
+    ByteBuf buf =
+        Unpooled.wrappedBuffer(ByteBufUtil.decodeHexDump(SCHEMA_1_ENTRY_WITH_ADDED_FIELD));
+    assertThat(userCodec.getValueDecoder().decode(buf, null)).isEqualTo(user());
+    assertThat(buf.isReadable()).isFalse();
+  }
+
+  @Test
+  @DisplayName("Should read users cached with the default codec and pass other values through")
+  public void shouldFallBack() throws IOException {
+    assertThat(decode(encode(fallbackCodec, user()))).isEqualTo(user());
+    assertThat(decode(encode(userCodec, "not a user"))).isEqualTo("not a user");
+  }
+
+  private byte[] encode(Codec codec, Object value) throws IOException {
+    ByteBuf buf = codec.getValueEncoder().encode(value);
+    try {
+      return ByteBufUtil.getBytes(buf);
+    } finally {
+      buf.release();
+    }
+  }
+
+  private Object decode(byte[] bytes) throws IOException {
+    return userCodec.getValueDecoder().decode(Unpooled.wrappedBuffer(bytes), null);
+  }
+
+  private static User user() {
+    User user = new User();
+    user.setUserId(42L);
+    user.setVersion(3L);
+    user.setUsername("fbar");
+    user.setEmail("foo_bar@gmail.com");
+    user.setPassword("{bcrypt:10}hash");
+    user.setFirstName("Foo");
+    user.setLastName("Bar");
+    user.setCreatedAt(new Date(CREATED_AT));
+    return user;
+  }
+}
@@ -0,0 +1,81 @@
+package com.somamission.peanutbutter;
+
+import com.somamission.peanutbutter.exception.UserFoundException;
+import com.somamission.peanutbutter.intf.IUserCacheService;
+import com.somamission.peanutbutter.intf.IUserService;
+import com.somamission.peanutbutter.repository.IUserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// not transactional on purpose, the signups have to race on committed rows
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+public class UserConcurrentSignupTest {
+  @Autowired private IUserService userService;
+
+  @Autowired private IUserRepository userRepository;
+
+  @Autowired private IUserCacheService userCacheService;
+
+  private static final String USERNAME = "racing_user";
+  private static final String PASSWORD = "s3curePassword!";
+  private static final int SIGNUPS = 8;
+
+  @AfterEach
+  void cleanUp() {
+    userRepository.findByUsername(USERNAME).ifPresent(userRepository::delete);
+    userCacheService.evict(USERNAME);
+  }
+
+  @Test
+  @DisplayName("Should let exactly one of many concurrent signups for a username win")
+  public void shouldHaveOneWinner() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(SIGNUPS);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int i = 0; i < SIGNUPS; i++) {
+      String email = "racing_user" + i + "@example.com";
+      futures.add(
+          executor.submit(
+              () -> {
+                start.await();
+                return userService.createNewUser(USERNAME, email, PASSWORD);
+              }));
+    }
+    start.countDown();
+
+    int winners = 0;
+    List<UserFoundException> losers = new ArrayList<>();
+    for (Future<?> future : futures) {
+      try {
+        future.get(60, TimeUnit.SECONDS);
+        winners++;
+      } catch (ExecutionException e) {
+        assertThat(e.getCause()).isInstanceOf(UserFoundException.class);
+        losers.add((UserFoundException) e.getCause());
+      }
+    }
+    executor.shutdown();
+
+    assertThat(winners).isEqualTo(1);
+    assertThat(losers).hasSize(SIGNUPS - 1);
+    assertThat(losers).allMatch(e -> "username".equals(e.getField()));
+    assertThat(userRepository.existsByUsername(USERNAME)).isTrue();
+  }
+}
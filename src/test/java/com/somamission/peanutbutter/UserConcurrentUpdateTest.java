@@ -0,0 +1,120 @@
+package com.somamission.peanutbutter;
+
+import com.somamission.peanutbutter.domain.User;
+import com.somamission.peanutbutter.intf.IUserCacheService;
+import com.somamission.peanutbutter.intf.IUserService;
+import com.somamission.peanutbutter.param.AddressParams;
+import com.somamission.peanutbutter.param.NameParams;
+import com.somamission.peanutbutter.param.PhotoParams;
+import com.somamission.peanutbutter.param.UserParams;
+import com.somamission.peanutbutter.repository.IUserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// not transactional on purpose, every writer has to commit for the version check to bite
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(properties = {"users.update.max-attempts=100", "users.update.max-backoff-ms=20"})
+public class UserConcurrentUpdateTest {
+  @Autowired private IUserService userService;
+
+  @Autowired private IUserRepository userRepository;
+
+  @Autowired private IUserCacheService userCacheService;
+
+  private static final String USERNAME = "concurrent_user";
+  private static final int WRITES_PER_FIELD = 20;
+
+  @BeforeEach
+  void initEach() {
+    User user = new User();
+    user.setUsername(USERNAME);
+    user.setEmail("concurrent_user@example.com");
+    user.setPassword("{bcrypt:10}unused");
+    userRepository.save(user);
+  }
+
+  @AfterEach
+  void cleanUp() {
+    userRepository.findByUsername(USERNAME).ifPresent(userRepository::delete);
+    userCacheService.evict(USERNAME);
+  }
+
+  @Test
+  @DisplayName("Should not lose a field when many threads update the same user")
+  public void shouldNotLoseUpdates() throws Exception {
+    // each writer owns one field, so a lost update shows up as a field holding an older value
+    List<Writer> writers = new ArrayList<>();
+    writers.add(i -> withName(new NameParams.Builder().withFirstName("first" + i).build()));
+    writers.add(i -> withName(new NameParams.Builder().withLastName("last" + i).build()));
+    writers.add(i -> withPhoto(new PhotoParams.Builder().withProfileUrl(url("p", i)).build()));
+    writers.add(i -> withPhoto(new PhotoParams.Builder().withCoverUrl(url("c", i)).build()));
+    writers.add(
+        i ->
+            new UserParams.Builder()
+                .withUsername(USERNAME)
+                .withAddressParams(
+                    new AddressParams.Builder().withAddressLineOne(i + " Main St.").build())
+                .build());
+
+    ExecutorService executor = Executors.newFixedThreadPool(writers.size());
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<?>> futures = new ArrayList<>();
+    for (Writer writer : writers) {
+      futures.add(
+          executor.submit(
+              () -> {
+                start.await();
+                for (int i = 1; i <= WRITES_PER_FIELD; i++) {
+                  userService.patchUser(writer.params(i));
+                }
+                return null;
+              }));
+    }
+    start.countDown();
+    for (Future<?> future : futures) {
+      future.get(60, TimeUnit.SECONDS);
+    }
+    executor.shutdown();
+
+    User user = userRepository.findByUsername(USERNAME).orElseThrow(IllegalStateException::new);
+    assertThat(user.getFirstName()).isEqualTo("first" + WRITES_PER_FIELD);
+    assertThat(user.getLastName()).isEqualTo("last" + WRITES_PER_FIELD);
+    assertThat(user.getProfilePhotoUrl()).isEqualTo(url("p", WRITES_PER_FIELD));
+    assertThat(user.getCoverPhotoUrl()).isEqualTo(url("c", WRITES_PER_FIELD));
+    assertThat(user.getFullAddress()).startsWith(WRITES_PER_FIELD + " Main St.");
+    assertThat(user.getVersion()).isEqualTo((long) writers.size() * WRITES_PER_FIELD);
+    assertThat(userService.getUserByUsername(USERNAME).getVersion()).isEqualTo(user.getVersion());
+  }
+
+  private interface Writer {
+    UserParams params(int iteration);
+  }
+
+  private static UserParams withName(NameParams nameParams) {
+    return new UserParams.Builder().withUsername(USERNAME).withNameParams(nameParams).build();
+  }
+
+  private static UserParams withPhoto(PhotoParams photoParams) {
+    return new UserParams.Builder().withUsername(USERNAME).withPhotoParams(photoParams).build();
+  }
+
+  private static String url(String path, int iteration) {
+    return "http://example.com/" + path + "/" + iteration;
+  }
+}
@@ -0,0 +1,65 @@
+package com.somamission.peanutbutter;
+
+import com.somamission.peanutbutter.exception.BadRequestException;
+import com.somamission.peanutbutter.exception.UserFoundException;
+import com.somamission.peanutbutter.intf.IUserExportService;
+import com.somamission.peanutbutter.intf.IUserService;
+import com.somamission.peanutbutter.param.ExportFormat;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@Transactional
+public class UserExportServiceTest {
+  @Autowired private IUserExportService userExportService;
+
+  @Autowired private IUserService userService;
+
+  private static final String NEW_USER_PATH = "json/happy/new_user.json";
+
+  private JSONObject newUserParams;
+
+  @BeforeEach
+  void initEach() throws BadRequestException, JSONException, UserFoundException {
+    newUserParams = new JSONObject(TestUtils.getFileToJson(NEW_USER_PATH));
+    userService.createNewUser(
+        newUserParams.optString("username"),
+        newUserParams.optString("email"),
+        newUserParams.optString("password"));
+  }
+
+  @Test
+  @DisplayName("Should export users as csv without their passwords")
+  public void shouldExportCsv() throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    userExportService.exportUsers(ExportFormat.CSV, output);
+    String csv = output.toString("UTF-8");
+    assertThat(csv).startsWith("user_id,username,email,");
+    assertThat(csv).contains(newUserParams.optString("email"));
+    assertThat(csv).doesNotContain("{bcrypt:");
+  }
+
+  @Test
+  @DisplayName("Should export users as newline delimited json without their passwords")
+  public void shouldExportNdjson() throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    userExportService.exportUsers(ExportFormat.NDJSON, output);
+    String ndjson = output.toString("UTF-8");
+    assertThat(ndjson).contains("\"username\":\"" + newUserParams.optString("username") + "\"");
+    assertThat(ndjson).doesNotContain("password");
+  }
+}
@@ -0,0 +1,91 @@
+package com.somamission.peanutbutter;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.somamission.peanutbutter.domain.User;
+import com.somamission.peanutbutter.intf.IUserImportService;
+import com.somamission.peanutbutter.repository.IUserRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@Transactional
+public class UserImportServiceTest {
+  @Autowired private IUserImportService userImportService;
+
+  @Autowired private IUserRepository userRepository;
+
+  @Autowired private ObjectMapper objectMapper;
+
+  private static final String BULK_USERS_PATH = "json/happy/bulk_users.json";
+  private static final String DUPLICATE_EMAIL_PATH = "json/edge/bulk_users_duplicate_email.json";
+  private static final String MALFORMED_PATH = "json/edge/bulk_users_malformed.json";
+
+  @Test
+  @DisplayName("Should import the valid users and report the rejected ones")
+  public void shouldImportUsers() throws IOException {
+    Map<Integer, String> statusByIndex = importUsers(BULK_USERS_PATH);
+    assertThat(statusByIndex).hasSize(4);
+    assertThat(statusByIndex.get(0)).isEqualTo("created");
+    assertThat(statusByIndex.get(1)).isEqualTo("created");
+    assertThat(statusByIndex.get(2)).isEqualTo("rejected");
+    assertThat(statusByIndex.get(3)).isEqualTo("rejected");
+    assertThat(userRepository.findByUsername("bulkone")).isPresent();
+    assertThat(userRepository.findByUsername("bulktwo")).isPresent();
+    assertThat(userRepository.findByUsername("bulkfour")).isNotPresent();
+  }
+
+  @Test
+  @DisplayName("Should not hold a username against later records when its email was a duplicate")
+  public void shouldReleaseUsernameOfDuplicateEmail() throws IOException {
+    Map<Integer, String> statusByIndex = importUsers(DUPLICATE_EMAIL_PATH);
+    assertThat(statusByIndex).hasSize(3);
+    assertThat(statusByIndex.get(0)).isEqualTo("created");
+    assertThat(statusByIndex.get(1)).isEqualTo("rejected");
+    assertThat(statusByIndex.get(2)).isEqualTo("created");
+    assertThat(userRepository.findByUsername("bulksix").map(User::getEmail))
+        .contains("bulk_six@gmail.com");
+  }
+
+  @Test
+  @DisplayName("Should report records that cannot be read and import the others")
+  public void shouldRejectMalformedRecords() throws IOException {
+    Map<Integer, String> statusByIndex = importUsers(MALFORMED_PATH);
+    assertThat(statusByIndex).hasSize(4);
+    assertThat(statusByIndex.get(0)).isEqualTo("created");
+    assertThat(statusByIndex.get(1)).isEqualTo("rejected");
+    assertThat(statusByIndex.get(2)).isEqualTo("created");
+    assertThat(statusByIndex.get(3)).isEqualTo("rejected");
+    assertThat(userRepository.findByUsername("bulknine")).isPresent();
+    assertThat(userRepository.findByUsername("bulkten")).isNotPresent();
+  }
+
+  private Map<Integer, String> importUsers(String path) throws IOException {
+    String bulkUsers = TestUtils.getFileToJson(path);
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    userImportService.importUsers(
+        new ByteArrayInputStream(bulkUsers.getBytes(StandardCharsets.UTF_8)), output);
+
+    Map<Integer, String> statusByIndex = new HashMap<>();
+    for (String line : output.toString("UTF-8").split("\n")) {
+      JsonNode result = objectMapper.readTree(line);
+      statusByIndex.put(result.get("index").asInt(), result.get("status").asText());
+    }
+    return statusByIndex;
+  }
+}
@@ -0,0 +1,96 @@
+package com.somamission.peanutbutter;
+
+import com.somamission.peanutbutter.domain.User;
+import com.somamission.peanutbutter.domain.UserPage;
+import com.somamission.peanutbutter.domain.UserSummary;
+import com.somamission.peanutbutter.exception.BadRequestException;
+import com.somamission.peanutbutter.intf.IUserListingService;
+import com.somamission.peanutbutter.param.UserSearchParams;
+import com.somamission.peanutbutter.repository.IUserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@Transactional
+public class UserListingServiceTest {
+  @Autowired private IUserListingService userListingService;
+
+  @Autowired private IUserRepository userRepository;
+
+  private static final String EMAIL_DOMAIN = "listing.example.com";
+  private static final int USER_COUNT = 25;
+
+  @BeforeEach
+  void initEach() {
+    List<User> users = new ArrayList<>();
+    for (int i = 0; i < USER_COUNT; i++) {
+      User user = new User();
+      user.setUsername("listing" + i);
+      user.setEmail("listing" + i + "@" + EMAIL_DOMAIN);
+      user.setPassword("{bcrypt:10}unused");
+      user.setFirstName(i % 2 == 0 ? "Ada" : "Grace");
+      users.add(user);
+    }
+    userRepository.saveAll(users);
+  }
+
+  @Test
+  @DisplayName("Should page through every matching user exactly once")
+  public void shouldPageThroughUsers() throws BadRequestException {
+    List<Long> seen = new ArrayList<>();
+    String pageToken = null;
+    do {
+      UserPage page =
+          userListingService.listUsers(
+              new UserSearchParams.Builder()
+                  .withEmailDomain(EMAIL_DOMAIN)
+                  .withPageToken(pageToken)
+                  .withLimit(10)
+                  .build());
+      assertThat(page.getUsers().size()).isLessThanOrEqualTo(10);
+      for (UserSummary user : page.getUsers()) {
+        seen.add(user.getUserId());
+      }
+      pageToken = page.getNextPageToken();
+    } while (null != pageToken);
+
+    assertThat(seen).hasSize(USER_COUNT).doesNotHaveDuplicates().isSorted();
+  }
+
+  @Test
+  @DisplayName("Should filter users by name prefix")
+  public void shouldFilterByNamePrefix() throws BadRequestException {
+    UserPage page =
+        userListingService.listUsers(
+            new UserSearchParams.Builder()
+                .withEmailDomain(EMAIL_DOMAIN.toUpperCase())
+                .withNamePrefix("Gra")
+                .withLimit(100)
+                .build());
+    assertThat(page.getUsers()).hasSize(USER_COUNT / 2);
+    assertThat(page.getNextPageToken()).isNull();
+  }
+
+  @Test
+  @DisplayName("Should reject a page token it did not issue")
+  public void shouldRejectInvalidPageToken() {
+    assertThrows(
+        BadRequestException.class,
+        () ->
+            userListingService.listUsers(
+                new UserSearchParams.Builder().withPageToken("not-a-token").build()));
+  }
+}
@@ -2,14 +2,20 @@ package com.somamission.peanutbutter;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.somamission.peanutbutter.constants.ErrorMessageConstants;
+import com.somamission.peanutbutter.domain.CachedJson;
 import com.somamission.peanutbutter.domain.User;
 import com.somamission.peanutbutter.exception.BadRequestException;
 import com.somamission.peanutbutter.exception.UserFoundException;
 import com.somamission.peanutbutter.exception.UserNotFoundException;
+import com.somamission.peanutbutter.intf.IUserCacheService;
 import com.somamission.peanutbutter.intf.IUserService;
 import com.somamission.peanutbutter.param.AddressParams;
 import com.somamission.peanutbutter.param.NameParams;
 import com.somamission.peanutbutter.param.PhotoParams;
+import com.somamission.peanutbutter.param.UserParams;
+import com.somamission.peanutbutter.repository.IUserRepository;
+import com.somamission.peanutbutter.security.UserPasswordAuthenticationProvider;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.junit.jupiter.api.BeforeEach;
@@ -18,14 +24,22 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
 import java.io.IOException;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.catchThrowable;
 
 @ExtendWith(SpringExtension.class)
 @SpringBootTest
@@ -37,6 +51,16 @@ public class UserServiceTest {
 
   @Autowired private ObjectMapper objectMapper;
 
+  @Autowired private IUserRepository userRepository;
+
+  @PersistenceContext private EntityManager entityManager;
+
+  @Autowired private MeterRegistry meterRegistry;
+
+  @Autowired private UserPasswordAuthenticationProvider authenticationProvider;
+
+  @Autowired private IUserCacheService userCacheService;
+
   private static final String NEW_USER_PATH = "json/happy/new_user.json";
   private static final String WITH_NEW_USERNAME_PASSWORD_PATH =
       "json/happy/existing_user_update_email_password.json";
@@ -71,6 +95,36 @@ public class UserServiceTest {
         .isTrue();
   }
 
+  @Test
+  @DisplayName("Should name the field that collided when a user already exists")
+  public void shouldNotCreateUserWithTakenEmail() throws JSONException {
+    JSONObject params = new JSONObject(TestUtils.getFileToJson(NEW_USER_PATH));
+    Throwable thrown =
+        catchThrowable(
+            () ->
+                userService.createNewUser(
+                    "other_" + params.optString(USERNAME_FIELD),
+                    params.optString(EMAIL_FIELD),
+                    params.optString(PASSWORD_FIELD)));
+    assertThat(thrown).isInstanceOf(UserFoundException.class);
+    assertThat(((UserFoundException) thrown).getField()).isEqualTo(EMAIL_FIELD);
+  }
+
+  @Test
+  @DisplayName("Should time user service and repository calls")
+  public void shouldTimeCalls() throws JSONException, UserNotFoundException {
+    findNewUser();
+    assertThat(
+            meterRegistry
+                .get("user.service")
+                .tags("method", "getUserByUsername", "exception", "none")
+                .timer()
+                .count())
+        .isPositive();
+    assertThat(meterRegistry.get("repository.calls").tags("class", "IUserRepository").timers())
+        .isNotEmpty();
+  }
+
   @Test
   @DisplayName("Should update an existing user's password")
   public void shouldUpdateUserPassword()
@@ -98,6 +152,56 @@ public class UserServiceTest {
     assertThat(passwordEncoder.matches(updatedUser.getPassword(), previousPassword)).isFalse();
   }
 
+  @Test
+  @DisplayName("Should rehash a legacy password after a successful check")
+  public void shouldRehashLegacyPassword() throws JSONException, UserNotFoundException {
+    String newUserParams = TestUtils.getFileToJson(NEW_USER_PATH);
+    JSONObject params = new JSONObject(newUserParams);
+    String username = params.optString(USERNAME_FIELD);
+    String password = params.optString(PASSWORD_FIELD);
+    User user = userRepository.findByUsername(username).orElseThrow(IllegalStateException::new);
+    user.setPassword(new BCryptPasswordEncoder(4).encode(password));
+    userRepository.save(user);
+    assertThat(userService.matchesPassword(username, password)).isTrue();
+    User rehashedUser =
+        userRepository.findByUsername(username).orElseThrow(IllegalStateException::new);
+    assertThat(rehashedUser.getPassword()).startsWith("{bcrypt:");
+    assertThat(userService.matchesPassword(username, password)).isTrue();
+  }
+
+  @Test
+  @DisplayName("Should rehash a legacy password on login")
+  public void shouldRehashLegacyPasswordOnLogin() throws JSONException {
+    JSONObject params = new JSONObject(TestUtils.getFileToJson(NEW_USER_PATH));
+    String username = params.optString(USERNAME_FIELD);
+    String password = params.optString(PASSWORD_FIELD);
+    User user = userRepository.findByUsername(username).orElseThrow(IllegalStateException::new);
+    user.setPassword(new BCryptPasswordEncoder(4).encode(password));
+    userRepository.save(user);
+
+    Authentication authentication =
+        authenticationProvider.authenticate(
+            new UsernamePasswordAuthenticationToken(username, password));
+    assertThat(authentication.isAuthenticated()).isTrue();
+    assertThat(authentication.getName()).isEqualTo(username);
+    User rehashedUser =
+        userRepository.findByUsername(username).orElseThrow(IllegalStateException::new);
+    assertThat(rehashedUser.getPassword()).startsWith("{bcrypt:");
+
+    assertThat(
+            catchThrowable(
+                () ->
+                    authenticationProvider.authenticate(
+                        new UsernamePasswordAuthenticationToken(username, password + "x"))))
+        .isInstanceOf(BadCredentialsException.class);
+    assertThat(
+            catchThrowable(
+                () ->
+                    authenticationProvider.authenticate(
+                        new UsernamePasswordAuthenticationToken("nobody_" + username, password))))
+        .isInstanceOf(BadCredentialsException.class);
+  }
+
   @Test
   @DisplayName("Should update an existing user's email")
   public void shouldUpdateEmail() throws JSONException, BadRequestException, UserNotFoundException {
@@ -110,6 +214,116 @@ public class UserServiceTest {
     assertThat(updateEmail.equals(updatedUser.getEmail())).isTrue();
   }
 
+  @Test
+  @DisplayName("Should return the saved user from a write and keep it in the cache")
+  public void shouldReturnSavedUser()
+      throws JSONException, BadRequestException, UserNotFoundException {
+    String existingUserParams = TestUtils.getFileToJson(WITH_NEW_USERNAME_PASSWORD_PATH);
+    JSONObject existingUserParamsJson = new JSONObject(existingUserParams);
+    String updateEmail = existingUserParamsJson.optString(EMAIL_FIELD);
+    String username = existingUserParamsJson.optString(USERNAME_FIELD);
+    User updatedUser = userService.updateEmail(username, updateEmail);
+    assertThat(updatedUser.getEmail()).isEqualTo(updateEmail);
+    assertThat(userCacheService.peek(username).getEmail()).isEqualTo(updateEmail);
+  }
+
+  @Test
+  @DisplayName("Should cache the serialized user without its password and refresh it on writes")
+  public void shouldCacheUserJson()
+      throws IOException, JSONException, BadRequestException, UserNotFoundException {
+    String existingUserParams = TestUtils.getFileToJson(WITH_NEW_USERNAME_PASSWORD_PATH);
+    JSONObject existingUserParamsJson = new JSONObject(existingUserParams);
+    String updateEmail = existingUserParamsJson.optString(EMAIL_FIELD);
+    String username = existingUserParamsJson.optString(USERNAME_FIELD);
+    CachedJson createdJson = userCacheService.peekJson(username);
+    assertThat(createdJson).isNotNull();
+    assertThat(objectMapper.readTree(createdJson.getBody()).has(PASSWORD_FIELD)).isFalse();
+
+    User updatedUser = userService.updateEmail(username, updateEmail);
+    CachedJson updatedJson = userCacheService.peekJson(username);
+    assertThat(updatedJson.getVersion()).isEqualTo(updatedUser.getVersion());
+    assertThat(objectMapper.readValue(updatedJson.getBody(), User.class).getEmail())
+        .isEqualTo(updateEmail);
+  }
+
+  @Test
+  @DisplayName("Should patch only the given fields of a user")
+  public void shouldPatchUser() throws BadRequestException, JSONException, UserNotFoundException {
+    String username = findNewUser().getUsername();
+    String email = findNewUser().getEmail();
+    UserParams userParams =
+        new UserParams.Builder()
+            .withUsername(username)
+            .withNameParams(new NameParams.Builder().withFirstName("Foo").build())
+            .build();
+    User patchedUser = userService.patchUser(userParams);
+    assertThat(patchedUser.getFirstName()).isEqualTo("Foo");
+    assertThat(patchedUser.getEmail()).isEqualTo(email);
+
+    UserParams invalidParams =
+        new UserParams.Builder()
+            .withUsername(username)
+            .withPhotoParams(new PhotoParams.Builder().withProfileUrl("not a url").build())
+            .build();
+    assertThatExceptionOfType(BadRequestException.class)
+        .isThrownBy(() -> userService.patchUser(invalidParams));
+  }
+
+  @Test
+  @DisplayName("Should patch a user in place and bump its version")
+  public void shouldPatchUserInPlace()
+      throws BadRequestException, JSONException, UserNotFoundException, UserFoundException {
+    User user = findNewUser();
+    String username = user.getUsername();
+    Long version = user.getVersion();
+    UserParams userParams =
+        new UserParams.Builder()
+            .withUsername(username)
+            .withEmail("in_place@example.com")
+            .withNameParams(new NameParams.Builder().withLastName("Baz").build())
+            .build();
+    userService.patchUserInPlace(userParams);
+    entityManager.clear();
+
+    User patchedUser = userService.getUserByUsername(username);
+    assertThat(patchedUser.getEmail()).isEqualTo("in_place@example.com");
+    assertThat(patchedUser.getEmailDomain()).isEqualTo("example.com");
+    assertThat(patchedUser.getLastName()).isEqualTo("Baz");
+    assertThat(patchedUser.getVersion()).isGreaterThan(version);
+    assertThatExceptionOfType(UserNotFoundException.class)
+        .isThrownBy(
+            () ->
+                userService.patchUserInPlace(
+                    new UserParams.Builder().withUsername("nobody").withEmail("a@b.com").build()));
+  }
+
+  @Test
+  @Transactional(propagation = Propagation.NOT_SUPPORTED)
+  @DisplayName("Should name the email as taken when an in place patch collides with another user")
+  public void shouldNotPatchUserInPlaceWithTakenEmail()
+      throws BadRequestException, JSONException, UserNotFoundException, UserFoundException {
+    // no test transaction, the patch commits or rolls back on its own as it would in a request
+    JSONObject params = new JSONObject(TestUtils.getFileToJson(NEW_USER_PATH));
+    String username = params.optString(USERNAME_FIELD);
+    String otherUsername = "other_" + username;
+    try {
+      String takenEmail = "taken_" + params.optString(EMAIL_FIELD);
+      userService.createNewUser(otherUsername, takenEmail, params.optString(PASSWORD_FIELD));
+      UserParams userParams =
+          new UserParams.Builder().withUsername(username).withEmail(takenEmail).build();
+      Throwable thrown = catchThrowable(() -> userService.patchUserInPlace(userParams));
+      assertThat(thrown).isInstanceOf(UserFoundException.class);
+      assertThat(((UserFoundException) thrown).getField()).isEqualTo(EMAIL_FIELD);
+      assertThat(userRepository.findByUsername(username).map(User::getEmail))
+          .contains(params.optString(EMAIL_FIELD));
+    } finally {
+      userRepository.findByUsername(username).ifPresent(userRepository::delete);
+      userRepository.findByUsername(otherUsername).ifPresent(userRepository::delete);
+      userCacheService.evict(username);
+      userCacheService.evict(otherUsername);
+    }
+  }
+
   @Test
   @DisplayName("Should update an existing user's first name and last name")
   public void shouldUpdateUserInfo()